@@ -12,6 +12,7 @@ import javax.swing.JMenu;
 import javax.swing.JOptionPane;
 
 import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
@@ -24,8 +25,10 @@ import org.openstreetmap.josm.plugins.ods.crs.CRSUtil;
 import org.openstreetmap.josm.plugins.ods.entities.opendata.OdLayerManager;
 import org.openstreetmap.josm.plugins.ods.entities.osm.OsmEntityBuilder;
 import org.openstreetmap.josm.plugins.ods.entities.osm.OsmLayerManager;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache;
 import org.openstreetmap.josm.plugins.ods.gui.OdsAction;
 import org.openstreetmap.josm.plugins.ods.io.MainDownloader;
+import org.openstreetmap.josm.plugins.ods.io.PrefetchStore;
 import org.openstreetmap.josm.plugins.ods.jts.GeoUtil;
 
 /**
@@ -48,6 +51,8 @@ public abstract class OdsModule implements ActiveLayerChangeListener, LayerChang
     private PolygonLayerManager polygonDataLayer;
     private OsmLayerManager osmLayerManager;
     private MatcherManager matcherManager;
+    private FeatureCache featureCache;
+    private PrefetchStore prefetchStore;
 
     String osmQuery;
     private boolean active = false;
@@ -235,6 +240,38 @@ public abstract class OdsModule implements ActiveLayerChangeListener, LayerChang
         return plugin.getPluginDirs().getUserDataDirectory(true);
     }
 
+    /**
+     * Get the persistent cache for downloaded open data features. The cache
+     * is stored in the plugin directory. The time-to-live (in hours) and the
+     * maximal size (in MB) can be configured with the preferences
+     * 'ods.cache.ttl' and 'ods.cache.size'.
+     *
+     * @return the feature cache
+     */
+    public synchronized FeatureCache getFeatureCache() {
+        if (featureCache == null) {
+            long ttl = Preferences.main().getInt("ods.cache.ttl", 24) * 3600_000L;
+            long maxSize = Preferences.main().getInt("ods.cache.size", 100) * 1024L * 1024L;
+            featureCache = new FeatureCache(new File(getPluginDir(), "cache"), ttl, maxSize);
+        }
+        return featureCache;
+    }
+
+    /**
+     * Get the store for data that is prefetched in the background. The
+     * store is in the plugin directory. The time-to-live (in hours) can be
+     * configured with the 'ods.prefetch.ttl' preference.
+     *
+     * @return the prefetch store
+     */
+    public synchronized PrefetchStore getPrefetchStore() {
+        if (prefetchStore == null) {
+            long ttl = Preferences.main().getInt("ods.prefetch.ttl", 1) * 3600_000L;
+            prefetchStore = new PrefetchStore(new File(getPluginDir(), "prefetch"), ttl);
+        }
+        return prefetchStore;
+    }
+
     public void reset() {
         getOsmLayerManager().reset();
         getOpenDataLayerManager().reset();
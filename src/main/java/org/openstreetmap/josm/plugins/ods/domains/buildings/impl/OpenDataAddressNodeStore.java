@@ -1,18 +1,20 @@
 package org.openstreetmap.josm.plugins.ods.domains.buildings.impl;
 
 import org.openstreetmap.josm.plugins.ods.domains.buildings.OdAddressNode;
+import org.openstreetmap.josm.plugins.ods.entities.CompositeKey;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.GeoIndex;
-import org.openstreetmap.josm.plugins.ods.entities.GeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.Index;
 import org.openstreetmap.josm.plugins.ods.entities.IndexImpl;
+import org.openstreetmap.josm.plugins.ods.entities.PackedGeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
 
 public class OpenDataAddressNodeStore extends EntityStore<OdAddressNode> {
-    private final UniqueIndexImpl<OdAddressNode> primaryIndex = new UniqueIndexImpl<>(OdAddressNode.class, "primaryId");
-    private final IndexImpl<OdAddressNode> idIndex = new IndexImpl<>(OdAddressNode.class, "referenceId");
-    private final GeoIndex<OdAddressNode> geoIndex = new GeoIndexImpl<>(OdAddressNode.class, "geometry");
-    private final Index<OdAddressNode> postcodeNumberIndex = new IndexImpl<>(OdAddressNode.class, "postcode", "houseNumber");
+    private final UniqueIndexImpl<OdAddressNode> primaryIndex = new UniqueIndexImpl<>(OdAddressNode::getPrimaryId);
+    private final IndexImpl<OdAddressNode> idIndex = new IndexImpl<>(OdAddressNode::getReferenceId);
+    private final GeoIndex<OdAddressNode> geoIndex = new PackedGeoIndexImpl<>(OdAddressNode::getGeometry);
+    private final Index<OdAddressNode> postcodeNumberIndex = new IndexImpl<>(
+            CompositeKey.<OdAddressNode>extractor(OdAddressNode::getPostcode, OdAddressNode::getHouseNumber));
 
     public OpenDataAddressNodeStore() {
         addIndex(primaryIndex);
@@ -3,9 +3,9 @@ package org.openstreetmap.josm.plugins.ods.domains.buildings.impl;
 import org.openstreetmap.josm.plugins.ods.domains.buildings.OdBuilding;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.GeoIndex;
-import org.openstreetmap.josm.plugins.ods.entities.GeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.Index;
 import org.openstreetmap.josm.plugins.ods.entities.IndexImpl;
+import org.openstreetmap.josm.plugins.ods.entities.PackedGeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
 
 /**
@@ -17,9 +17,9 @@ import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
  *
  */
 public class OpenDataBuildingStore extends EntityStore<OdBuilding> {
-    private final UniqueIndexImpl<OdBuilding> primaryIndex = new UniqueIndexImpl<>(OdBuilding.class, "primaryId");
-    private final IndexImpl<OdBuilding> idIndex = new IndexImpl<>(OdBuilding.class, "referenceId");
-    private final GeoIndex<OdBuilding> geoIndexImpl = new GeoIndexImpl<>(OdBuilding.class, "geometry");
+    private final UniqueIndexImpl<OdBuilding> primaryIndex = new UniqueIndexImpl<>(OdBuilding::getPrimaryId);
+    private final IndexImpl<OdBuilding> idIndex = new IndexImpl<>(OdBuilding::getReferenceId);
+    private final GeoIndex<OdBuilding> geoIndexImpl = new PackedGeoIndexImpl<>(OdBuilding::getGeometry);
 
     public OpenDataBuildingStore() {
         super();
@@ -1,11 +1,12 @@
 package org.openstreetmap.josm.plugins.ods.domains.buildings.impl;
 
 import org.openstreetmap.josm.plugins.ods.domains.buildings.OsmAddressNode;
+import org.openstreetmap.josm.plugins.ods.entities.CompositeKey;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.GeoIndex;
-import org.openstreetmap.josm.plugins.ods.entities.GeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.Index;
 import org.openstreetmap.josm.plugins.ods.entities.IndexImpl;
+import org.openstreetmap.josm.plugins.ods.entities.PackedGeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
 
 /**
@@ -19,9 +20,10 @@ import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
  *
  */
 public class OsmAddressNodeStore extends EntityStore<OsmAddressNode> {
-    private final UniqueIndexImpl<OsmAddressNode> primitiveIndex = new UniqueIndexImpl<>(OsmAddressNode.class, "primaryId");
-    private final GeoIndex<OsmAddressNode> geoIndex = new GeoIndexImpl<>(OsmAddressNode.class, "geometry");
-    private final Index<OsmAddressNode> zipHousnrIndex = new IndexImpl<>(OsmAddressNode.class, "postcode", "houseNumber");
+    private final UniqueIndexImpl<OsmAddressNode> primitiveIndex = new UniqueIndexImpl<>(OsmAddressNode::getPrimaryId);
+    private final GeoIndex<OsmAddressNode> geoIndex = new PackedGeoIndexImpl<>(OsmAddressNode::getGeometry);
+    private final Index<OsmAddressNode> zipHousnrIndex = new IndexImpl<>(
+            CompositeKey.<OsmAddressNode>extractor(OsmAddressNode::getPostcode, OsmAddressNode::getHouseNumber));
 
     public OsmAddressNodeStore() {
         addIndex(primitiveIndex);
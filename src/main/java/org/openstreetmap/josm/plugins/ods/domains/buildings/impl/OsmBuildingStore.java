@@ -3,9 +3,9 @@ package org.openstreetmap.josm.plugins.ods.domains.buildings.impl;
 import org.openstreetmap.josm.plugins.ods.domains.buildings.OsmBuilding;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.GeoIndex;
-import org.openstreetmap.josm.plugins.ods.entities.GeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.Index;
 import org.openstreetmap.josm.plugins.ods.entities.IndexImpl;
+import org.openstreetmap.josm.plugins.ods.entities.PackedGeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
 
 /**
@@ -17,9 +17,9 @@ import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
  *
  */
 public class OsmBuildingStore extends EntityStore<OsmBuilding> {
-    private final UniqueIndexImpl<OsmBuilding> primitiveIndex = new UniqueIndexImpl<>(OsmBuilding.class, "primitiveId");
-    private final Index<OsmBuilding> idIndex = new IndexImpl<>(OsmBuilding.class, "referenceId");
-    private final GeoIndex<OsmBuilding> geoIndexImpl = new GeoIndexImpl<>(OsmBuilding.class, "geometry");
+    private final UniqueIndexImpl<OsmBuilding> primitiveIndex = new UniqueIndexImpl<>(OsmBuilding::getPrimitiveId);
+    private final Index<OsmBuilding> idIndex = new IndexImpl<>(OsmBuilding::getReferenceId);
+    private final GeoIndex<OsmBuilding> geoIndexImpl = new PackedGeoIndexImpl<>(OsmBuilding::getGeometry);
 
     public OsmBuildingStore() {
         super();
@@ -3,14 +3,14 @@ package org.openstreetmap.josm.plugins.ods.domains.places.impl;
 import org.openstreetmap.josm.plugins.ods.domains.places.OdCity;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.GeoIndex;
-import org.openstreetmap.josm.plugins.ods.entities.GeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.IndexImpl;
+import org.openstreetmap.josm.plugins.ods.entities.PackedGeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
 
 public class OpenDataCityStore extends EntityStore<OdCity> {
-    private final UniqueIndexImpl<OdCity> primaryIndex = new UniqueIndexImpl<>(OdCity.class, "referenceId");
-    private final IndexImpl<OdCity> idIndex = new IndexImpl<>(OdCity.class, "referenceId");
-    private final GeoIndex<OdCity> geoIndex = new GeoIndexImpl<>(OdCity.class, "geometry");
+    private final UniqueIndexImpl<OdCity> primaryIndex = new UniqueIndexImpl<>(OdCity::getReferenceId);
+    private final IndexImpl<OdCity> idIndex = new IndexImpl<>(OdCity::getReferenceId);
+    private final GeoIndex<OdCity> geoIndex = new PackedGeoIndexImpl<>(OdCity::getGeometry);
 
     public OpenDataCityStore() {
         super();
@@ -3,14 +3,14 @@ package org.openstreetmap.josm.plugins.ods.domains.places.impl;
 import org.openstreetmap.josm.plugins.ods.domains.places.OsmCity;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.GeoIndex;
-import org.openstreetmap.josm.plugins.ods.entities.GeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.Index;
+import org.openstreetmap.josm.plugins.ods.entities.PackedGeoIndexImpl;
 import org.openstreetmap.josm.plugins.ods.entities.UniqueIndexImpl;
 
 public class OsmCityStore extends EntityStore<OsmCity> {
-    private final UniqueIndexImpl<OsmCity> primaryIndex = new UniqueIndexImpl<>(OsmCity.class, "primitiveId");
-    private final UniqueIndexImpl<OsmCity> idIndex = new UniqueIndexImpl<>(OsmCity.class, "referenceId");
-    private final GeoIndex<OsmCity> geoIndex = new GeoIndexImpl<>(OsmCity.class, "geometry");
+    private final UniqueIndexImpl<OsmCity> primaryIndex = new UniqueIndexImpl<>(OsmCity::getPrimitiveId);
+    private final UniqueIndexImpl<OsmCity> idIndex = new UniqueIndexImpl<>(OsmCity::getReferenceId);
+    private final GeoIndex<OsmCity> geoIndex = new PackedGeoIndexImpl<>(OsmCity::getGeometry);
 
     public OsmCityStore() {
         super();
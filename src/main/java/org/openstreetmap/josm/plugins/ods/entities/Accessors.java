@@ -0,0 +1,95 @@
+package org.openstreetmap.josm.plugins.ods.entities;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Create key extractors for the indexes from property names.
+ * The getter of a property is turned into a {@link Function} with the
+ * {@link LambdaMetafactory}, so calling it is as fast as a method reference.
+ * If that fails, for example because the getter is not accessible from this
+ * package, a function that invokes the getter by reflection is returned.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class Accessors {
+
+    private Accessors() {
+        // Utility class
+    }
+
+    /**
+     * Create a function that returns the value of a property.
+     *
+     * @param clazz The class that declares or inherits the getter
+     * @param property The name of the property
+     * @return the function
+     * @throws IllegalArgumentException if the class has no public getter for the property
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> Function<T, R> getter(Class<? extends T> clazz, String property) {
+        Method method;
+        try {
+            method = clazz.getMethod(getGetterName(property));
+        } catch (NoSuchMethodException | SecurityException e) {
+            throw new IllegalArgumentException(String.format(
+                    "%s has no getter for property '%s'", clazz.getSimpleName(), property), e);
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(handle.type().wrap().returnType(), clazz));
+            return (Function<T, R>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            Logging.debug("Falling back to reflection for {0}.{1}: {2}",
+                    clazz.getSimpleName(), method.getName(), e.getMessage());
+            return entity -> {
+                try {
+                    return (R) method.invoke(entity);
+                } catch (IllegalAccessException | InvocationTargetException e1) {
+                    throw new IllegalStateException(e1);
+                }
+            };
+        }
+    }
+
+    /**
+     * Create a key extractor for one or more properties. For a single
+     * property the key is the value of that property. For multiple
+     * properties, the key is a {@link CompositeKey} with the values.
+     *
+     * @param clazz The entity class
+     * @param properties The property names
+     * @return the key extractor
+     */
+    public static <T> Function<T, Object> key(Class<? extends T> clazz, String... properties) {
+        if (properties.length == 1) {
+            return getter(clazz, properties[0]);
+        }
+        @SuppressWarnings("unchecked")
+        Function<T, Object>[] getters = new Function[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            getters[i] = getter(clazz, properties[i]);
+        }
+        Function<T, CompositeKey> extractor = CompositeKey.extractor(getters);
+        return extractor::apply;
+    }
+
+    private static String getGetterName(String property) {
+        return "get" + property.substring(0, 1).toUpperCase() +
+                property.substring(1);
+    }
+}
@@ -0,0 +1,155 @@
+package org.openstreetmap.josm.plugins.ods.entities;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Immutable key for indexes on more than one property.
+ * Unlike an Object[], a composite key has value semantics, so it can be used
+ * as a key in a hash map. The hash code is calculated once, when the key is
+ * created.
+ * If all parts are integral numbers, the parts are stored as primitive longs,
+ * which saves the boxed values. Integral parts with the same value are equal,
+ * regardless of their type.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public final class CompositeKey {
+    private final long[] numbers;
+    private final Object[] parts;
+    private final int hash;
+
+    private CompositeKey(long[] numbers) {
+        this.numbers = numbers;
+        this.parts = null;
+        this.hash = Arrays.hashCode(numbers);
+    }
+
+    private CompositeKey(Object[] parts) {
+        this.numbers = null;
+        this.parts = parts;
+        this.hash = Arrays.hashCode(parts);
+    }
+
+    /**
+     * Create a composite key from the given parts.
+     *
+     * @param parts The parts of the key. Null values are allowed.
+     * @return the key
+     */
+    public static CompositeKey of(Object... parts) {
+        long[] numbers = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            Object part = parts[i];
+            if (!isIntegral(part)) {
+                return new CompositeKey(toObjects(parts));
+            }
+            numbers[i] = ((Number) part).longValue();
+        }
+        return new CompositeKey(numbers);
+    }
+
+    /**
+     * Copy the parts, converting the integral numbers to Long.
+     */
+    private static Object[] toObjects(Object[] parts) {
+        Object[] result = new Object[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            Object part = parts[i];
+            result[i] = isIntegral(part) ? Long.valueOf(((Number) part).longValue()) : part;
+        }
+        return result;
+    }
+
+    /**
+     * Create a composite key from primitive long parts.
+     *
+     * @param parts The parts of the key
+     * @return the key
+     */
+    public static CompositeKey ofLongs(long... parts) {
+        return new CompositeKey(parts.clone());
+    }
+
+    /**
+     * Create a key extractor that combines the results of the given
+     * functions into a composite key.
+     *
+     * @param functions The functions for the parts of the key
+     * @return the key extractor
+     */
+    @SafeVarargs
+    public static <T> Function<T, CompositeKey> extractor(Function<? super T, ?>... functions) {
+        Function<? super T, ?>[] parts = functions.clone();
+        return entity -> {
+            Object[] values = new Object[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                values[i] = parts[i].apply(entity);
+            }
+            return of(values);
+        };
+    }
+
+    /**
+     * Convert a lookup key for an index. An Object[] is converted to a
+     * composite key, so lookups with arrays keep working.
+     *
+     * @param key
+     * @return the key to use for the lookup
+     */
+    static Object normalize(Object key) {
+        if (key instanceof Object[]) {
+            return of((Object[]) key);
+        }
+        return key;
+    }
+
+    static boolean isIntegral(Object part) {
+        return part instanceof Long || part instanceof Integer
+                || part instanceof Short || part instanceof Byte;
+    }
+
+    /**
+     * @return the number of parts of this key
+     */
+    public int size() {
+        return numbers != null ? numbers.length : parts.length;
+    }
+
+    /**
+     * @param index
+     * @return the part at the given index. Numeric parts are returned as Long.
+     */
+    public Object get(int index) {
+        return numbers != null ? Long.valueOf(numbers[index]) : parts[index];
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof CompositeKey)) {
+            return false;
+        }
+        CompositeKey other = (CompositeKey) obj;
+        if (hash != other.hash) {
+            return false;
+        }
+        if (numbers != null) {
+            return Arrays.equals(numbers, other.numbers);
+        }
+        return Arrays.equals(parts, other.parts);
+    }
+
+    @Override
+    public String toString() {
+        return numbers != null ? Arrays.toString(numbers) : Arrays.toString(parts);
+    }
+}
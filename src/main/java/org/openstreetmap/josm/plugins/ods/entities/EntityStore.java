@@ -31,6 +31,27 @@ public abstract class EntityStore<T extends Entity> implements Iterable<T> {
         }
     }
 
+    /**
+     * Prepare the indexes of this store for the expected number of entities.
+     *
+     * @param expectedSize
+     */
+    public void ensureCapacity(int expectedSize) {
+        for (Index<T> index : indexes) {
+            index.ensureCapacity(expectedSize);
+        }
+    }
+
+    /**
+     * Notify the indexes of this store that a batch of entities has been
+     * added.
+     */
+    public void batchComplete() {
+        for (Index<T> index : indexes) {
+            index.batchComplete();
+        }
+    }
+
     public Geometry getBoundary() {
         if (boundary == null) {
             boundary = new GeometryFactory().buildGeometry(Collections.emptyList());
@@ -1,6 +1,7 @@
 package org.openstreetmap.josm.plugins.ods.entities;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.locationtech.jts.geom.Geometry;
 
@@ -8,4 +9,15 @@ public interface GeoIndex<T extends Entity> extends Index<T> {
 
     public List<T> intersection(Geometry geometry);
 
+    /**
+     * Pass the entities that intersect the given geometry to a consumer,
+     * without collecting them in a list first.
+     *
+     * @param geometry
+     * @param consumer
+     */
+    public default void intersection(Geometry geometry, Consumer<? super T> consumer) {
+        intersection(geometry).forEach(consumer);
+    }
+
 }
\ No newline at end of file
@@ -1,24 +1,39 @@
 package org.openstreetmap.josm.plugins.ods.entities;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.index.quadtree.Quadtree;
 
 public class GeoIndexImpl<T extends Entity, V extends T> implements GeoIndex<T>  {
     private Quadtree quadTree = new Quadtree();
-    private Class<V> clazz;
-    private Method getGeometryMethod;
-    private String property;
-    
+    private final Function<? super T, ? extends Geometry> geometryFunction;
+
+    /**
+     * Create a geographical index on a geometry property of the entity class.
+     * The getter is compiled to a function by {@link Accessors}.
+     *
+     * @param clazz The entity class
+     * @param property The name of the geometry property
+     */
     public GeoIndexImpl(Class<V> clazz, String property) {
+        this(Accessors.<T, Geometry>getter(clazz, property));
+    }
+
+    /**
+     * Create a geographical index with the given geometry extractor.
+     *
+     * @param geometryFunction Function that returns the geometry of an entity
+     */
+    public GeoIndexImpl(Function<? super T, ? extends Geometry> geometryFunction) {
         super();
-        this.clazz = clazz;
-        this.property = property;
-        getGeometryMethod = createGetGeometryMethod();
+        this.geometryFunction = geometryFunction;
     }
     
     @Override
@@ -37,15 +52,6 @@ public class GeoIndexImpl<T extends Entity, V extends T> implements GeoIndex<T>
         }
     }
     
-    private Method createGetGeometryMethod() {
-        try {
-            return clazz.getMethod(getGetterName());
-        } catch (NoSuchMethodException | SecurityException e) {
-            e.printStackTrace();
-            throw new RuntimeException();
-        }
-    }
-    
     @Override
     public List<T> getAll(Object id) {
         throw new UnsupportedOperationException();
@@ -56,16 +62,25 @@ public class GeoIndexImpl<T extends Entity, V extends T> implements GeoIndex<T>
      */
     @Override
     public List<T> intersection(Geometry geometry) {
-        List<T> entities = new LinkedList<>();
-        List<?> candidates = quadTree.query(geometry.getEnvelopeInternal());
-        for (Object object : candidates) {
-            T entity = clazz.cast(object);
-            if (getGeometry(entity).intersects(geometry)) {
-                entities.add(entity);
-            }
-        }
+        List<T> entities = new ArrayList<>();
+        intersection(geometry, entities::add);
         return entities;
     }
+
+    @Override
+    public void intersection(Geometry geometry, Consumer<? super T> consumer) {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        quadTree.query(envelope, item -> {
+            @SuppressWarnings("unchecked")
+            T entity = (T) item;
+            Geometry geom = getGeometry(entity);
+            if (geom != null && !geom.isEmpty()
+                    && geom.getEnvelopeInternal().intersects(envelope) && prepared.intersects(geom)) {
+                consumer.accept(entity);
+            }
+        });
+    }
     
     @Override
     public void remove(T entity) {
@@ -73,22 +88,11 @@ public class GeoIndexImpl<T extends Entity, V extends T> implements GeoIndex<T>
     }
 
     private Geometry getGeometry(T entity) {
-        try {
-            return (Geometry)getGeometryMethod.invoke(entity);
-        } catch (IllegalAccessException | IllegalArgumentException
-                | InvocationTargetException e) {
-            e.printStackTrace();
-            return null;
-        }
+        return geometryFunction.apply(entity);
     }
     
     @Override
     public void clear() {
         quadTree = new Quadtree();
     }
-
-    private String getGetterName() {
-        return "get" + property.substring(0, 1).toUpperCase() +
-                    property.substring(1);
-    }
 }
@@ -13,5 +13,23 @@ public interface Index<T> {
     public void remove(T entity);
 
     public void clear();
+
+    /**
+     * Prepare the index for the expected number of entities, so it doesn't
+     * have to grow while the entities are inserted.
+     *
+     * @param expectedSize
+     */
+    public default void ensureCapacity(int expectedSize) {
+        // Ignore by default
+    }
+
+    /**
+     * Notify the index that a batch of inserts is complete, so it can
+     * reorganize itself for fast queries.
+     */
+    public default void batchComplete() {
+        // Ignore by default
+    }
     
 }
\ No newline at end of file
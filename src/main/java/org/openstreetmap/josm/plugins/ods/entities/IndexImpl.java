@@ -1,26 +1,55 @@
 package org.openstreetmap.josm.plugins.ods.entities;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
+import org.openstreetmap.josm.plugins.ods.util.LongMultiMap;
+
+/**
+ * Non-unique index on a key of the entities.
+ * Integral keys, like most reference ids, are stored in a
+ * {@link LongMultiMap} to avoid boxing and per-entry node objects. Other keys
+ * go into a HashMap.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
 public class IndexImpl<T extends Entity> implements Index<T>  {
+    private final LongMultiMap<T> longMap = new LongMultiMap<>();
     private Map<Object, List<T>> map = new HashMap<>();
-    private Class<T> clazz;
-    private Method[] getters;
-    private String[] properties; 
-    
+    private int expectedSize;
+    private final Function<? super T, ?> keyFunction;
+
+    /**
+     * Create an index on one or more properties of the entity class.
+     * The getters are compiled to functions by {@link Accessors}.
+     *
+     * @param clazz The entity class
+     * @param properties The property names
+     */
     public IndexImpl(Class<T> clazz, String... properties) {
+        this(Accessors.key(clazz, properties));
+    }
+
+    /**
+     * Create an index with the given key extractor.
+     *
+     * @param keyFunction Function that returns the key of an entity
+     */
+    public IndexImpl(Function<? super T, ?> keyFunction) {
         super();
-        this.clazz = clazz;
-        this.properties = properties;
-        getters = createGetters();
+        this.keyFunction = keyFunction;
     }
     
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        this.expectedSize = expectedSize;
+    }
+
     @Override
     public boolean isUnique() {
         return false;
@@ -32,27 +61,25 @@ public class IndexImpl<T extends Entity> implements Index<T>  {
     @Override
     public void insert(T entity) {
         Object key = getKey(entity);
-        if (key != null) {
-            List<T> list = map.get(key);
-            if (list == null) {
-                list = new LinkedList<>();
-                map.put(key, list);
-            }
-            list.add(entity);
+        if (key == null) {
+            return;
         }
-    }
-    
-    private Method[] createGetters() {
-        Method[] getters = new Method[properties.length];
-        try {
-            for (int i=0; i< properties.length; i++) {
-                getters[i] = clazz.getMethod(getGetterName(i));
+        if (CompositeKey.isIntegral(key)) {
+            if (longMap.isEmpty()) {
+                longMap.ensureCapacity(expectedSize);
             }
-            return getters;
-        } catch (NoSuchMethodException | SecurityException e) {
-            e.printStackTrace();
-            throw new RuntimeException();
+            longMap.put(((Number) key).longValue(), entity);
+            return;
         }
+        if (map.isEmpty() && expectedSize > 0) {
+            map = new HashMap<>(expectedSize * 4 / 3 + 1);
+        }
+        List<T> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            map.put(key, list);
+        }
+        list.add(entity);
     }
     
     /* (non-Javadoc)
@@ -60,43 +87,43 @@ public class IndexImpl<T extends Entity> implements Index<T>  {
      */
     @Override
     public List<T> getAll(Object key) {
-        List<T> result = map.get(key);
+        Object normalizedKey = CompositeKey.normalize(key);
+        if (CompositeKey.isIntegral(normalizedKey)) {
+            return longMap.get(((Number) normalizedKey).longValue());
+        }
+        List<T> result = map.get(normalizedKey);
         if (result == null) {
             return Collections.emptyList();
         }
-        return result;
+        return Collections.unmodifiableList(result);
     }
     
     @Override
     public void remove(T entity) {
-        map.remove(getKey(entity));
+        Object key = getKey(entity);
+        if (key == null) {
+            return;
+        }
+        if (CompositeKey.isIntegral(key)) {
+            longMap.remove(((Number) key).longValue(), entity);
+            return;
+        }
+        List<T> list = map.get(key);
+        if (list != null) {
+            list.remove(entity);
+            if (list.isEmpty()) {
+                map.remove(key);
+            }
+        }
     }
 
     private Object getKey(T entity) {
-        try {
-            if (properties.length == 1) {
-                return getters[0].invoke(entity);
-            }
-            Object[] key = new Object[properties.length];
-            for (int i=0; i<properties.length; i++) {
-                key[i] = getters[i].invoke(entity);
-            }
-            return key;
-        } catch (IllegalAccessException | IllegalArgumentException
-                | InvocationTargetException e) {
-            e.printStackTrace();
-            return null;
-        }
+        return keyFunction.apply(entity);
     }
     
     @Override
     public void clear() {
+        longMap.clear();
         map.clear();
     }
-
-    private String getGetterName(int i) {
-        String property = properties[i];
-        return "get" + property.substring(0, 1).toUpperCase() +
-                    property.substring(1);
-    }
 }
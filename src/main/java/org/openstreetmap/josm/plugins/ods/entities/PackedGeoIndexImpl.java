@@ -0,0 +1,220 @@
+package org.openstreetmap.josm.plugins.ods.entities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.quadtree.Quadtree;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * Geographical index that is optimized for entities that arrive in large
+ * batches.
+ * The entities are kept in a bulk-loaded STRtree, which is much faster to
+ * query than an incrementally built quadtree. An STRtree can't grow after it
+ * has been built, so entities that are inserted after the last rebuild go into
+ * a small quadtree overlay. The STRtree is rebuilt with all entities when a
+ * batch is complete, or during an insert when the overlay has grown larger
+ * than a quarter of the index. This keeps the overlay small if entities are
+ * added one by one without a batch. Queries never modify the index.
+ * The index keeps the envelope under which each entity was inserted, so an
+ * entity can be removed after its geometry has changed.
+ * The query geometry is prepared once per query, so the candidates are
+ * checked with a fast prepared intersects test. The quadtree returns
+ * candidates that don't overlap the query envelope, so the overlay keeps the
+ * envelope of each entity to skip those cheaply.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class PackedGeoIndexImpl<T extends Entity> implements GeoIndex<T> {
+    private static final int NODE_CAPACITY = 10;
+    // The overlay may always grow to this size before the tree is rebuilt
+    private static final int MIN_OVERLAY_SIZE = 1000;
+
+    private final Function<? super T, ? extends Geometry> geometryFunction;
+    private final Map<T, Envelope> envelopes = new HashMap<>();
+    private STRtree tree;
+    private Quadtree overlay = new Quadtree();
+
+    /**
+     * @param geometryFunction Function that returns the geometry of an entity
+     */
+    public PackedGeoIndexImpl(Function<? super T, ? extends Geometry> geometryFunction) {
+        super();
+        this.geometryFunction = geometryFunction;
+    }
+
+    @Override
+    public boolean isUnique() {
+        return false;
+    }
+
+    @Override
+    public void insert(T entity) {
+        Geometry geom = getGeometry(entity);
+        if (geom != null && !geom.isEmpty()) {
+            remove(entity);
+            Envelope envelope = geom.getEnvelopeInternal();
+            envelopes.put(entity, envelope);
+            overlay.insert(envelope, new OverlayItem<>(entity, envelope));
+            if (overlay.size() > Math.max(MIN_OVERLAY_SIZE, envelopes.size() / 4)) {
+                pack();
+            }
+        }
+    }
+
+    @Override
+    public List<T> getAll(Object id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<T> intersection(Geometry geometry) {
+        List<T> entities = new ArrayList<>();
+        intersection(geometry, entities::add);
+        return entities;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void intersection(Geometry geometry, Consumer<? super T> consumer) {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        if (tree != null) {
+            // The STRtree only visits entities with an overlapping envelope
+            tree.query(envelope, item -> {
+                T entity = (T) item;
+                if (intersects(prepared, entity)) {
+                    consumer.accept(entity);
+                }
+            });
+        }
+        overlay.query(envelope, item -> {
+            OverlayItem<T> overlayItem = (OverlayItem<T>) item;
+            if (overlayItem.envelope.intersects(envelope)
+                    && intersects(prepared, overlayItem.entity)) {
+                consumer.accept(overlayItem.entity);
+            }
+        });
+    }
+
+    /**
+     * Check the current geometry of an entity against the query. The geometry
+     * may have been removed since the entity was indexed.
+     */
+    private boolean intersects(PreparedGeometry prepared, T entity) {
+        Geometry geom = getGeometry(entity);
+        return geom != null && !geom.isEmpty() && prepared.intersects(geom);
+    }
+
+    @Override
+    public void remove(T entity) {
+        Envelope envelope = envelopes.remove(entity);
+        if (envelope == null) {
+            return;
+        }
+        if (!overlay.remove(envelope, new OverlayItem<>(entity, envelope))
+                && tree != null) {
+            tree.remove(envelope, entity);
+        }
+    }
+
+    @Override
+    public void batchComplete() {
+        if (overlay.size() > 0) {
+            pack();
+        }
+    }
+
+    /**
+     * Rebuild the STRtree with all entities in the index.
+     * The envelopes are taken from the current geometries, so entities whose
+     * geometry has changed are moved to their new location. Entities that
+     * have lost their geometry are dropped.
+     */
+    private void pack() {
+        STRtree newTree = new STRtree(NODE_CAPACITY);
+        boolean empty = true;
+        Iterator<Map.Entry<T, Envelope>> it = envelopes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<T, Envelope> entry = it.next();
+            Geometry geom = getGeometry(entry.getKey());
+            if (geom == null || geom.isEmpty()) {
+                it.remove();
+                continue;
+            }
+            Envelope envelope = geom.getEnvelopeInternal();
+            entry.setValue(envelope);
+            newTree.insert(envelope, entry.getKey());
+            empty = false;
+        }
+        if (!empty) {
+            newTree.build();
+            tree = newTree;
+        }
+        else {
+            tree = null;
+        }
+        overlay = new Quadtree();
+    }
+
+    /**
+     * @return the number of entities that were inserted after the last
+     *     rebuild of the tree
+     */
+    int getOverlaySize() {
+        return overlay.size();
+    }
+
+    /**
+     * @return the number of entities in the index
+     */
+    public int size() {
+        return envelopes.size();
+    }
+
+    private Geometry getGeometry(T entity) {
+        return geometryFunction.apply(entity);
+    }
+
+    @Override
+    public void clear() {
+        envelopes.clear();
+        tree = null;
+        overlay = new Quadtree();
+    }
+
+    /**
+     * Entry of the overlay quadtree with the envelope of the entity.
+     * Two items are equal if they refer to the same entity, so an entity can
+     * be removed without knowing its item.
+     */
+    private static class OverlayItem<T> {
+        final T entity;
+        final Envelope envelope;
+
+        OverlayItem(T entity, Envelope envelope) {
+            this.entity = entity;
+            this.envelope = envelope;
+        }
+
+        @Override
+        public int hashCode() {
+            return entity.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof OverlayItem && ((OverlayItem<?>) obj).entity.equals(entity);
+        }
+    }
+}
@@ -1,29 +1,57 @@
 package org.openstreetmap.josm.plugins.ods.entities;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import org.openstreetmap.josm.plugins.ods.util.LongObjectMap;
 import org.openstreetmap.josm.tools.Logging;
 
+/**
+ * Unique index on a key of the entities.
+ * Integral keys, like primitive ids and most reference ids, are stored in a
+ * {@link LongObjectMap} to avoid boxing and per-entry node objects. Other
+ * keys go into a HashMap.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
 public class UniqueIndexImpl<T extends Entity> implements Index<T> {
+    private final LongObjectMap<T> longMap = new LongObjectMap<>();
     private Map<Object, T> map = new HashMap<>();
-    private Class<T> clazz;
-    private Method[] getters;
-    private String[] properties; 
-    
+    private int expectedSize;
+    private final Function<? super T, ?> keyFunction;
+
+    /**
+     * Create an index on one or more properties of the entity class.
+     * The getters are compiled to functions by {@link Accessors}.
+     *
+     * @param clazz The entity class
+     * @param properties The property names
+     */
     public UniqueIndexImpl(Class<T> clazz, String... properties) {
+        this(Accessors.key(clazz, properties));
+    }
+
+    /**
+     * Create an index with the given key extractor.
+     *
+     * @param keyFunction Function that returns the key of an entity
+     */
+    public UniqueIndexImpl(Function<? super T, ?> keyFunction) {
         super();
-        this.clazz = clazz;
-        this.properties = properties;
-        getters = createGetters();
+        this.keyFunction = keyFunction;
     }
     
+    @Override
+    public void ensureCapacity(int expectedSize) {
+        this.expectedSize = expectedSize;
+    }
+
     @Override
     public boolean isUnique() {
         return true;
@@ -37,44 +65,47 @@ public class UniqueIndexImpl<T extends Entity> implements Index<T> {
     public void insert(T entity) {
         Object key = getKey(entity);
         if (key != null) {
-            if (map.get(key) != null) {
+            if (get(key) != null) {
                 Logging.warn("Duplicate value for unique index " + key.toString() + " of " + entity.getClass().getSimpleName());
                 // TODO handle duplicates
             }
+            else if (CompositeKey.isIntegral(key)) {
+                if (longMap.isEmpty()) {
+                    longMap.ensureCapacity(expectedSize);
+                }
+                longMap.put(((Number) key).longValue(), entity);
+            }
             else {
+                if (map.isEmpty() && expectedSize > 0) {
+                    map = new HashMap<>(expectedSize * 4 / 3 + 1);
+                }
                 map.put(key,  entity);
             }
         }
     }
     
-    private Method[] createGetters() {
-        Method[] getters = new Method[properties.length];
-        try {
-            for (int i=0; i< properties.length; i++) {
-                getters[i] = clazz.getMethod(getGetterName(i));
-            }
-            return getters;
-        } catch (NoSuchMethodException | SecurityException e) {
-            e.printStackTrace();
-            throw new RuntimeException();
-        }
-    }
-    
     public Iterator<T> iterator() {
-        return map.values().iterator();
+        return stream().iterator();
     }
 
     public Stream<T> stream() {
-        return map.values().stream();
+        if (map.isEmpty()) {
+            return longMap.values();
+        }
+        return Stream.concat(longMap.values(), map.values().stream());
     }
 
     public T get(Object key) {
-        return map.get(key);
+        Object normalizedKey = CompositeKey.normalize(key);
+        if (CompositeKey.isIntegral(normalizedKey)) {
+            return longMap.get(((Number) normalizedKey).longValue());
+        }
+        return map.get(normalizedKey);
     }
     
     @Override
     public List<T> getAll(Object key) {
-        T result = map.get(key);
+        T result = get(key);
         if (result == null) {
             return Collections.emptyList();
         }
@@ -83,38 +114,29 @@ public class UniqueIndexImpl<T extends Entity> implements Index<T> {
     
     @Override
     public void remove(T entity) {
-        map.remove(getKey(entity));
+        Object key = getKey(entity);
+        if (key != null) {
+            removeByKey(key);
+        }
     }
 
     public void removeByKey(Object key) {
-        map.remove(key);
+        Object normalizedKey = CompositeKey.normalize(key);
+        if (CompositeKey.isIntegral(normalizedKey)) {
+            longMap.remove(((Number) normalizedKey).longValue());
+        }
+        else {
+            map.remove(normalizedKey);
+        }
     }
 
     private Object getKey(T entity) {
-        try {
-            if (properties.length == 1) {
-                return getters[0].invoke(entity);
-            }
-            Object[] key = new Object[properties.length];
-            for (int i=0; i<properties.length; i++) {
-                key[i] = getters[i].invoke(entity);
-            }
-            return key;
-        } catch (IllegalAccessException | IllegalArgumentException
-                | InvocationTargetException e) {
-            e.printStackTrace();
-            return null;
-        }
+        return keyFunction.apply(entity);
     }
     
     @Override
     public void clear() {
+        longMap.clear();
         map.clear();
     }
-
-    private String getGetterName(int i) {
-        String property = properties[i];
-        return "get" + property.substring(0, 1).toUpperCase() +
-                    property.substring(1);
-    }
 }
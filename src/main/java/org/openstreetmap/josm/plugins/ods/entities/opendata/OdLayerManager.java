@@ -7,6 +7,7 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.plugins.ods.AbstractLayerManager;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.OdEntity;
+import org.openstreetmap.josm.plugins.ods.util.LongObjectMap;
 
 /**
  * The OdLayerManager manages the layer containing the data that has been
@@ -18,9 +19,9 @@ import org.openstreetmap.josm.plugins.ods.entities.OdEntity;
  *
  */
 public class OdLayerManager extends AbstractLayerManager {
-    private final Map<Long, OdEntity> nodeEntities = new HashMap<>();
-    private final Map<Long, OdEntity> wayEntities = new HashMap<>();
-    private final Map<Long, OdEntity> relationEntities = new HashMap<>();
+    private final LongObjectMap<OdEntity> nodeEntities = new LongObjectMap<>();
+    private final LongObjectMap<OdEntity> wayEntities = new LongObjectMap<>();
+    private final LongObjectMap<OdEntity> relationEntities = new LongObjectMap<>();
     private final EntityStoreMap entityStoreMap = new EntityStoreMap();
 
     public OdLayerManager(String name) {
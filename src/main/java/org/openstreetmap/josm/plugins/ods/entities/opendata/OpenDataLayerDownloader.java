@@ -1,32 +1,39 @@
 package org.openstreetmap.josm.plugins.ods.entities.opendata;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.openstreetmap.josm.data.DataSource;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.plugins.ods.OdsModule;
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
 import org.openstreetmap.josm.plugins.ods.io.DownloadRequest;
 import org.openstreetmap.josm.plugins.ods.io.DownloadResponse;
+import org.openstreetmap.josm.plugins.ods.io.DownloadTaskGraph;
 import org.openstreetmap.josm.plugins.ods.io.Downloader;
 import org.openstreetmap.josm.plugins.ods.io.LayerDownloader;
+import org.openstreetmap.josm.plugins.ods.io.PrefetchStore;
 import org.openstreetmap.josm.plugins.ods.io.Status;
 import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+import org.openstreetmap.josm.tools.I18n;
 
 // TODO decide upon and document Class lifecycle
 public class OpenDataLayerDownloader implements LayerDownloader {
-    private static final int NTHREADS = 10;
-
     private final OdsModule module;
     private final List<FeatureDownloader> downloaders;
     private Status status = new Status();
     private DownloadRequest request;
     private DownloadResponse response;
+    private ProgressMonitor progressMonitor = NullProgressMonitor.INSTANCE;
 
-    private ExecutorService executor;
+    private DownloadExecutor.Batch batch;
 
     public OpenDataLayerDownloader(OdsModule module) {
         this.module = module;
@@ -55,52 +62,59 @@ public class OpenDataLayerDownloader implements LayerDownloader {
         return status;
     }
 
+    @Override
+    public void setProgressMonitor(ProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
     @Override
     public void prepare() {
-        executor = Executors.newFixedThreadPool(NTHREADS);
         status.clear();
-        for (final Downloader downloader : downloaders) {
-            executor.execute(downloader::prepare);
+        if (!runPhase(Downloader::prepare)) {
+            return;
         }
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
-                status.setTimedOut(true);
-                return;
+        for (Downloader downloader : downloaders) {
+            Status childStatus = downloader.getStatus();
+            if (!childStatus.isSucces()) {
+                this.status = childStatus;
+                break;
             }
         }
-        catch (InterruptedException e) {
-            executor.shutdownNow();
-            for (Downloader downloader : downloaders) {
-                downloader.cancel();
+    }
+
+    /**
+     * @return The sum of the expected feature counts, or -1 if none of the
+     *     feature downloaders knows its count.
+     */
+    @Override
+    public int getExpectedCount() {
+        int total = -1;
+        for (Downloader downloader : downloaders) {
+            int count = downloader.getExpectedCount();
+            if (count >= 0) {
+                total = Math.max(total, 0) + count;
             }
-            status.setCancelled(true);
-            status.setException(e);
-            return;
         }
+        return total;
     }
 
     @Override
     public void download() {
-        executor = Executors.newFixedThreadPool(NTHREADS);
         status.clear();
-        for (final Downloader downloader : downloaders) {
-            executor.execute(downloader::download);
+        int total = getExpectedCount();
+        progressMonitor.beginTask(I18n.tr("Downloading open data"), Math.max(0, total));
+        if (response == null) {
+            response = new DownloadResponse(request);
         }
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
-                status.setTimedOut(true);
-                return;
-            }
+        for (FeatureDownloader downloader : downloaders) {
+            // Streaming downloaders create their entities during the download
+            downloader.setResponse(response);
+            int ticks = Math.max(0, downloader.getExpectedCount());
+            downloader.setProgressMonitor(progressMonitor.createSubTaskMonitor(ticks, false));
         }
-        catch (InterruptedException e) {
-            executor.shutdownNow();
-            for (Downloader downloader : downloaders) {
-                downloader.cancel();
-            }
-            status.setCancelled(true);
-            status.setException(e);
+        boolean completed = runPhase(Downloader::download);
+        progressMonitor.finishTask();
+        if (!completed) {
             return;
         }
         for (Downloader downloader : downloaders) {
@@ -110,36 +124,139 @@ public class OpenDataLayerDownloader implements LayerDownloader {
                 break;
             }
         }
-        this.response = new DownloadResponse(request);
+        collectPartialStatus();
     }
 
     @Override
     public void process() {
-        executor = Executors.newFixedThreadPool(NTHREADS);
         status.clear();
-        for (final FeatureDownloader downloader : downloaders) {
+        for (FeatureDownloader downloader : downloaders) {
+            downloader.setResponse(response);
+        }
+        if (!runPhase(Downloader::process)) {
+            return;
+        }
+        addDataSource();
+    }
+
+    /**
+     * Mark the status as partial if some of the feature downloaders could
+     * only download a part of the area.
+     */
+    private void collectPartialStatus() {
+        if (!status.isSucces()) {
+            return;
+        }
+        List<String> messages = new LinkedList<>();
+        for (Downloader downloader : downloaders) {
+            Status childStatus = downloader.getStatus();
+            if (childStatus.isPartial()) {
+                messages.add(childStatus.getMessage());
+            }
+        }
+        if (!messages.isEmpty()) {
+            status.setPartial(true);
+            status.setMessage(String.join("\n", messages));
+        }
+    }
+
+    private void addDataSource() {
+        Boundary boundary = request.getBoundary();
+        DataSource ds = new DataSource(boundary.getBounds(), "Import");
+        OsmDataLayer osmDataLayer = module.getOpenDataLayerManager().getOsmDataLayer();
+        osmDataLayer.getDataSet().addDataSource(ds);
+    }
+
+    @Override
+    public Collection<? extends EntityStore<?>> getEntityStores() {
+        List<EntityStore<?>> stores = new ArrayList<>();
+        for (FeatureDownloader downloader : downloaders) {
+            stores.addAll(downloader.getEntityStores());
+        }
+        return stores;
+    }
+
+    @Override
+    public Status getStatus(EntityStore<?> store) {
+        for (FeatureDownloader downloader : downloaders) {
+            if (downloader.getEntityStores().contains(store)) {
+                return downloader.getStatus();
+            }
+        }
+        return getStatus();
+    }
+
+    /**
+     * Add a separate task for every feature downloader, so every feature
+     * type is processed as soon as its own download is complete.
+     */
+    @Override
+    public void addTasks(DownloadTaskGraph graph) {
+        status.clear();
+        List<DownloadTaskGraph.Task> tasks = new ArrayList<>(downloaders.size());
+        for (FeatureDownloader downloader : downloaders) {
             downloader.setResponse(response);
-            executor.execute(downloader::process);
+            tasks.add(graph.addTask(() -> {
+                downloader.prepare();
+                if (downloader.getStatus().isSucces()) {
+                    downloader.download();
+                }
+                if (downloader.getStatus().isSucces()) {
+                    downloader.process();
+                }
+            }, downloader.getStatus(), downloader.getEntityStores(), Collections.emptyList()));
         }
-        executor.shutdown();
+        graph.addTask(() -> {
+            for (Downloader downloader : downloaders) {
+                Status childStatus = downloader.getStatus();
+                if (!childStatus.isSucces()) {
+                    this.status = childStatus;
+                    return;
+                }
+            }
+            collectPartialStatus();
+            addDataSource();
+        }, status, tasks);
+    }
+
+    /**
+     * Run a download phase for all feature downloaders in parallel.
+     *
+     * @param phase The phase to run
+     * @return false if the phase timed out or was interrupted
+     */
+    private boolean runPhase(Consumer<Downloader> phase) {
+        List<Runnable> tasks = new ArrayList<>(downloaders.size());
+        for (Downloader downloader : downloaders) {
+            tasks.add(() -> phase.accept(downloader));
+        }
+        batch = DownloadExecutor.getInstance().start(tasks);
         try {
-            if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
+            if (!batch.await()) {
                 status.setTimedOut(true);
-                return;
+                return false;
             }
         }
-        catch (Exception e) {
-            executor.shutdownNow();
-            for (FeatureDownloader downloader : downloaders) {
+        catch (InterruptedException e) {
+            batch.cancel();
+            for (Downloader downloader : downloaders) {
                 downloader.cancel();
             }
+            status.setCancelled(true);
             status.setException(e);
-            return;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void prefetch(Boundary boundary, PrefetchStore store) {
+        for (Downloader downloader : downloaders) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            downloader.prefetch(boundary, store);
         }
-        Boundary boundary = request.getBoundary();
-        DataSource ds = new DataSource(boundary.getBounds(), "Import");
-        OsmDataLayer osmDataLayer = module.getOpenDataLayerManager().getOsmDataLayer();
-        osmDataLayer.getDataSet().addDataSource(ds);
     }
 
     public DownloadResponse getResponse() {
@@ -152,6 +269,8 @@ public class OpenDataLayerDownloader implements LayerDownloader {
         for (FeatureDownloader downloader : downloaders) {
             downloader.cancel();
         }
-        executor.shutdownNow();
+        if (batch != null) {
+            batch.cancel();
+        }
     }
 }
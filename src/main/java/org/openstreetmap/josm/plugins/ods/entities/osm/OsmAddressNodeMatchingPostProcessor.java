@@ -0,0 +1,49 @@
+package org.openstreetmap.josm.plugins.ods.entities.osm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openstreetmap.josm.plugins.ods.OdsModule;
+import org.openstreetmap.josm.plugins.ods.domains.buildings.OsmAddressNode;
+import org.openstreetmap.josm.plugins.ods.domains.buildings.OsmBuilding;
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
+import org.openstreetmap.josm.plugins.ods.io.DownloadResponse;
+import org.openstreetmap.josm.plugins.ods.io.PostProcessor;
+
+/**
+ * Post-processor that matches the downloaded OSM address nodes to the OSM
+ * buildings. It depends on the OSM building and address node stores only,
+ * so it doesn't wait for the open data download.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class OsmAddressNodeMatchingPostProcessor implements PostProcessor {
+    private final OdsModule module;
+
+    public OsmAddressNodeMatchingPostProcessor(OdsModule module) {
+        super();
+        this.module = module;
+    }
+
+    @Override
+    public Collection<? extends EntityStore<?>> getDependencies() {
+        OsmLayerManager layerManager = module.getOsmLayerManager();
+        List<EntityStore<?>> stores = new ArrayList<>(2);
+        EntityStore<OsmBuilding> buildingStore = layerManager.getEntityStore(OsmBuilding.class);
+        if (buildingStore != null) {
+            stores.add(buildingStore);
+        }
+        EntityStore<OsmAddressNode> addressNodeStore = layerManager.getEntityStore(OsmAddressNode.class);
+        if (addressNodeStore != null) {
+            stores.add(addressNodeStore);
+        }
+        return stores;
+    }
+
+    @Override
+    public void run(DownloadResponse response) {
+        module.getOsmLayerManager().getEntitiesBuilder().matchAddressNodes();
+    }
+}
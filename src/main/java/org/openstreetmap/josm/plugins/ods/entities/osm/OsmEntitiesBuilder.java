@@ -8,6 +8,7 @@ import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.plugins.ods.LayerManager;
 import org.openstreetmap.josm.plugins.ods.OdsModule;
 import org.openstreetmap.josm.plugins.ods.domains.buildings.OsmAddressNode;
+import org.openstreetmap.josm.plugins.ods.domains.buildings.OsmBuilding;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.matching.OsmAddressNodeToBuildingMatcher;
 
@@ -27,10 +28,24 @@ public class OsmEntitiesBuilder {
      *
      */
     public void build() {
+        if (buildEntities()) {
+            matchAddressNodes();
+        }
+    }
+
+    /**
+     * Build ODS entities from all primitives in the OSM layer, without
+     * matching the address nodes to the buildings. A download runs the
+     * matching as a post-processor.
+     *
+     * @return false if there is no OSM layer
+     */
+    public boolean buildEntities() {
         LayerManager layerManager = module.getOsmLayerManager();
         OsmDataLayer dataLayer = layerManager.getOsmDataLayer();
-        if (dataLayer == null) return;
-        build(dataLayer.getDataSet().allPrimitives());
+        if (dataLayer == null) return false;
+        buildEntities(dataLayer.getDataSet().allPrimitives());
+        return true;
     }
 
     /**
@@ -39,15 +54,28 @@ public class OsmEntitiesBuilder {
      * @param osmPrimitives
      */
     public void build(Collection<? extends OsmPrimitive> osmPrimitives) {
+        buildEntities(osmPrimitives);
+        matchAddressNodes();
+    }
+
+    private void buildEntities(Collection<? extends OsmPrimitive> osmPrimitives) {
         List<OsmEntityBuilder<?>> entityBuilders = module.getEntityBuilders();
         for (OsmPrimitive primitive : osmPrimitives) {
             for (OsmEntityBuilder<?> builder : entityBuilders) {
                 builder.buildOsmEntity(primitive);
             }
         }
+        OsmLayerManager layerManager = module.getOsmLayerManager();
+        layerManager.getEntityStores().forEach(EntityStore::batchComplete);
+    }
+
+    /**
+     * Find the building of every address node that has no building yet.
+     */
+    public void matchAddressNodes() {
         OsmLayerManager layerManager = module.getOsmLayerManager();
         EntityStore<OsmAddressNode> addressNodeStore = layerManager.getEntityStore(OsmAddressNode.class);
-        if (addressNodeStore != null) {
+        if (addressNodeStore != null && layerManager.getEntityStore(OsmBuilding.class) != null) {
             addressNodeStore.forEach(nodeToBuildingMatcher::match);
         }
     }
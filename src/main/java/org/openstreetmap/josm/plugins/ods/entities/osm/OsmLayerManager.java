@@ -1,5 +1,6 @@
 package org.openstreetmap.josm.plugins.ods.entities.osm;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,6 +9,7 @@ import org.openstreetmap.josm.plugins.ods.AbstractLayerManager;
 import org.openstreetmap.josm.plugins.ods.OdsModule;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.OsmEntity;
+import org.openstreetmap.josm.plugins.ods.util.LongObjectMap;
 
 /**
  * The OsmLayerManager manager the layer containing the data that has been
@@ -19,9 +21,9 @@ import org.openstreetmap.josm.plugins.ods.entities.OsmEntity;
 public class OsmLayerManager extends AbstractLayerManager {
     private final OsmEntitiesBuilder entitiesBuilder;
 
-    private final Map<Long, OsmEntity> nodeEntities = new HashMap<>();
-    private final Map<Long, OsmEntity> wayEntities = new HashMap<>();
-    private final Map<Long, OsmEntity> relationEntities = new HashMap<>();
+    private final LongObjectMap<OsmEntity> nodeEntities = new LongObjectMap<>();
+    private final LongObjectMap<OsmEntity> wayEntities = new LongObjectMap<>();
+    private final LongObjectMap<OsmEntity> relationEntities = new LongObjectMap<>();
     private final EntityStoreMap entityStoreMap = new EntityStoreMap();
 
     public OsmLayerManager(OdsModule module, String name) {
@@ -87,6 +89,13 @@ public class OsmLayerManager extends AbstractLayerManager {
         return entityStoreMap.get(clazz);
     }
 
+    /**
+     * @return all entity stores of this layer
+     */
+    public Collection<EntityStore<? extends OsmEntity>> getEntityStores() {
+        return entityStoreMap.stores.values();
+    }
+
     @Override
     public void deActivate() {
         super.deActivate();
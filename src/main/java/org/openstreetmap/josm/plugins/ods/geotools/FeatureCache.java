@@ -0,0 +1,251 @@
+package org.openstreetmap.josm.plugins.ods.geotools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.FeatureCodec;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Persistent on-disk cache for downloaded features.
+ * Every cache entry contains the complete result of a query for one feature
+ * type, one area and one filter. The area is usually a cell of a fixed grid. Entries older than the time-to-live
+ * are ignored. If the total size of the cache exceeds the maximum size, the
+ * least recently used entries are removed.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class FeatureCache {
+    private static final int MAGIC = 0x4f445346; // "ODSF"
+    private static final short VERSION = 2;
+    private static final String SUFFIX = ".features";
+
+    private final File directory;
+    private final long timeToLive;
+    private final long maxSize;
+
+    /**
+     * @param directory The directory for the cache files
+     * @param timeToLive The time to live of a cache entry in milliseconds
+     * @param maxSize The maximal total size of the cache files in bytes
+     */
+    public FeatureCache(File directory, long timeToLive, long maxSize) {
+        super();
+        this.directory = directory;
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Create the cache key for a query.
+     *
+     * @param featureType The feature type name
+     * @param area The (tile) area in the CRS of the feature source
+     * @param filter The data filter of the query, excluding the area filter
+     * @param properties The requested properties, or null for all properties
+     * @return The cache key
+     */
+    public static String createKey(String featureType, Geometry area, Filter filter, String[] properties) {
+        Geometry normalized = area.copy();
+        normalized.normalize();
+        StringBuilder sb = new StringBuilder();
+        sb.append(featureType).append('|');
+        sb.append(normalized.toText()).append('|');
+        sb.append(filter == null ? Filter.INCLUDE : filter).append('|');
+        sb.append(properties == null ? "*" : Arrays.toString(properties));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Pass the cached features for the given key to the consumer.
+     *
+     * @param key
+     * @param consumer
+     * @return true if a valid cache entry was found; false otherwise
+     * @throws IOException if the cache entry could not be read. The consumer
+     *     may have received some features in that case.
+     */
+    public boolean read(String key, Consumer<SimpleFeature> consumer) throws IOException {
+        File file = getFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return false;
+            }
+            long created = in.readLong();
+            if (System.currentTimeMillis() - created > timeToLive) {
+                return false;
+            }
+            DataInputStream data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+            if (data.readBoolean()) {
+                SimpleFeatureType featureType = FeatureCodec.readType(data);
+                SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+                FeatureCodec codec = new FeatureCodec();
+                while (data.readBoolean()) {
+                    consumer.accept(codec.readFeature(data, builder));
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (EOFException e) {
+            throw new IOException("Incomplete feature cache entry: " + file, e);
+        }
+        // Mark the entry as recently used
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Remove the cache entry for the given key.
+     *
+     * @param key
+     */
+    public void invalidate(String key) {
+        getFile(key).delete();
+    }
+
+    /**
+     * Create a writer for a new cache entry. The entry becomes visible
+     * when the writer is committed.
+     *
+     * @param key
+     * @return The writer
+     * @throws IOException
+     */
+    public EntryWriter createWriter(String key) throws IOException {
+        return new EntryWriter(key);
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    /**
+     * Remove the least recently used cache entries until the total size
+     * is below the maximal size.
+     */
+    synchronized void evict() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long totalSize = 0;
+        for (File file : files) {
+            totalSize += file.length();
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalSize -= length;
+            }
+        }
+    }
+
+    public class EntryWriter {
+        private final String key;
+        private final File tempFile;
+        private final DataOutputStream out;
+        private final FeatureCodec codec = new FeatureCodec();
+        private boolean typeWritten = false;
+
+        EntryWriter(String key) throws IOException {
+            this.key = key;
+            directory.mkdirs();
+            this.tempFile = File.createTempFile(key, ".tmp", directory);
+            DataOutputStream header = new DataOutputStream(new FileOutputStream(tempFile));
+            header.writeInt(MAGIC);
+            header.writeShort(VERSION);
+            header.writeLong(System.currentTimeMillis());
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(header, new Deflater(Deflater.BEST_SPEED))));
+        }
+
+        public void write(SimpleFeature feature) throws IOException {
+            if (!typeWritten) {
+                out.writeBoolean(true);
+                FeatureCodec.writeType(out, feature.getFeatureType());
+                typeWritten = true;
+            }
+            out.writeBoolean(true);
+            codec.writeFeature(out, feature);
+        }
+
+        /**
+         * Complete the cache entry and make it available for reading.
+         *
+         * @throws IOException
+         */
+        public void commit() throws IOException {
+            try {
+                // Marks the end of the features, or an empty result if no
+                // feature type was written
+                out.writeBoolean(false);
+                out.close();
+                Files.move(tempFile.toPath(), getFile(key).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+            evict();
+        }
+
+        /**
+         * Discard the cache entry.
+         */
+        public void abort() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Logging.trace(e);
+            }
+            tempFile.delete();
+        }
+    }
+}
@@ -5,7 +5,11 @@ import java.util.Collections;
 import java.util.List;
 
 import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
 import org.opengis.feature.FeatureVisitor;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.openstreetmap.josm.plugins.ods.DefaultIdFactory;
 import org.openstreetmap.josm.plugins.ods.IdFactory;
 import org.openstreetmap.josm.plugins.ods.InitializationException;
@@ -13,12 +17,23 @@ import org.openstreetmap.josm.plugins.ods.OdsDataSource;
 import org.openstreetmap.josm.plugins.ods.metadata.MetaData;
 
 public class GtDataSource implements OdsDataSource {
+    private final static FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
     private GtFeatureSource gtFeatureSource;
     private Query query;
     private IdFactory idFactory;
-    private boolean initialized;
     private boolean required;
     private final int pageSize;
+    private int prefetchCount = 1;
+    private String sortKey;
+    private List<String> uniqueKey = Collections.emptyList();
+    private PagingStrategy pagingStrategy = PagingStrategy.OFFSET;
+    private boolean streaming = false;
+    private double tileSize = 0.0;
+    private int featuresPerTile = 0;
+    private int tileParallelism = 4;
+    private FeatureCache featureCache;
+    private PageSizePolicy pageSizePolicy;
     private List<FilterFactory> filters;
 
     public GtDataSource(GtFeatureSource gtFeatureSource, int pageSize, Query query) {
@@ -39,10 +54,9 @@ public class GtDataSource implements OdsDataSource {
     }
     
     public void initialize() throws InitializationException {
-        if (!initialized) {
-            gtFeatureSource.initialize();
-            initialized = true;
-        }
+        // The feature source keeps track of its own state, so it can connect
+        // again after a failed background connection.
+        gtFeatureSource.initialize();
     }
 
     @Override
@@ -65,6 +79,153 @@ public class GtDataSource implements OdsDataSource {
         return pageSize;
     }
 
+    /**
+     * Get the adaptive page size policy.
+     *
+     * @return the policy, or null if the page size is fixed
+     */
+    public PageSizePolicy getPageSizePolicy() {
+        return pageSizePolicy;
+    }
+
+    public void setPageSizePolicy(PageSizePolicy pageSizePolicy) {
+        this.pageSizePolicy = pageSizePolicy;
+    }
+
+    /**
+     * Get the number of pages that may be in flight at the same time when
+     * paging through the results. 1 means no prefetching.
+     *
+     * @return the number of prefetched pages
+     */
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public void setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = Math.max(1, prefetchCount);
+    }
+
+    /**
+     * Get the property used to sort the features when paging.
+     *
+     * @return the sort property, or null if the results don't need to be sorted
+     */
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public void setSortKey(String sortKey) {
+        this.sortKey = sortKey;
+    }
+
+    public List<String> getUniqueKey() {
+        return uniqueKey;
+    }
+
+    public void setUniqueKey(List<String> uniqueKey) {
+        this.uniqueKey = (uniqueKey == null ? Collections.emptyList() : uniqueKey);
+    }
+
+    /**
+     * Get the sort order for offset paging. Without a deterministic sort
+     * order, the server may return the features in a different order for
+     * every page, so pages could overlap or skip features.
+     * The sort key is used if there is one. Otherwise the features are sorted
+     * on all properties of the unique key.
+     *
+     * @return the sort order, or null if there is no deterministic sort order
+     *     for this data source
+     */
+    public SortBy[] getPageSortBy() {
+        if (sortKey != null) {
+            return new SortBy[] {ff.sort(sortKey, SortOrder.ASCENDING)};
+        }
+        if (uniqueKey.isEmpty()) {
+            return null;
+        }
+        SortBy[] sortBy = new SortBy[uniqueKey.size()];
+        for (int i = 0; i < sortBy.length; i++) {
+            sortBy[i] = ff.sort(uniqueKey.get(i), SortOrder.ASCENDING);
+        }
+        return sortBy;
+    }
+
+    public PagingStrategy getPagingStrategy() {
+        return pagingStrategy;
+    }
+
+    public void setPagingStrategy(PagingStrategy pagingStrategy) {
+        this.pagingStrategy = pagingStrategy;
+    }
+
+    /**
+     * Check if downloaded features should be converted to entities while
+     * they are being downloaded, in stead of collecting them first.
+     *
+     * @return true if streaming is enabled
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Get the size of the tiles the download area is split into. The size
+     * is expressed in the units of the feature source's CRS.
+     * 0 means the tile size is not fixed.
+     *
+     * @return the tile size
+     */
+    public double getTileSize() {
+        return tileSize;
+    }
+
+    public void setTileSize(double tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Get the desired number of features per tile. If the tile size is not
+     * fixed, the number of tiles is derived from the feature count of the
+     * download area. 0 means the download area is not split.
+     *
+     * @return the number of features per tile
+     */
+    public int getFeaturesPerTile() {
+        return featuresPerTile;
+    }
+
+    public void setFeaturesPerTile(int featuresPerTile) {
+        this.featuresPerTile = featuresPerTile;
+    }
+
+    /**
+     * @return the maximal number of tiles that is downloaded in parallel
+     */
+    public int getTileParallelism() {
+        return tileParallelism;
+    }
+
+    public void setTileParallelism(int tileParallelism) {
+        this.tileParallelism = Math.max(1, tileParallelism);
+    }
+
+    /**
+     * @return the cache for downloaded features, or null if the features
+     *     are not cached
+     */
+    public FeatureCache getFeatureCache() {
+        return featureCache;
+    }
+
+    public void setFeatureCache(FeatureCache featureCache) {
+        this.featureCache = featureCache;
+    }
+
     @Override
     public void setIdFactory(DefaultIdFactory idFactory) {
         this.idFactory = idFactory;
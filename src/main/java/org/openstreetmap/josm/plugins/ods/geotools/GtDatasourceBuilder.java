@@ -13,6 +13,18 @@ public class GtDatasourceBuilder {
     private List<String> uniqueKey;
     private List<FilterFactory> filters = new LinkedList<>();
     private int pageSize = 0;
+    private int prefetchCount = 1;
+    private String sortKey;
+    private PagingStrategy pagingStrategy = PagingStrategy.OFFSET;
+    private boolean streaming = false;
+    private double tileSize = 0.0;
+    private int featuresPerTile = 0;
+    private int tileParallelism = 4;
+    private FeatureCache featureCache;
+    private int minPageSize = 0;
+    private int maxPageSize = 0;
+    private long targetPageDuration = 2000;
+    private long maxPageBytes = 4 * 1024 * 1024;
     
     public void setFeatureSource(GtFeatureSource featureSource) {
         this.featureSource = featureSource;
@@ -33,14 +45,130 @@ public class GtDatasourceBuilder {
         this.pageSize = pageSize;
     }
     
+    /**
+     * Adapt the page size to the throughput of the server and the size of
+     * the features. The page size set with setPageSize is used for the
+     * first page. The maximal page size never exceeds the maximal number of
+     * features of the host.
+     *
+     * @param minPageSize
+     * @param maxPageSize
+     */
+    public void setAdaptivePageSize(int minPageSize, int maxPageSize) {
+        this.minPageSize = minPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * @param targetPageDuration The desired duration of a page request in
+     *     milliseconds, when using an adaptive page size.
+     */
+    public void setTargetPageDuration(long targetPageDuration) {
+        this.targetPageDuration = targetPageDuration;
+    }
+
+    /**
+     * @param maxPageBytes The maximal estimated size of a page in bytes,
+     *     when using an adaptive page size.
+     */
+    public void setMaxPageBytes(long maxPageBytes) {
+        this.maxPageBytes = maxPageBytes;
+    }
+
+    public void setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = prefetchCount;
+    }
+
+    /**
+     * Set the property to sort on when paging. If no sort key is set and the
+     * unique key consists of a single property, that property is used.
+     *
+     * @param sortKey
+     */
+    public void setSortKey(String sortKey) {
+        this.sortKey = sortKey;
+    }
+
+    public void setPagingStrategy(PagingStrategy pagingStrategy) {
+        this.pagingStrategy = pagingStrategy;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Split the download area in tiles of a fixed size.
+     *
+     * @param tileSize The tile size in units of the feature source's CRS
+     */
+    public void setTileSize(double tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Split the download area in tiles, based on the number of features
+     * in the download area.
+     *
+     * @param featuresPerTile
+     */
+    public void setFeaturesPerTile(int featuresPerTile) {
+        this.featuresPerTile = featuresPerTile;
+    }
+
+    public void setTileParallelism(int tileParallelism) {
+        this.tileParallelism = tileParallelism;
+    }
+
+    /**
+     * Store the downloaded features in a persistent cache. The features
+     * are cached per tile.
+     *
+     * @param featureCache
+     */
+    public void setFeatureCache(FeatureCache featureCache) {
+        this.featureCache = featureCache;
+    }
+
     public GtDataSource build() {
         Query query = createQuery();
         if (uniqueKey != null) {
             filters.add(new UniqueKeyFilterFactory(uniqueKey));
         }
-        return new GtDataSource(featureSource, pageSize, query, filters);
+        GtDataSource dataSource = new GtDataSource(featureSource, pageSize, query, filters);
+        dataSource.setPrefetchCount(prefetchCount);
+        dataSource.setSortKey(getSortKey());
+        dataSource.setUniqueKey(uniqueKey);
+        dataSource.setPagingStrategy(pagingStrategy);
+        dataSource.setStreaming(streaming);
+        dataSource.setTileSize(tileSize);
+        dataSource.setFeaturesPerTile(featuresPerTile);
+        dataSource.setTileParallelism(tileParallelism);
+        dataSource.setFeatureCache(featureCache);
+        dataSource.setPageSizePolicy(createPageSizePolicy());
+        return dataSource;
+    }
+
+    private PageSizePolicy createPageSizePolicy() {
+        if (pageSize <= 0 || maxPageSize <= 0) {
+            return null;
+        }
+        int max = maxPageSize;
+        Integer hostMax = featureSource.getHost().getMaxFeatures();
+        if (hostMax != null && hostMax > 0) {
+            max = Math.min(max, hostMax);
+        }
+        int min = Math.max(1, Math.min(minPageSize, max));
+        return new PageSizePolicy(pageSize, min, max, targetPageDuration, maxPageBytes);
     }
     
+    private String getSortKey() {
+        if (sortKey == null && uniqueKey != null && uniqueKey.size() == 1) {
+            return uniqueKey.get(0);
+        }
+        return sortKey;
+    }
+
     private Query createQuery() {
         return new Query(featureSource.getFeatureName(), Filter.INCLUDE, properties.toArray(new String[0]));
     }
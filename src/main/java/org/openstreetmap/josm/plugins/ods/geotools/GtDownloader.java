@@ -1,38 +1,70 @@
 package org.openstreetmap.josm.plugins.ods.geotools;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.geotools.data.Query;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.factory.CommonFactoryFinder;
-import org.geotools.feature.DefaultFeatureCollection;
 import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory2;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.plugins.ods.InitializationException;
 import org.openstreetmap.josm.plugins.ods.crs.CRSException;
 import org.openstreetmap.josm.plugins.ods.crs.CRSUtil;
 import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.OdEntity;
 import org.openstreetmap.josm.plugins.ods.entities.opendata.FeatureDownloader;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.CachingFeatureReader;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.GridCachingFeatureReader;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.KeysetPagingFeatureReader;
 import org.openstreetmap.josm.plugins.ods.geotools.impl.PagingFeatureReader;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.PrefetchedFeatureReader;
 import org.openstreetmap.josm.plugins.ods.geotools.impl.SimpleFeatureReader;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.TiledFeatureReader;
+import org.openstreetmap.josm.plugins.ods.io.DownloadCheckpoint;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
 import org.openstreetmap.josm.plugins.ods.io.DownloadRequest;
 import org.openstreetmap.josm.plugins.ods.io.DownloadResponse;
+import org.openstreetmap.josm.plugins.ods.io.PrefetchStore;
 import org.openstreetmap.josm.plugins.ods.io.Status;
+import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+import org.openstreetmap.josm.plugins.ods.jts.GridTiler;
 import org.openstreetmap.josm.tools.I18n;
 import org.openstreetmap.josm.tools.Logging;
 
 public class GtDownloader<T extends OdEntity> implements FeatureDownloader {
+    // Report the download progress once per this number of features
+    private static final int PROGRESS_INTERVAL = 100;
+    // Approximate length of a degree at the equator
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
     private final GtDataSource dataSource;
     private final CRSUtil crsUtil;
     private DownloadRequest request;
     private DownloadResponse response;
-    private SimpleFeatureSource featureSource;
     private Query query;
-    DefaultFeatureCollection downloadedFeatures;
+    private List<Geometry> tiles = Collections.emptyList();
+    private List<Query> queries = Collections.emptyList();
+    // The keys of the prefetched data for this download, if any
+    private List<String> prefetched;
+    List<SimpleFeature> downloadedFeatures = Collections.emptyList();
+    private List<T> streamedEntities = new ArrayList<>();
+    private int featureCount;
+    private int expectedCount = -1;
+    // The parts of the download area, in the OSM CRS, that could not be downloaded in time
+    private List<Geometry> missingAreas = Collections.emptyList();
+    private ProgressMonitor progressMonitor = NullProgressMonitor.INSTANCE;
     private final EntityStore<T> entityStore;
     private final Status status = new Status();
     private final GtEntityFactory<T> entityFactory;
@@ -61,29 +93,75 @@ public class GtDownloader<T extends OdEntity> implements FeatureDownloader {
         return status;
     }
 
+    @Override
+    public void setProgressMonitor(ProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
+    /**
+     * @return The feature count of the pre-flight query, or -1 if the
+     *     data source couldn't tell.
+     */
+    @Override
+    public int getExpectedCount() {
+        return expectedCount;
+    }
+
     @Override
     public void prepare() {
         status.clear();
+        queries = Collections.emptyList();
+        prefetched = null;
+        expectedCount = -1;
         try {
             // TODO rename dataSource.initialize() to prepare()
             dataSource.initialize();
             GtFeatureSource gtFeatureSource = dataSource.getOdsFeatureSource();
             // TODO check if selected boundaries overlap with
             // featureSource boundaries;
-            featureSource = gtFeatureSource.getFeatureSource();
-            query = dataSource.getQuery();
-            // Clone the query, so we can moderate the filter by setting the download area.
-            query = new Query(query);
-            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
-            String geometryProperty = gtFeatureSource.getFeatureType()
-                    .getGeometryDescriptor().getLocalName();
-            Filter filter = query.getFilter();
-            filter = ff.intersects(ff.property(geometryProperty), ff.literal(getArea()));
-            Filter dataFilter = dataSource.getQuery().getFilter();
-            if (dataFilter != null) {
-                filter = ff.and(filter, dataFilter);
+            // If the feature source is still connecting in the background,
+            // the download is prepared with the cached metadata and the
+            // feature count is skipped. The readers wait for the connection.
+            boolean connected = !gtFeatureSource.isConnecting();
+            if (connected) {
+                gtFeatureSource.awaitConnection();
+            }
+            Boundary boundary = getDownloadBoundary();
+            if (boundary == null) {
+                // The whole area has been downloaded before
+                return;
+            }
+            Geometry area = getArea(boundary, gtFeatureSource.getCrs());
+            query = createQuery(area);
+            prefetched = findPrefetched(boundary);
+            if (prefetched != null) {
+                // Served from the prefetch store; no need to ask the server
+                tiles = Collections.singletonList(area);
+                queries = Collections.singletonList(query);
+                return;
+            }
+            // Ask for the number of features before downloading anything,
+            // so an oversized area can be rejected straight away.
+            if (connected) {
+                expectedCount = getFeatureCount(query);
+            }
+            tiles = createTiles(area);
+            // The host limit applies to a single request. Tiled and paged
+            // downloads split the area in requests below the limit.
+            long maxFeatures = getMaxFeatures();
+            if (maxFeatures > 0 && expectedCount >= maxFeatures
+                    && tiles.size() == 1 && !isPaged()) {
+                String featureType = dataSource.getFeatureType();
+                status.setMessage(I18n.tr(
+                        "To many {0} objects. Please choose a smaller download area.", featureType));
+                status.setFailed(true);
+                return;
+            }
+            entityStore.ensureCapacity(Math.max(0, expectedCount));
+            queries = new ArrayList<>(tiles.size());
+            for (Geometry tile : tiles) {
+                queries.add(createQuery(tile));
             }
-            query.setFilter(filter);
         } catch (InitializationException e) {
             Logging.error(e);
             status.setException(e);
@@ -91,15 +169,144 @@ public class GtDownloader<T extends OdEntity> implements FeatureDownloader {
         return;
     }
 
+    /**
+     * Create a query for the given (sub-)area.
+     *
+     * @param area The area in the CRS of the feature source
+     * @return The query
+     */
+    private Query createQuery(Geometry area) {
+        // Clone the query, so we can moderate the filter by setting the download area.
+        Query q = new Query(dataSource.getQuery());
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        String geometryProperty = dataSource.getOdsFeatureSource().getFeatureType()
+                .getGeometryDescriptor().getLocalName();
+        Filter filter = ff.intersects(ff.property(geometryProperty), ff.literal(area));
+        Filter dataFilter = dataSource.getQuery().getFilter();
+        if (dataFilter != null) {
+            filter = ff.and(filter, dataFilter);
+        }
+        q.setFilter(filter);
+        return q;
+    }
+
+    /**
+     * Split the download area into tiles. If the data source has a fixed
+     * tile size, that size is used. Otherwise, if a number of features per
+     * tile was configured, the number of tiles is derived from the feature
+     * count of the complete area.
+     * If the data source has a feature cache, the tiles are aligned to the
+     * grid of the cache, so every cache cell is downloaded by a single tile.
+     *
+     * @param area The download area in the CRS of the feature source
+     * @return The tiles. A single tile if the area doesn't need to be split.
+     */
+    private List<Geometry> createTiles(Geometry area) {
+        GridTiler tiler = null;
+        if (dataSource.getTileSize() > 0) {
+            tiler = new GridTiler(dataSource.getTileSize());
+        }
+        else if (dataSource.getFeaturesPerTile() > 0) {
+            if (expectedCount > dataSource.getFeaturesPerTile()) {
+                int tileCount = (expectedCount + dataSource.getFeaturesPerTile() - 1) / dataSource.getFeaturesPerTile();
+                tiler = GridTiler.forTileCount(area.getEnvelopeInternal(), tileCount);
+            }
+        }
+        List<Geometry> result = null;
+        if (tiler != null && dataSource.getFeatureCache() != null) {
+            result = alignToCacheGrid(tiler).splitAligned(area);
+        }
+        else if (tiler != null) {
+            result = tiler.split(area);
+        }
+        if (result == null || result.isEmpty()) {
+            return Collections.singletonList(area);
+        }
+        return result;
+    }
+
+    /**
+     * Round the tile size up to a multiple of the cell size of the cache grid.
+     *
+     * @param tiler The tiler for the download area
+     * @return A tiler with the rounded tile size
+     */
+    private GridTiler alignToCacheGrid(GridTiler tiler) {
+        GridTiler cacheGrid = getCacheGrid();
+        double cellWidth = cacheGrid.getTileWidth();
+        double cellHeight = cacheGrid.getTileHeight();
+        return new GridTiler(Math.max(1, Math.ceil(tiler.getTileWidth() / cellWidth - 1e-9)) * cellWidth,
+                Math.max(1, Math.ceil(tiler.getTileHeight() / cellHeight - 1e-9)) * cellHeight);
+    }
+
+    /**
+     * Ask the feature source for the number of features that match the query.
+     *
+     * @param q
+     * @return The feature count, or -1 if the count is unknown.
+     */
+    private int getFeatureCount(Query q) {
+        try {
+            return dataSource.getOdsFeatureSource().getFeatureSource().getCount(q);
+        } catch (IOException e) {
+            Logging.warn(e);
+            return -1;
+        }
+    }
+
+    private long getMaxFeatures() {
+        Integer maxFeatures = dataSource.getOdsFeatureSource().getHost().getMaxFeatures();
+        return maxFeatures == null ? 0 : maxFeatures;
+    }
+
+    /**
+     * Get the boundary of the area to download. For an incremental download,
+     * this is the part of the requested area that is not covered by the
+     * entity store yet.
+     *
+     * @return The boundary, or null if there is nothing to download
+     */
+    private Boundary getDownloadBoundary() {
+        if (!request.isIncremental()) {
+            return request.getBoundary();
+        }
+        return request.getBoundary().difference(entityStore.getBoundary());
+    }
+
+    /**
+     * Find the prefetched data for the part of the download area that is not
+     * covered by the entity store yet.
+     *
+     * @param boundary The download boundary
+     * @return The keys of the prefetched data, or null if the prefetched data
+     *     doesn't cover the area
+     */
+    private List<String> findPrefetched(Boundary boundary) {
+        PrefetchStore store = request.getPrefetchStore();
+        if (store == null) {
+            return null;
+        }
+        Geometry needed = boundary.getMultiPolygon().difference(entityStore.getBoundary());
+        List<PrefetchStore.Entry> entries = store.findCovering(dataSource.getFeatureType(), needed);
+        if (entries == null) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>(entries.size());
+        entries.forEach(entry -> keys.add(entry.getKey()));
+        Logging.debug("Using prefetched data for {0}", dataSource.getFeatureType());
+        return keys;
+    }
+
     /**
      * Get the download area and transform to the desired
      * CoordinateReferenceSystem
      *
+     * @param boundary The download boundary
+     * @param targetCRS The CRS of the feature source
      * @return The transformed geometry
      */
-    private Geometry getArea() {
-        CoordinateReferenceSystem targetCRS = featureSource.getInfo().getCRS();
-        Geometry area = request.getBoundary().getMultiPolygon();
+    private Geometry getArea(Boundary boundary, CoordinateReferenceSystem targetCRS) {
+        Geometry area = boundary.getMultiPolygon();
         if (!targetCRS.equals(CRSUtil.OSM_CRS)) {
             try {
                 area = crsUtil.fromOsm(area, targetCRS);
@@ -112,16 +319,43 @@ public class GtDownloader<T extends OdEntity> implements FeatureDownloader {
 
     @Override
     public void download() {
-        downloadedFeatures = new DefaultFeatureCollection();
-        GtFeatureReader reader;
-        if (dataSource.getPageSize() > 0) {
-            reader = new PagingFeatureReader(dataSource, query);
+        int capacity = Math.max(10, expectedCount);
+        featureCount = 0;
+        if (queries.isEmpty()) {
+            downloadedFeatures = Collections.emptyList();
+            streamedEntities = new ArrayList<>();
+            return;
+        }
+        if (dataSource.isStreaming()) {
+            downloadedFeatures = Collections.emptyList();
+            streamedEntities = new ArrayList<>(capacity);
         }
         else {
-            reader = new SimpleFeatureReader(dataSource, query);
+            downloadedFeatures = new ArrayList<>(capacity);
+            streamedEntities = new ArrayList<>();
+        }
+        missingAreas = Collections.emptyList();
+        GtFeatureReader reader = createReader();
+        FeatureVisitor sink;
+        if (dataSource.isStreaming()) {
+            sink = createStreamingSink();
         }
+        else {
+            sink = feature -> downloadedFeatures.add((SimpleFeature) feature);
+        }
+        // The filters of the data source take care of features that were
+        // retrieved more than once, for example on the border of 2 tiles.
+        FeatureVisitor visitor = dataSource.createVisitor(sink);
+        progressMonitor.beginTask(I18n.tr("Downloading {0}", dataSource.getFeatureType()),
+                Math.max(0, expectedCount));
         try {
-            reader.read(downloadedFeatures::add, null);
+            reader.read(feature -> {
+                featureCount++;
+                visitor.visit(feature);
+                if (featureCount % PROGRESS_INTERVAL == 0) {
+                    progressMonitor.worked(PROGRESS_INTERVAL);
+                }
+            }, null);
         } catch (DataCutOffException e) {
             String featureType = dataSource.getFeatureType();
             status.setMessage(I18n.tr(
@@ -129,13 +363,29 @@ public class GtDownloader<T extends OdEntity> implements FeatureDownloader {
             status.setCancelled(true);
             Thread.currentThread().interrupt();
             downloadedFeatures.clear();
+            discardStreamedEntities();
         }
         catch (IOException e) {
             Logging.warn(e);
             status.setException(e);
+            discardStreamedEntities();
+            return;
+        }
+        finally {
+            progressMonitor.finishTask();
+        }
+        if (Thread.currentThread().isInterrupted() && status.isSucces()) {
+            // The reader stopped before all features were read. Treat this
+            // as a cancelled download, so no incomplete data is kept.
+            status.setCancelled(true);
+            downloadedFeatures.clear();
+            discardStreamedEntities();
             return;
         }
-        if (downloadedFeatures.isEmpty()) {
+        if (reader instanceof TiledFeatureReader) {
+            collectMissingAreas(((TiledFeatureReader) reader).getIncompleteTiles());
+        }
+        if (featureCount == 0) {
             if (dataSource.isRequired()) {
                 String featureType = dataSource.getFeatureType();
                 status.setMessage(I18n.tr("The selected download area contains no {0} objects.",
@@ -148,15 +398,222 @@ public class GtDownloader<T extends OdEntity> implements FeatureDownloader {
         }
     }
 
+    /**
+     * Create a feature visitor that turns each feature into an entity straight
+     * away. This way the raw features don't have to be kept in memory until
+     * the process phase.
+     *
+     * @return the visitor
+     */
+    private FeatureVisitor createStreamingSink() {
+        return feature -> {
+            T entity = entityFactory.create((SimpleFeature) feature, response);
+            if (!entityStore.contains(entity.getPrimaryId())) {
+                entityStore.add(entity);
+                streamedEntities.add(entity);
+            }
+        };
+    }
+
+    /**
+     * Remove the entities that were added while streaming a download that
+     * didn't complete.
+     */
+    private void discardStreamedEntities() {
+        streamedEntities.forEach(entityStore::remove);
+        streamedEntities.clear();
+    }
+
+    private GtFeatureReader createReader() {
+        if (prefetched != null) {
+            FeatureCache cache = request.getPrefetchStore().getFeatureCache();
+            return new PrefetchedFeatureReader(cache, prefetched, tiles.get(0),
+                    createReader(query, tiles.get(0)));
+        }
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        boolean partial = executor.isPartialResultsEnabled();
+        if (queries.size() <= 1 && !partial) {
+            return createReader(query, tiles.get(0));
+        }
+        List<GtFeatureReader> tileReaders = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            tileReaders.add(createReader(queries.get(i), tiles.get(i)));
+        }
+        if (partial) {
+            return new TiledFeatureReader(tileReaders, dataSource.getTileParallelism(),
+                    executor.getPartialTimeout(request.getDeadline()));
+        }
+        return new TiledFeatureReader(tileReaders, dataSource.getTileParallelism());
+    }
+
+    /**
+     * Record the areas of the tiles that were not downloaded completely.
+     *
+     * @param incompleteTiles The indexes of the incomplete tiles
+     */
+    private void collectMissingAreas(List<Integer> incompleteTiles) {
+        if (incompleteTiles.isEmpty()) {
+            return;
+        }
+        CoordinateReferenceSystem crs = dataSource.getOdsFeatureSource().getCrs();
+        List<Geometry> areas = new ArrayList<>(incompleteTiles.size());
+        for (Integer tile : incompleteTiles) {
+            Geometry area = tiles.get(tile);
+            if (!crs.equals(CRSUtil.OSM_CRS)) {
+                try {
+                    area = crsUtil.toOsm(area, crs);
+                } catch (CRSException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            areas.add(area);
+        }
+        missingAreas = areas;
+        status.setPartial(true);
+        status.setMessage(I18n.tr("{0} of {1} parts of the {2} download are missing.",
+                incompleteTiles.size(), tiles.size(), dataSource.getFeatureType()));
+        Logging.warn(status.getMessage());
+    }
+
+    /**
+     * @return The parts of the download area, in the OSM CRS, that could not
+     *     be downloaded.
+     */
+    public List<Geometry> getMissingAreas() {
+        return missingAreas;
+    }
+
+    /**
+     * Create a reader for the query of a single tile. If the data source has
+     * a feature cache, the reader will use it. The feature cache is keyed on
+     * the cells of a fixed grid, so overlapping downloads share cache
+     * entries. Otherwise, the reader uses the checkpoint of the download, if
+     * any. The checkpoint is keyed on the tile, because a resumed download
+     * has the same tiles.
+     */
+    private GtFeatureReader createReader(Query q, Geometry tile) {
+        Query dataQuery = dataSource.getQuery();
+        FeatureCache cache = dataSource.getFeatureCache();
+        if (cache != null) {
+            long maxFeatures = isPaged() ? 0 : dataSource.getOdsFeatureSource().getMaxFeatureCount();
+            return new GridCachingFeatureReader(cache, getCacheGrid(), tile,
+                    cell -> FeatureCache.createKey(dataSource.getFeatureType(), cell,
+                            dataQuery.getFilter(), dataQuery.getPropertyNames()),
+                    area -> createReader(createQuery(area)), maxFeatures);
+        }
+        GtFeatureReader reader = createReader(q);
+        if (request.getCheckpoint() == null) {
+            return reader;
+        }
+        String key = FeatureCache.createKey(dataSource.getFeatureType(), tile,
+                dataQuery.getFilter(), dataQuery.getPropertyNames());
+        return new CachingFeatureReader(reader, request.getCheckpoint().getFeatureCache(), key);
+    }
+
+    /**
+     * Get the grid of the feature cache. The cells have the tile size of the
+     * data source, or else the size in meters of the 'ods.cache.cell.size'
+     * preference. The tiles of the download are aligned to this grid.
+     *
+     * @return the grid
+     */
+    private GridTiler getCacheGrid() {
+        double cellSize = dataSource.getTileSize();
+        if (cellSize <= 0) {
+            cellSize = Preferences.main().getDouble("ods.cache.cell.size", 1000.0);
+            if (dataSource.getOdsFeatureSource().getCrs() instanceof GeographicCRS) {
+                cellSize /= METERS_PER_DEGREE;
+            }
+        }
+        return new GridTiler(cellSize);
+    }
+
+    private GtFeatureReader createReader(Query q) {
+        if (!isPaged()) {
+            return new SimpleFeatureReader(dataSource, q);
+        }
+        // Don't page if the pre-flight count shows that a single page is enough
+        if (tiles.size() == 1 && expectedCount >= 0 && expectedCount < dataSource.getPageSize()) {
+            return new SimpleFeatureReader(dataSource, q);
+        }
+        if (dataSource.getPagingStrategy() == PagingStrategy.KEYSET) {
+            if (dataSource.getSortKey() != null) {
+                return new KeysetPagingFeatureReader(dataSource, q);
+            }
+            Logging.warn("Keyset paging requires a sort key. Falling back to offset paging for {0}",
+                    dataSource.getFeatureType());
+        }
+        return new PagingFeatureReader(dataSource, q);
+    }
+
+    /**
+     * Check if the features can be downloaded in pages. Offset paging needs a
+     * deterministic sort order. Without one, the features are downloaded with
+     * a single request.
+     *
+     * @return true if the download should be paged
+     */
+    private boolean isPaged() {
+        if (dataSource.getPageSize() <= 0) {
+            return false;
+        }
+        if (dataSource.getPageSortBy() == null) {
+            Logging.warn("{0} has no sort key or unique key. Downloading it without paging",
+                    dataSource.getFeatureType());
+            return false;
+        }
+        return true;
+    }
+
     @Override
     public void process() {
+        // In streaming mode, the entities have been created during the download
         for (SimpleFeature feature : downloadedFeatures) {
             T entity = entityFactory.create(feature, response);
             if (!entityStore.contains(entity.getPrimaryId())) {
                 entityStore.add(entity);
             }
         }
-        entityStore.extendBoundary(request.getBoundary().getMultiPolygon());
+        entityStore.batchComplete();
+        streamedEntities.clear();
+        // Leave the missing areas out of the boundary, so an incremental
+        // download will retry them
+        Geometry boundary = request.getBoundary().getMultiPolygon();
+        for (Geometry missingArea : missingAreas) {
+            boundary = boundary.difference(missingArea);
+        }
+        entityStore.extendBoundary(boundary);
+    }
+
+    /**
+     * Fetch the features of an area into the prefetch store. Only uses the
+     * data source, so it can run next to a foreground download.
+     */
+    @Override
+    public void prefetch(Boundary boundary, PrefetchStore store) {
+        String featureType = dataSource.getFeatureType();
+        try {
+            dataSource.initialize();
+            SimpleFeatureSource source = dataSource.getOdsFeatureSource().getFeatureSource();
+            Geometry area = getArea(boundary, source.getInfo().getCRS());
+            Query q = createQuery(area);
+            GtFeatureReader reader = (isPaged() ? new PagingFeatureReader(dataSource, q)
+                    : new SimpleFeatureReader(dataSource, q));
+            String key = DownloadCheckpoint.createKey("prefetch:" + featureType, boundary.getMultiPolygon());
+            new CachingFeatureReader(reader, store.getFeatureCache(), key).read(feature -> {
+                // Only store the features
+            }, null);
+            if (!Thread.currentThread().isInterrupted()) {
+                store.add(featureType, boundary.getMultiPolygon(), key);
+            }
+        } catch (InitializationException | IOException e) {
+            Logging.info("Prefetch of {0} failed: {1}", featureType, e.getMessage());
+        }
+    }
+
+    @Override
+    public Collection<EntityStore<T>> getEntityStores() {
+        return Collections.singletonList(entityStore);
     }
 
     public GtDataSource getDataSource() {
@@ -2,8 +2,11 @@ package org.openstreetmap.josm.plugins.ods.geotools;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.geotools.data.DataStore;
+import org.geotools.data.DataUtilities;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.FeatureType;
@@ -12,7 +15,9 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.openstreetmap.josm.plugins.ods.Host;
 import org.openstreetmap.josm.plugins.ods.InitializationException;
 import org.openstreetmap.josm.plugins.ods.OdsFeatureSource;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
 import org.openstreetmap.josm.plugins.ods.metadata.MetaData;
+import org.openstreetmap.josm.tools.Logging;
 
 public class GtFeatureSource implements OdsFeatureSource {
 
@@ -22,7 +27,7 @@ public class GtFeatureSource implements OdsFeatureSource {
     private SimpleFeatureType featureType;
     private final String idAttribute;
     private final Integer maxFeatures;
-    private DataStore dataStore;
+    private volatile Future<Void> connection;
     SimpleFeatureSource featureSource;
     CoordinateReferenceSystem crs;
     MetaData metaData;
@@ -46,28 +51,73 @@ public class GtFeatureSource implements OdsFeatureSource {
     }
 
     @Override
-    public void initialize() throws InitializationException {
+    public synchronized void initialize() throws InitializationException {
         if (initialized)
             return;
         host.initialize();
         metaData = new MetaData(host.getMetaData());
+        MetadataCache cache = MetadataCache.getInstance();
+        SimpleFeatureType cachedType = cache.getFeatureType(host.getUrl(), featureName);
+        CoordinateReferenceSystem cachedCrs = cache.getCrs(host.getUrl(), featureName);
+        if (cachedType != null && cachedCrs != null) {
+            // Use the metadata from the previous session and validate it
+            // in the background
+            featureType = cachedType;
+            crs = cachedCrs;
+            connection = DownloadExecutor.getInstance().submit(() -> {
+                connect();
+                return null;
+            });
+        }
+        else {
+            connect();
+        }
+        if (!metaData.containsKey("source.date")) {
+            metaData.put("source.date", LocalDate.now());
+        }
+        initialized = true;
+    }
+
+    /**
+     * Connect to the feature source on the host and retrieve its schema and
+     * CRS. The result is stored in the metadata cache.
+     *
+     * @throws InitializationException
+     */
+    private void connect() throws InitializationException {
+        SimpleFeatureSource source;
         try {
-            dataStore = host.createDataStore();
+            DataStore dataStore = host.getDataStore();
+            source = dataStore.getFeatureSource(featureName);
         }
         catch (IOException e) {
-            throw new InitializationException(e.getMessage(), e);
+            throw new InitializationException(String.format(
+                    "Unknown featureName type: '%s'", featureName), e);
         }
+        SimpleFeatureType schema;
+        // Hack: first attempt to retrieve the feature type may result in an IllegalArgumentException
+        // A retry seems to resolve this.
         try {
-            featureSource = dataStore.getFeatureSource(featureName);
-            crs = featureSource.getInfo().getCRS();
-        } catch (IOException e) {
-            throw new InitializationException(String.format(
-                    "Unknown featureName type: '%s'", featureName));
+            schema = source.getSchema();
         }
-        if (!metaData.containsKey("source.date")) {
-            metaData.put("source.date", LocalDate.now());
+        catch (IllegalArgumentException e) {
+            try {
+                Thread.sleep(500);
+                schema = source.getSchema();
+            } catch (InterruptedException | IllegalArgumentException e1) {
+                throw new InitializationException(e1);
+            }
         }
-        initialized = true;
+        CoordinateReferenceSystem sourceCrs = source.getInfo().getCRS();
+        synchronized (this) {
+            if (featureType != null && !DataUtilities.compare(featureType, schema)) {
+                Logging.info("The schema of feature type {0} has changed", featureName);
+            }
+            featureSource = source;
+            featureType = schema;
+            crs = sourceCrs;
+        }
+        MetadataCache.getInstance().putFeatureType(host.getUrl(), featureName, schema, sourceCrs);
     }
 
     @Override
@@ -75,27 +125,69 @@ public class GtFeatureSource implements OdsFeatureSource {
         return metaData;
     }
 
-    public SimpleFeatureSource getFeatureSource() {
-        return featureSource;
+    /**
+     * @return true if the connection to the host is still being set up in
+     *     the background. The cached metadata can be used in the meantime.
+     */
+    public boolean isConnecting() {
+        Future<Void> future = connection;
+        return future != null && !future.isDone();
     }
 
-    @Override
-    public FeatureType getFeatureType() {
-        if (featureType == null) {
-            // Hack: first attempt to retrieve the feature type may result in an IllegalArgumentException
-            // A retry seems to resolve this.
-            try {
-                featureType = getFeatureSource().getSchema();
-            }
-            catch (IllegalArgumentException e) {
-                try {
-                    Thread.sleep(500);
-                    featureType = getFeatureSource().getSchema();
-                } catch (InterruptedException | IllegalArgumentException e1) {
-                    throw new RuntimeException(e1);
-                }
+    /**
+     * Wait until the connection to the host, that may have been started in the
+     * background, is available.
+     * If the connection failed, the feature source is reset, so the next
+     * initialization connects again.
+     *
+     * @throws InitializationException if the connection failed
+     */
+    public void awaitConnection() throws InitializationException {
+        Future<Void> future = connection;
+        if (future == null) {
+            return;
+        }
+        try {
+            DownloadExecutor.await(future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InitializationException(e);
+        } catch (ExecutionException e) {
+            reset(future);
+            if (e.getCause() instanceof InitializationException) {
+                throw (InitializationException) e.getCause();
             }
+            throw new InitializationException(e.getCause());
         }
+    }
+
+    private synchronized void reset(Future<Void> failedConnection) {
+        if (connection == failedConnection) {
+            connection = null;
+            initialized = false;
+        }
+    }
+
+    public SimpleFeatureSource getFeatureSource() {
+        try {
+            awaitConnection();
+        } catch (InitializationException e) {
+            throw new RuntimeException(e);
+        }
+        synchronized (this) {
+            return featureSource;
+        }
+    }
+
+    /**
+     * @return A new reader for pages of features of this feature source
+     */
+    public GtPageReader createPageReader() {
+        return host.createPageReader(this);
+    }
+
+    @Override
+    public synchronized FeatureType getFeatureType() {
         return featureType;
     }
 
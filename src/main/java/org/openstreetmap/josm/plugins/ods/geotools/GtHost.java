@@ -5,6 +5,7 @@ import java.io.IOException;
 import org.geotools.data.DataStore;
 import org.openstreetmap.josm.plugins.ods.Host;
 import org.openstreetmap.josm.plugins.ods.OdsFeatureSource;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.DefaultGtPageReader;
 
 /**
  * Class to represent a Geotools host.
@@ -18,4 +19,26 @@ public interface GtHost extends Host {
     public OdsFeatureSource getOdsFeatureSource(String feature);
 
     public abstract DataStore createDataStore() throws IOException;
+
+    /**
+     * Get the data store that is shared by all feature sources of this host.
+     * Sharing the data store means the capabilities are retrieved only once
+     * and the http connections are reused.
+     *
+     * @return The shared data store
+     * @throws IOException
+     */
+    public DataStore getDataStore() throws IOException;
+
+    /**
+     * Create a reader for pages of features of one of the feature sources of
+     * this host. Hosts that have a faster transport than the default
+     * Geotools client, override this method.
+     *
+     * @param featureSource The feature source
+     * @return The page reader
+     */
+    public default GtPageReader createPageReader(GtFeatureSource featureSource) {
+        return new DefaultGtPageReader(featureSource.getFeatureSource());
+    }
 }
@@ -0,0 +1,192 @@
+package org.openstreetmap.josm.plugins.ods.geotools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Properties;
+
+import org.geotools.referencing.CRS;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.plugins.ods.geotools.impl.FeatureCodec;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Persistent cache for the metadata of Geotools hosts: the negotiated
+ * protocol version of the host and the schema and CRS of its feature types.
+ * With this cache, the hosts and feature sources can be used straight away,
+ * while the metadata is validated against the server in the background.
+ * The metadata of every host is stored in a separate properties file.
+ * Entries that are older than the time-to-live are ignored.
+ *
+ * The time-to-live (in hours) can be configured with the 'ods.metadata.ttl'
+ * preference.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class MetadataCache {
+    private static final String SUFFIX = ".properties";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String VERSION = "version";
+
+    private static MetadataCache instance;
+
+    private final File directory;
+    private final long timeToLive;
+
+    public synchronized static MetadataCache getInstance() {
+        if (instance == null) {
+            long ttl = Preferences.main().getInt("ods.metadata.ttl", 7 * 24) * 3600_000L;
+            instance = new MetadataCache(new File(Config.getDirs().getCacheDirectory(true),
+                    "ods-metadata"), ttl);
+        }
+        return instance;
+    }
+
+    /**
+     * @param directory The directory for the cache files
+     * @param timeToLive The time to live of a cache entry in milliseconds
+     */
+    public MetadataCache(File directory, long timeToLive) {
+        super();
+        this.directory = directory;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * @param host
+     * @return The cached protocol version of the host, or null if unknown
+     */
+    public synchronized String getVersion(URL host) {
+        return load(host).getProperty(VERSION);
+    }
+
+    public synchronized void putVersion(URL host, String version) {
+        Properties properties = load(host);
+        properties.setProperty(VERSION, version);
+        store(host, properties);
+    }
+
+    /**
+     * @param host
+     * @param featureName
+     * @return The cached schema of the feature type, or null if unknown
+     */
+    public synchronized SimpleFeatureType getFeatureType(URL host, String featureName) {
+        String type = load(host).getProperty(featureName + ".type");
+        if (type == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Base64.getDecoder().decode(type)))) {
+            return FeatureCodec.readType(in);
+        } catch (IOException | IllegalArgumentException e) {
+            Logging.warn(e);
+            return null;
+        }
+    }
+
+    /**
+     * @param host
+     * @param featureName
+     * @return The cached CRS of the feature type, or null if unknown
+     */
+    public synchronized CoordinateReferenceSystem getCrs(URL host, String featureName) {
+        String wkt = load(host).getProperty(featureName + ".crs");
+        if (wkt == null) {
+            return null;
+        }
+        try {
+            return CRS.parseWKT(wkt);
+        } catch (FactoryException e) {
+            Logging.warn(e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the schema and the CRS of a feature type.
+     *
+     * @param host
+     * @param featureName
+     * @param featureType
+     * @param crs
+     */
+    public synchronized void putFeatureType(URL host, String featureName,
+            SimpleFeatureType featureType, CoordinateReferenceSystem crs) {
+        // The complete schema is stored, including the bindings, the
+        // nillability and the CRS of the attributes
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            FeatureCodec.writeType(out, featureType);
+        } catch (IOException e) {
+            Logging.warn(e);
+            return;
+        }
+        Properties properties = load(host);
+        properties.setProperty(featureName + ".type", Base64.getEncoder().encodeToString(bytes.toByteArray()));
+        properties.setProperty(featureName + ".crs", crs.toWKT());
+        store(host, properties);
+    }
+
+    private Properties load(URL host) {
+        Properties properties = new Properties();
+        File file = getFile(host);
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (FileNotFoundException e) {
+            return properties;
+        } catch (IOException e) {
+            Logging.warn(e);
+            return new Properties();
+        }
+        long timestamp = Long.parseLong(properties.getProperty(TIMESTAMP, "0"));
+        if (System.currentTimeMillis() - timestamp > timeToLive) {
+            return new Properties();
+        }
+        return properties;
+    }
+
+    private void store(URL host, Properties properties) {
+        properties.setProperty(TIMESTAMP, Long.toString(System.currentTimeMillis()));
+        directory.mkdirs();
+        try (OutputStream out = new FileOutputStream(getFile(host))) {
+            properties.store(out, host.toString());
+        } catch (IOException e) {
+            // The cache is an optimization only
+            Logging.warn(e);
+        }
+    }
+
+    private File getFile(URL host) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(host.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(directory, name.append(SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+}
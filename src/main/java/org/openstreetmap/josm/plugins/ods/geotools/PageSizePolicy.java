@@ -0,0 +1,100 @@
+package org.openstreetmap.josm.plugins.ods.geotools;
+
+/**
+ * Adaptive page size for paged WFS downloads.
+ * After every page, the policy is told how many features the page contained,
+ * how long it took and (approximately) how many bytes it contained. From
+ * these measurements, it derives the page size that can be retrieved in the
+ * target duration without exceeding the maximal page size in bytes.
+ * High latency servers get larger pages; large features, like buildings with
+ * many vertices, get smaller pages.
+ * The page size changes by at most a factor 2 per page and always stays
+ * within the configured bounds.
+ *
+ * The policy is shared between all readers of a data source, so it is
+ * thread-safe.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class PageSizePolicy {
+    // Weight of the latest measurement in the running averages
+    private static final double WEIGHT = 0.5;
+
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final long targetDuration;
+    private final long maxPageBytes;
+    private int pageSize;
+    private double featuresPerSecond = -1;
+    private double bytesPerFeature = -1;
+
+    /**
+     * @param initialPageSize The page size for the first page
+     * @param minPageSize The minimal page size
+     * @param maxPageSize The maximal page size. Should not exceed the maximal
+     *     number of features the server returns for a single request.
+     * @param targetDuration The desired duration of a page request in milliseconds
+     * @param maxPageBytes The maximal estimated size of a page in bytes
+     */
+    public PageSizePolicy(int initialPageSize, int minPageSize, int maxPageSize,
+            long targetDuration, long maxPageBytes) {
+        super();
+        if (minPageSize <= 0 || maxPageSize < minPageSize) {
+            throw new IllegalArgumentException("Invalid page size bounds");
+        }
+        this.minPageSize = minPageSize;
+        this.maxPageSize = maxPageSize;
+        this.targetDuration = targetDuration;
+        this.maxPageBytes = maxPageBytes;
+        this.pageSize = clamp(initialPageSize);
+    }
+
+    public int getMinPageSize() {
+        return minPageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * @return The page size for the next page
+     */
+    public synchronized int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Update the page size after a page has been read.
+     *
+     * @param featureCount The number of features in the page
+     * @param bytes The estimated size of the page in bytes
+     * @param duration The duration of the page request in milliseconds
+     */
+    public synchronized void pageRead(int featureCount, long bytes, long duration) {
+        if (featureCount <= 0) {
+            // An empty page tells nothing about the feature size or the throughput
+            return;
+        }
+        double rate = featureCount * 1000.0 / Math.max(1, duration);
+        featuresPerSecond = (featuresPerSecond < 0 ? rate
+                : WEIGHT * rate + (1 - WEIGHT) * featuresPerSecond);
+        if (bytes > 0) {
+            double size = (double) bytes / featureCount;
+            bytesPerFeature = (bytesPerFeature < 0 ? size
+                    : WEIGHT * size + (1 - WEIGHT) * bytesPerFeature);
+        }
+        double target = featuresPerSecond * targetDuration / 1000.0;
+        if (bytesPerFeature > 0 && maxPageBytes > 0) {
+            target = Math.min(target, maxPageBytes / bytesPerFeature);
+        }
+        // Don't change too fast
+        target = Math.max(pageSize / 2.0, Math.min(pageSize * 2.0, target));
+        pageSize = clamp((int) Math.round(target));
+    }
+
+    private int clamp(int size) {
+        return Math.max(minPageSize, Math.min(maxPageSize, size));
+    }
+}
@@ -0,0 +1,21 @@
+package org.openstreetmap.josm.plugins.ods.geotools;
+
+/**
+ * Strategy used to retrieve the next page of features from a paging data source.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public enum PagingStrategy {
+    /**
+     * Request each page with a start index. The server has to sort and skip
+     * all preceding features for every page.
+     */
+    OFFSET,
+    /**
+     * Request each page with a filter on the sort key: sortKey > last seen key.
+     * Requires a unique sort key. Because every page depends on the previous
+     * one, the pages can't be prefetched.
+     */
+    KEYSET
+}
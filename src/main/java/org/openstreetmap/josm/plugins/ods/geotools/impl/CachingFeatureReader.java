@@ -0,0 +1,84 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.util.ProgressListener;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache.EntryWriter;
+import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureReader;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * GtFeatureReader that serves the features from the feature cache if
+ * possible. Otherwise the features are read from the wrapped reader and
+ * stored in the cache. A cache entry is only stored if the wrapped reader
+ * completes without errors.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class CachingFeatureReader implements GtFeatureReader {
+    private final GtFeatureReader reader;
+    private final FeatureCache cache;
+    private final String key;
+
+    public CachingFeatureReader(GtFeatureReader reader, FeatureCache cache, String key) {
+        super();
+        this.reader = reader;
+        this.cache = cache;
+        this.key = key;
+    }
+
+    @Override
+    public void read(Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
+        try {
+            if (cache.read(key, consumer)) {
+                return;
+            }
+        } catch (IOException e) {
+            // Fall back to the wrapped reader. Features that were already
+            // passed to the consumer will show up as duplicates, which are
+            // skipped by the unique key filter and the entity store.
+            Logging.warn(e);
+            cache.invalidate(key);
+        }
+        EntryWriter writer;
+        try {
+            writer = cache.createWriter(key);
+        } catch (IOException e) {
+            Logging.warn(e);
+            reader.read(consumer, progressListener);
+            return;
+        }
+        // Problems with the cache must not break the download
+        boolean[] failed = {false};
+        try {
+            reader.read(feature -> {
+                if (!failed[0]) {
+                    try {
+                        writer.write(feature);
+                    } catch (IOException e) {
+                        Logging.warn(e);
+                        failed[0] = true;
+                    }
+                }
+                consumer.accept(feature);
+            }, progressListener);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        // The wrapped reader may have stopped early if the thread was interrupted
+        if (failed[0] || Thread.currentThread().isInterrupted()) {
+            writer.abort();
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            Logging.warn(e);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geotools.feature.AttributeTypeBuilder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.geotools.util.Converters;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Compact binary encoding of SimpleFeatures for the feature cache.
+ * The complete schema of the feature type is written once, so the features
+ * are read back with the same bindings, nillability and CRS.
+ * Every feature is written as its id followed by the attribute values.
+ * Each value is preceded by a type tag. Geometries are encoded as WKB.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class FeatureCodec {
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte BIG_INTEGER = 9;
+    private static final byte DATE = 10;
+    private static final byte GEOMETRY = 11;
+    private static final byte OTHER = 12;
+
+    private static final Map<String, CoordinateReferenceSystem> crsCache = new ConcurrentHashMap<>();
+
+    private final WKBWriter wkbWriter = new WKBWriter(2, true);
+    private final WKBReader wkbReader = new WKBReader();
+
+    /**
+     * Write the complete schema of a feature type: the name and namespace,
+     * the default geometry and the name, binding, nillability, cardinality
+     * and CRS of every attribute.
+     *
+     * @param out
+     * @param featureType
+     * @throws IOException
+     */
+    public static void writeType(DataOutput out, SimpleFeatureType featureType) throws IOException {
+        out.writeUTF(featureType.getTypeName());
+        String namespace = featureType.getName().getNamespaceURI();
+        out.writeUTF(namespace == null ? "" : namespace);
+        GeometryDescriptor defaultGeometry = featureType.getGeometryDescriptor();
+        out.writeUTF(defaultGeometry == null ? "" : defaultGeometry.getLocalName());
+        List<AttributeDescriptor> descriptors = featureType.getAttributeDescriptors();
+        out.writeShort(descriptors.size());
+        for (AttributeDescriptor descriptor : descriptors) {
+            out.writeUTF(descriptor.getLocalName());
+            out.writeUTF(descriptor.getType().getBinding().getName());
+            out.writeBoolean(descriptor.isNillable());
+            out.writeInt(descriptor.getMinOccurs());
+            out.writeInt(descriptor.getMaxOccurs());
+            CoordinateReferenceSystem crs = null;
+            if (descriptor instanceof GeometryDescriptor) {
+                crs = ((GeometryDescriptor) descriptor).getCoordinateReferenceSystem();
+            }
+            writeLongString(out, crs == null ? "" : crs.toWKT());
+        }
+    }
+
+    /**
+     * Read a feature type that was written by {@link #writeType}.
+     *
+     * @param in
+     * @return the feature type
+     * @throws IOException
+     */
+    public static SimpleFeatureType readType(DataInput in) throws IOException {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(in.readUTF());
+        String namespace = in.readUTF();
+        if (!namespace.isEmpty()) {
+            builder.setNamespaceURI(namespace);
+        }
+        String defaultGeometry = in.readUTF();
+        int count = in.readShort();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            AttributeTypeBuilder attributeBuilder = new AttributeTypeBuilder();
+            attributeBuilder.setBinding(loadClass(in.readUTF()));
+            attributeBuilder.setNillable(in.readBoolean());
+            attributeBuilder.setMinOccurs(in.readInt());
+            attributeBuilder.setMaxOccurs(in.readInt());
+            String wkt = readLongString(in);
+            if (!wkt.isEmpty()) {
+                attributeBuilder.setCRS(parseCrs(wkt));
+            }
+            builder.add(attributeBuilder.buildDescriptor(name));
+        }
+        if (!defaultGeometry.isEmpty()) {
+            builder.setDefaultGeometry(defaultGeometry);
+        }
+        return builder.buildFeatureType();
+    }
+
+    private static Class<?> loadClass(String name) throws IOException {
+        try {
+            return Class.forName(name, false, FeatureCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /*
+     * Parsing WKT is relatively slow and every cache entry contains the CRS,
+     * so the parsed CRSs are kept.
+     */
+    private static CoordinateReferenceSystem parseCrs(String wkt) throws IOException {
+        CoordinateReferenceSystem crs = crsCache.get(wkt);
+        if (crs == null) {
+            try {
+                crs = CRS.parseWKT(wkt);
+            } catch (FactoryException e) {
+                throw new IOException(e);
+            }
+            crsCache.put(wkt, crs);
+        }
+        return crs;
+    }
+
+    public void writeFeature(DataOutput out, SimpleFeature feature) throws IOException {
+        out.writeUTF(feature.getID());
+        List<Object> values = feature.getAttributes();
+        out.writeShort(values.size());
+        for (Object value : values) {
+            writeValue(out, value);
+        }
+    }
+
+    public SimpleFeature readFeature(DataInput in, SimpleFeatureBuilder builder) throws IOException {
+        String id = in.readUTF();
+        int count = in.readShort();
+        List<AttributeDescriptor> descriptors = builder.getFeatureType().getAttributeDescriptors();
+        for (int i = 0; i < count; i++) {
+            builder.set(i, readValue(in, descriptors.get(i).getType().getBinding()));
+        }
+        return builder.buildFeature(id);
+    }
+
+    private void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        }
+        else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeLongString(out, (String) value);
+        }
+        else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        }
+        else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        }
+        else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        }
+        else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        }
+        else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        }
+        else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        }
+        else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        }
+        else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        }
+        else if (value instanceof Geometry) {
+            out.writeByte(GEOMETRY);
+            writeBytes(out, wkbWriter.write((Geometry) value));
+        }
+        else {
+            out.writeByte(OTHER);
+            writeLongString(out, value.toString());
+        }
+    }
+
+    private Object readValue(DataInput in, Class<?> binding) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case STRING:
+            return readLongString(in);
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case DOUBLE:
+            return in.readDouble();
+        case FLOAT:
+            return in.readFloat();
+        case SHORT:
+            return in.readShort();
+        case BOOLEAN:
+            return in.readBoolean();
+        case BIG_DECIMAL:
+            return new BigDecimal(in.readUTF());
+        case BIG_INTEGER:
+            return new BigInteger(readBytes(in));
+        case DATE:
+            return toDate(in.readLong(), binding);
+        case GEOMETRY:
+            try {
+                return wkbReader.read(readBytes(in));
+            } catch (ParseException e) {
+                throw new IOException(e);
+            }
+        case OTHER:
+            String s = readLongString(in);
+            Object value = Converters.convert(s, binding);
+            return value != null ? value : s;
+        default:
+            throw new IOException("Invalid value tag in feature cache: " + tag);
+        }
+    }
+
+    private static Date toDate(long time, Class<?> binding) {
+        if (java.sql.Date.class.equals(binding)) {
+            return new java.sql.Date(time);
+        }
+        if (Timestamp.class.equals(binding)) {
+            return new Timestamp(time);
+        }
+        return new Date(time);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /*
+     * DataOutput.writeUTF is limited to 64k bytes. Use a length prefixed
+     * byte array for strings that may be longer.
+     */
+    private static void writeLongString(DataOutput out, String s) throws IOException {
+        writeBytes(out, s.getBytes("UTF-8"));
+    }
+
+    private static String readLongString(DataInput in) throws IOException {
+        return new String(readBytes(in), "UTF-8");
+    }
+}
@@ -0,0 +1,187 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.util.ProgressListener;
+import org.openstreetmap.josm.plugins.ods.geotools.DataCutOffException;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache.EntryWriter;
+import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureReader;
+import org.openstreetmap.josm.plugins.ods.jts.GridTiler;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * GtFeatureReader that caches the features per cell of a fixed grid.
+ * The grid is aligned to the origin of the coordinate system, so a download
+ * area that overlaps a previous one is partly served from the cache, even if
+ * the areas are not equal.
+ * The cells that are not in the cache are downloaded with a single request
+ * and every downloaded feature is stored in each cell that its envelope
+ * overlaps. Only the features that intersect the download area are passed
+ * to the consumer.
+ * The cached features are subject to the same cut-off as a download: if the
+ * cached result reaches the maximum number of features, a
+ * DataCutOffException is thrown.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class GridCachingFeatureReader implements GtFeatureReader {
+    private final FeatureCache cache;
+    private final GridTiler grid;
+    private final Geometry area;
+    private final Function<Geometry, String> keyFactory;
+    private final Function<Geometry, GtFeatureReader> readerFactory;
+    private final long maxFeatures;
+
+    /**
+     * @param cache The feature cache
+     * @param grid The grid of the cache cells
+     * @param area The download area in the CRS of the feature source
+     * @param keyFactory Function that creates the cache key for a cell
+     * @param readerFactory Function that creates a reader for an area
+     * @param maxFeatures The cut-off for the cached features, or 0 for no cut-off
+     */
+    public GridCachingFeatureReader(FeatureCache cache, GridTiler grid, Geometry area,
+            Function<Geometry, String> keyFactory, Function<Geometry, GtFeatureReader> readerFactory,
+            long maxFeatures) {
+        super();
+        this.cache = cache;
+        this.grid = grid;
+        this.area = area;
+        this.keyFactory = keyFactory;
+        this.readerFactory = readerFactory;
+        this.maxFeatures = maxFeatures;
+    }
+
+    @Override
+    public void read(Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
+        PreparedGeometry preparedArea = PreparedGeometryFactory.prepare(area);
+        // Features on the border of 2 cells are stored in both cells
+        Set<String> ids = new HashSet<>();
+        List<SimpleFeature> cached = new ArrayList<>();
+        List<Geometry> missingCells = new ArrayList<>();
+        for (Geometry cell : grid.getAlignedCells(area)) {
+            String key = keyFactory.apply(cell);
+            List<SimpleFeature> cellFeatures = new ArrayList<>();
+            try {
+                if (cache.read(key, cellFeatures::add)) {
+                    for (SimpleFeature feature : cellFeatures) {
+                        if (intersects(preparedArea, feature) && isNew(ids, feature)) {
+                            cached.add(feature);
+                        }
+                    }
+                    continue;
+                }
+            } catch (IOException e) {
+                Logging.warn(e);
+                cache.invalidate(key);
+            }
+            missingCells.add(cell);
+        }
+        if (maxFeatures > 0 && cached.size() >= maxFeatures) {
+            throw new DataCutOffException();
+        }
+        cached.forEach(consumer);
+        if (!missingCells.isEmpty()) {
+            download(missingCells, feature -> {
+                if (intersects(preparedArea, feature) && isNew(ids, feature)) {
+                    consumer.accept(feature);
+                }
+            }, progressListener);
+        }
+    }
+
+    /**
+     * Download the features of the missing cells with a single request and
+     * store them in the cache.
+     */
+    private void download(List<Geometry> cells, Consumer<SimpleFeature> consumer,
+            ProgressListener progressListener) throws IOException {
+        Envelope[] envelopes = new Envelope[cells.size()];
+        EntryWriter[] writers = new EntryWriter[cells.size()];
+        for (int i = 0; i < writers.length; i++) {
+            envelopes[i] = cells.get(i).getEnvelopeInternal();
+            try {
+                writers[i] = cache.createWriter(keyFactory.apply(cells.get(i)));
+            } catch (IOException e) {
+                // The cell is downloaded, but not cached
+                Logging.warn(e);
+            }
+        }
+        Geometry cellArea = area.getFactory().buildGeometry(cells).union();
+        try {
+            readerFactory.apply(cellArea).read(feature -> {
+                Object geometry = feature.getDefaultGeometry();
+                if (geometry instanceof Geometry) {
+                    Envelope envelope = ((Geometry) geometry).getEnvelopeInternal();
+                    for (int i = 0; i < writers.length; i++) {
+                        if (writers[i] != null && envelopes[i].intersects(envelope)) {
+                            write(writers, i, feature);
+                        }
+                    }
+                }
+                consumer.accept(feature);
+            }, progressListener);
+        } catch (IOException | RuntimeException e) {
+            abort(writers);
+            throw e;
+        }
+        // The reader may have stopped early if the thread was interrupted
+        if (Thread.currentThread().isInterrupted()) {
+            abort(writers);
+            return;
+        }
+        for (EntryWriter writer : writers) {
+            if (writer != null) {
+                try {
+                    writer.commit();
+                } catch (IOException e) {
+                    Logging.warn(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a feature to a cache entry. Problems with the cache must not
+     * break the download, so a failing entry is discarded.
+     */
+    private static void write(EntryWriter[] writers, int index, SimpleFeature feature) {
+        try {
+            writers[index].write(feature);
+        } catch (IOException e) {
+            Logging.warn(e);
+            writers[index].abort();
+            writers[index] = null;
+        }
+    }
+
+    private static void abort(EntryWriter[] writers) {
+        for (EntryWriter writer : writers) {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+    }
+
+    private static boolean isNew(Set<String> ids, SimpleFeature feature) {
+        return feature.getID() == null || ids.add(feature.getID());
+    }
+
+    private static boolean intersects(PreparedGeometry preparedArea, SimpleFeature feature) {
+        Object geometry = feature.getDefaultGeometry();
+        return geometry instanceof Geometry && preparedArea.intersects((Geometry) geometry);
+    }
+}
@@ -0,0 +1,106 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import org.geotools.data.Query;
+import org.geotools.factory.CommonFactoryFinder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+import org.opengis.util.ProgressListener;
+import org.openstreetmap.josm.plugins.ods.geotools.GtDataSource;
+import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureReader;
+import org.openstreetmap.josm.plugins.ods.geotools.GtPageReader;
+import org.openstreetmap.josm.plugins.ods.geotools.PageSizePolicy;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
+
+/**
+ * GtFeatureReader that pages through the results using the last key of the
+ * previous page instead of a start index. Each next page is requested with
+ * the filter 'sortKey > lastSeenKey', so the server doesn't have to skip
+ * the features of all preceding pages.
+ * The sort key must be unique, otherwise features at a page boundary can be lost.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class KeysetPagingFeatureReader implements GtFeatureReader {
+    private final static FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    private final GtDataSource dataSource;
+    private final Query baseQuery;
+    private final int pageSize;
+    private final PageSizePolicy pageSizePolicy;
+    private final String sortKey;
+
+    public KeysetPagingFeatureReader(GtDataSource dataSource, Query query) {
+        super();
+        this.dataSource = dataSource;
+        this.sortKey = dataSource.getSortKey();
+        this.baseQuery = includeSortKey(query, sortKey);
+        this.pageSize = dataSource.getPageSize();
+        this.pageSizePolicy = dataSource.getPageSizePolicy();
+    }
+
+    @Override
+    public void read(Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
+        GtPageReader pageReader = dataSource.getOdsFeatureSource().createPageReader();
+        if (pageSizePolicy != null) {
+            pageReader = new MeasuringPageReader(pageReader, pageSizePolicy);
+        }
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        Object lastKey = null;
+        boolean ready = false;
+        while (!ready && !Thread.currentThread().isInterrupted()) {
+            int size = (pageSizePolicy == null ? pageSize : pageSizePolicy.getPageSize());
+            Query query = createPageQuery(lastKey, size);
+            GtPageReader reader = pageReader;
+            Collection<SimpleFeature> features = executor.callWithDeadline(
+                    () -> reader.read(query, progressListener));
+            for (SimpleFeature feature : features) {
+                consumer.accept(feature);
+                lastKey = feature.getAttribute(sortKey);
+            }
+            ready = features.size() < size || lastKey == null;
+        }
+    }
+
+    private Query createPageQuery(Object lastKey, int size) {
+        Query query = new Query(baseQuery);
+        if (lastKey != null) {
+            Filter keyFilter = ff.greater(ff.property(sortKey), ff.literal(lastKey));
+            Filter filter = baseQuery.getFilter();
+            if (filter == null || filter == Filter.INCLUDE) {
+                query.setFilter(keyFilter);
+            }
+            else {
+                query.setFilter(ff.and(filter, keyFilter));
+            }
+        }
+        query.setMaxFeatures(size);
+        SortBy sortBy = ff.sort(sortKey, SortOrder.ASCENDING);
+        query.setSortBy(new SortBy[] {sortBy});
+        return query;
+    }
+
+    /**
+     * Make sure the sort key is retrieved, because we need its value to
+     * request the next page.
+     */
+    private static Query includeSortKey(Query query, String sortKey) {
+        String[] propertyNames = query.getPropertyNames();
+        if (propertyNames == null || Arrays.asList(propertyNames).contains(sortKey)) {
+            return query;
+        }
+        String[] names = Arrays.copyOf(propertyNames, propertyNames.length + 1);
+        names[propertyNames.length] = sortKey;
+        Query result = new Query(query);
+        result.setPropertyNames(names);
+        return result;
+    }
+}
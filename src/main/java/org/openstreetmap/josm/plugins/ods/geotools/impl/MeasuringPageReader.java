@@ -0,0 +1,58 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.geotools.data.Query;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.util.ProgressListener;
+import org.openstreetmap.josm.plugins.ods.geotools.GtPageReader;
+import org.openstreetmap.josm.plugins.ods.geotools.PageSizePolicy;
+
+/**
+ * GtPageReader that measures the duration and the size of every page and
+ * reports them to a page size policy.
+ * The size in bytes is estimated from the number of coordinates and the
+ * attribute values, because the raw response is not available here.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class MeasuringPageReader implements GtPageReader {
+    private final GtPageReader pageReader;
+    private final PageSizePolicy policy;
+
+    public MeasuringPageReader(GtPageReader pageReader, PageSizePolicy policy) {
+        super();
+        this.pageReader = pageReader;
+        this.policy = policy;
+    }
+
+    @Override
+    public Collection<SimpleFeature> read(Query query, ProgressListener progressListener) throws IOException {
+        long start = System.currentTimeMillis();
+        Collection<SimpleFeature> features = pageReader.read(query, progressListener);
+        long duration = System.currentTimeMillis() - start;
+        policy.pageRead(features.size(), estimateSize(features), duration);
+        return features;
+    }
+
+    private static long estimateSize(Collection<SimpleFeature> features) {
+        long size = 0;
+        for (SimpleFeature feature : features) {
+            for (Object value : feature.getAttributes()) {
+                if (value instanceof Geometry) {
+                    // 2 coordinates of approximately 10 characters each
+                    size += ((Geometry) value).getNumPoints() * 20L;
+                }
+                else if (value != null) {
+                    size += value.toString().length();
+                }
+                // The xml tags
+                size += 20;
+            }
+        }
+        return size;
+    }
+}
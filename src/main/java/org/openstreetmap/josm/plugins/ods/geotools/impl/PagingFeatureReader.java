@@ -1,51 +1,152 @@
 package org.openstreetmap.josm.plugins.ods.geotools.impl;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 import org.geotools.data.Query;
-import org.geotools.factory.CommonFactoryFinder;
 import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.sort.SortBy;
-import org.opengis.filter.sort.SortOrder;
 import org.opengis.util.ProgressListener;
 import org.openstreetmap.josm.plugins.ods.geotools.GtDataSource;
 import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureReader;
 import org.openstreetmap.josm.plugins.ods.geotools.GtPageReader;
+import org.openstreetmap.josm.plugins.ods.geotools.PageSizePolicy;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
 
+/**
+ * GtFeatureReader that retrieves the features in pages of a fixed size.
+ * If the data source has a prefetch count larger than 1, that number of
+ * pages is requested in parallel. The pages are still passed to the
+ * consumer in the original order.
+ * If the data source has a page size policy, the size of every next page is
+ * taken from the policy.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
 public class PagingFeatureReader implements GtFeatureReader {
-    private final static FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
-
     private final GtDataSource dataSource;
     private final Query baseQuery;
     private final int pageSize;
+    private final PageSizePolicy pageSizePolicy;
+    private final int prefetchCount;
+    private final SortBy[] sortBy;
 
+    /**
+     * @param dataSource The data source. Must have a deterministic sort order
+     * @param query The query
+     * @throws IllegalArgumentException if the data source has no sort order
+     *     for paging
+     * @see GtDataSource#getPageSortBy()
+     */
     public PagingFeatureReader(GtDataSource dataSource, Query query) {
         super();
         this.dataSource = dataSource;
         this.baseQuery = query;
+        this.sortBy = dataSource.getPageSortBy();
+        if (sortBy == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Offset paging of %s requires a sort key or unique key", dataSource.getFeatureType()));
+        }
         this.pageSize = dataSource.getPageSize();
+        this.pageSizePolicy = dataSource.getPageSizePolicy();
+        this.prefetchCount = dataSource.getPrefetchCount();
     }
 
     @Override
     public void read(Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
+        GtPageReader pageReader = dataSource.getOdsFeatureSource().createPageReader();
+        if (pageSizePolicy != null) {
+            pageReader = new MeasuringPageReader(pageReader, pageSizePolicy);
+        }
+        if (prefetchCount > 1) {
+            readPrefetched(pageReader, consumer, progressListener);
+            return;
+        }
+        DownloadExecutor executor = DownloadExecutor.getInstance();
         int index = 0;
         boolean ready = false;
-        GtPageReader pageReader = new DefaultGtPageReader(dataSource.getOdsFeatureSource().getFeatureSource());
         while (!ready && !Thread.currentThread().isInterrupted()) {
-            Query query = new Query(baseQuery);
-            query.setStartIndex(index);
-            query.setMaxFeatures(pageSize);
-            // TODO move to dataSource
-            SortBy sortBy = ff.sort("identificatie", SortOrder.ASCENDING);
-            query.setSortBy(new SortBy[] {sortBy});
-            // TODO run this in a separate thread
-            Collection<SimpleFeature> features = pageReader.read(query, progressListener);
+            int size = nextPageSize();
+            Query query = createPageQuery(index, size);
+            GtPageReader reader = pageReader;
+            Collection<SimpleFeature> features = executor.callWithDeadline(
+                    () -> reader.read(query, progressListener));
             features.forEach(consumer);
-            index += pageSize;
-            ready = features.size() < pageSize;
+            index += size;
+            ready = features.size() < size;
+        }
+    }
+
+    /**
+     * Keep up to prefetchCount page requests in flight. The first page that
+     * contains less than pageSize features marks the end of the data. Any
+     * pages that were requested beyond that point are discarded.
+     */
+    private void readPrefetched(GtPageReader pageReader, Consumer<SimpleFeature> consumer,
+            ProgressListener progressListener) throws IOException {
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        Deque<Future<Collection<SimpleFeature>>> pages = new ArrayDeque<>(prefetchCount);
+        Deque<Integer> pageSizes = new ArrayDeque<>(prefetchCount);
+        try {
+            int index = 0;
+            boolean ready = false;
+            while (!ready && !Thread.currentThread().isInterrupted()) {
+                while (pages.size() < prefetchCount) {
+                    int size = nextPageSize();
+                    Query query = createPageQuery(index, size);
+                    pages.add(executor.submit(() -> executor.callWithDeadline(
+                            () -> pageReader.read(query, progressListener))));
+                    pageSizes.add(size);
+                    index += size;
+                }
+                Collection<SimpleFeature> features = getPage(pages.removeFirst());
+                features.forEach(consumer);
+                ready = features.size() < pageSizes.removeFirst();
+            }
+        }
+        finally {
+            pages.forEach(page -> page.cancel(true));
+        }
+    }
+
+    private int nextPageSize() {
+        return pageSizePolicy == null ? pageSize : pageSizePolicy.getPageSize();
+    }
+
+    private Query createPageQuery(int index, int size) {
+        Query query = new Query(baseQuery);
+        query.setStartIndex(index);
+        query.setMaxFeatures(size);
+        query.setSortBy(sortBy);
+        return query;
+    }
+
+    /**
+     * Wait for a page to complete. Exceptions thrown by the page reader are
+     * re-thrown unchanged, so a DataCutOffException still reaches the caller.
+     */
+    private static Collection<SimpleFeature> getPage(Future<Collection<SimpleFeature>> page) throws IOException {
+        try {
+            return DownloadExecutor.await(page);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
         }
     }
 }
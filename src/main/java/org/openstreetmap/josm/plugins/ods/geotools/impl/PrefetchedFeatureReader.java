@@ -0,0 +1,69 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.util.ProgressListener;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache;
+import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureReader;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * GtFeatureReader that serves the features of an area from prefetched cache
+ * entries. Only the features that intersect the area are passed to the
+ * consumer. If one of the entries is no longer available, the features are
+ * read from the fallback reader.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class PrefetchedFeatureReader implements GtFeatureReader {
+    private final FeatureCache cache;
+    private final List<String> keys;
+    private final Geometry area;
+    private final GtFeatureReader fallbackReader;
+
+    /**
+     * @param cache The cache with the prefetched features
+     * @param keys The keys of the cache entries
+     * @param area The area in the CRS of the feature source
+     * @param fallbackReader The reader to use if the cache entries are not available
+     */
+    public PrefetchedFeatureReader(FeatureCache cache, List<String> keys, Geometry area,
+            GtFeatureReader fallbackReader) {
+        super();
+        this.cache = cache;
+        this.keys = keys;
+        this.area = area;
+        this.fallbackReader = fallbackReader;
+    }
+
+    @Override
+    public void read(Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
+        PreparedGeometry preparedArea = PreparedGeometryFactory.prepare(area);
+        Consumer<SimpleFeature> filter = feature -> {
+            Object geometry = feature.getDefaultGeometry();
+            if (geometry instanceof Geometry && preparedArea.intersects((Geometry) geometry)) {
+                consumer.accept(feature);
+            }
+        };
+        try {
+            for (String key : keys) {
+                if (!cache.read(key, filter)) {
+                    fallbackReader.read(consumer, progressListener);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Features that were already passed to the consumer will show up
+            // as duplicates, which are skipped by the entity store.
+            Logging.warn(e);
+            fallbackReader.read(consumer, progressListener);
+        }
+    }
+}
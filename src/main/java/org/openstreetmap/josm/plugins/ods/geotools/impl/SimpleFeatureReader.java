@@ -26,7 +26,7 @@ public class SimpleFeatureReader implements GtFeatureReader {
 
     @Override
     public void read(Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
-        GtPageReader pageReader = new DefaultGtPageReader(dataSource.getOdsFeatureSource().getFeatureSource());
+        GtPageReader pageReader = dataSource.getOdsFeatureSource().createPageReader();
         // TODO run this in a separate thread
         Collection<SimpleFeature> features = pageReader.read(baseQuery, progressListener);
         if (features.size() < maxFeatures) {
@@ -0,0 +1,201 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.util.ProgressListener;
+import org.openstreetmap.josm.plugins.ods.geotools.DataCutOffException;
+import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureReader;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * GtFeatureReader that combines the readers for a number of sub-areas (tiles)
+ * of the download area. The tiles are read in parallel. The consumer is
+ * called by one thread at a time, but the order of the features is undefined.
+ * Features on the border of 2 tiles will be passed to the consumer twice.
+ * With a timeout, the reader runs in partial mode: tiles that fail or don't
+ * complete in time are skipped instead of failing the whole read. The
+ * features of those tiles that were read before, are kept. After the read,
+ * {@link #getIncompleteTiles()} tells which tiles are missing.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class TiledFeatureReader implements GtFeatureReader {
+    private final List<GtFeatureReader> tileReaders;
+    private final int parallelism;
+    private final long timeout;
+    private List<Integer> incompleteTiles = Collections.emptyList();
+    private boolean closed = false;
+
+    public TiledFeatureReader(List<GtFeatureReader> tileReaders, int parallelism) {
+        this(tileReaders, parallelism, 0);
+    }
+
+    /**
+     * @param tileReaders The readers for the tiles
+     * @param parallelism The maximal number of tiles to read at the same time
+     * @param timeout The timeout for the complete read in milliseconds. If
+     *     positive, the reader runs in partial mode.
+     */
+    public TiledFeatureReader(List<GtFeatureReader> tileReaders, int parallelism, long timeout) {
+        super();
+        this.tileReaders = tileReaders;
+        this.parallelism = Math.max(1, Math.min(parallelism, tileReaders.size()));
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return The indexes of the tiles that were not read completely by the
+     *     last partial read.
+     */
+    public List<Integer> getIncompleteTiles() {
+        return incompleteTiles;
+    }
+
+    @Override
+    public void read(Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
+        if (timeout > 0) {
+            readPartial(consumer, progressListener);
+            return;
+        }
+        Consumer<SimpleFeature> synchronizedConsumer = feature -> {
+            synchronized (this) {
+                consumer.accept(feature);
+            }
+        };
+        // Start 'parallelism' workers that take the tiles from a shared queue
+        Queue<GtFeatureReader> pending = new ConcurrentLinkedQueue<>(tileReaders);
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        List<Future<?>> workers = new ArrayList<>(parallelism);
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                workers.add(executor.submit(() -> {
+                    GtFeatureReader tileReader;
+                    while ((tileReader = pending.poll()) != null
+                            && !Thread.currentThread().isInterrupted()) {
+                        read(executor, tileReader, synchronizedConsumer, progressListener);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                waitFor(worker);
+            }
+        }
+        finally {
+            workers.forEach(worker -> worker.cancel(true));
+        }
+    }
+
+    private void readPartial(Consumer<SimpleFeature> consumer, ProgressListener progressListener)
+            throws IOException {
+        boolean[] completed = new boolean[tileReaders.size()];
+        synchronized (this) {
+            closed = false;
+        }
+        // Features that arrive after the timeout are dropped
+        Consumer<SimpleFeature> guardedConsumer = feature -> {
+            synchronized (this) {
+                if (!closed) {
+                    consumer.accept(feature);
+                }
+            }
+        };
+        Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < tileReaders.size(); i++) {
+            pending.add(i);
+        }
+        AtomicReference<DataCutOffException> cutOff = new AtomicReference<>();
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        List<Runnable> workers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            workers.add(() -> {
+                Integer tile;
+                while ((tile = pending.poll()) != null
+                        && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        read(executor, tileReaders.get(tile), guardedConsumer, progressListener);
+                        synchronized (this) {
+                            completed[tile] = !closed;
+                        }
+                    } catch (DataCutOffException e) {
+                        cutOff.set(e);
+                        return;
+                    } catch (IOException e) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return;
+                        }
+                        Logging.warn("Tile {0} could not be read: {1}", tile, e.getMessage());
+                    }
+                }
+            });
+        }
+        DownloadExecutor.Batch batch = executor.start(workers, timeout);
+        try {
+            batch.await(timeout);
+        } catch (InterruptedException e) {
+            batch.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        finally {
+            synchronized (this) {
+                closed = true;
+            }
+        }
+        if (cutOff.get() != null) {
+            throw cutOff.get();
+        }
+        List<Integer> incomplete = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < completed.length; i++) {
+                if (!completed[i]) {
+                    incomplete.add(i);
+                }
+            }
+        }
+        incompleteTiles = incomplete;
+    }
+
+    /**
+     * Read a single tile. The tile is interrupted if it takes longer than
+     * the task timeout.
+     */
+    private static void read(DownloadExecutor executor, GtFeatureReader tileReader,
+            Consumer<SimpleFeature> consumer, ProgressListener progressListener) throws IOException {
+        executor.callWithDeadline(() -> {
+            tileReader.read(consumer, progressListener);
+            return null;
+        });
+    }
+
+    private static void waitFor(Future<?> tile) throws IOException {
+        try {
+            DownloadExecutor.await(tile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.awt.event.ActionEvent;
 import java.io.IOException;
 import java.time.LocalDateTime;
 
+import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.Way;
@@ -127,6 +128,7 @@ public class OdsDownloadAction extends OdsAction {
         OsmTransferException {
             DownloadRequest request = new DownloadRequest(startDate, boundary,
                     downloadOsm, downloadOpenData);
+            request.setIncremental(Preferences.main().getBoolean("ods.download.incremental", false));
             downloader.run(getProgressMonitor(), request);
         }
 
@@ -0,0 +1,46 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.io.OsmServerReader;
+import org.openstreetmap.josm.io.OsmTransferException;
+
+/**
+ * OsmServerReader for a single tile that takes the data from the download
+ * checkpoint if possible. Otherwise the data is read from the wrapped reader
+ * and stored in the checkpoint.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class CheckpointOsmServerReader extends OsmServerReader {
+    private final OsmServerReader reader;
+    private final DownloadCheckpoint checkpoint;
+    private final String key;
+
+    public CheckpointOsmServerReader(OsmServerReader reader, DownloadCheckpoint checkpoint, String key) {
+        super();
+        this.reader = reader;
+        this.checkpoint = checkpoint;
+        this.key = key;
+    }
+
+    @Override
+    public DataSet parseOsm(ProgressMonitor progressMonitor) throws OsmTransferException {
+        DataSet dataSet = checkpoint.readOsmTile(key);
+        if (dataSet != null) {
+            return dataSet;
+        }
+        dataSet = reader.parseOsm(progressMonitor);
+        if (dataSet != null && !Thread.currentThread().isInterrupted()) {
+            checkpoint.writeOsmTile(key, dataSet);
+        }
+        return dataSet;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        reader.cancel();
+    }
+}
@@ -0,0 +1,211 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.locationtech.jts.geom.Geometry;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.io.OsmWriter;
+import org.openstreetmap.josm.io.OsmWriterFactory;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Persistent progress of a download. The checkpoint contains the results of
+ * the tiles that have been downloaded completely: the open data features of
+ * every data source and the OSM data of every Overpass tile.
+ * If the download is cancelled or JOSM stops before the download completes,
+ * a later download of the same area resumes from the checkpoint and only
+ * downloads the missing tiles. The checkpoint is removed when the download
+ * completes.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class DownloadCheckpoint {
+    private static final String OSM_SUFFIX = ".osm";
+
+    private final File directory;
+    private final long timeToLive;
+    private FeatureCache featureCache;
+
+    /**
+     * @param directory The directory for this checkpoint
+     * @param timeToLive The time to live of the checkpoint in milliseconds
+     */
+    public DownloadCheckpoint(File directory, long timeToLive) {
+        super();
+        this.directory = directory;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Delete the checkpoints in the given directory that have expired. A
+     * checkpoint expires when none of its files has been written within the
+     * time to live. Expired checkpoints are never resumed, so without a sweep
+     * they would stay on disk.
+     *
+     * @param checkpointsDirectory The directory that contains the checkpoints
+     * @param timeToLive The time to live of a checkpoint in milliseconds
+     */
+    public static void deleteExpired(File checkpointsDirectory, long timeToLive) {
+        File[] checkpoints = checkpointsDirectory.listFiles(File::isDirectory);
+        if (checkpoints == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File checkpoint : checkpoints) {
+            if (now - lastModified(checkpoint) > timeToLive) {
+                Logging.debug("Deleting expired checkpoint {0}", checkpoint);
+                delete(checkpoint);
+            }
+        }
+    }
+
+    /**
+     * @return the time the file or any file below it was last modified
+     */
+    private static long lastModified(File file) {
+        long result = file.lastModified();
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                result = Math.max(result, lastModified(child));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create the key for a tile.
+     *
+     * @param name The name of the tile source
+     * @param area The tile area
+     * @return The key
+     */
+    public static String createKey(String name, Geometry area) {
+        Geometry normalized = area.copy();
+        normalized.normalize();
+        return sha1(name + '|' + normalized.toText());
+    }
+
+    /**
+     * @return true if the checkpoint contains the results of a previous
+     *     download attempt
+     */
+    public boolean exists() {
+        String[] files = directory.list();
+        return files != null && files.length > 0;
+    }
+
+    /**
+     * Get the feature cache for the open data tiles of this checkpoint.
+     * Entries in this cache are never evicted because of their size.
+     *
+     * @return the feature cache
+     */
+    public synchronized FeatureCache getFeatureCache() {
+        if (featureCache == null) {
+            featureCache = new FeatureCache(new File(directory, "features"), timeToLive, Long.MAX_VALUE);
+        }
+        return featureCache;
+    }
+
+    /**
+     * Read the OSM data of a tile.
+     *
+     * @param key The tile key
+     * @return The data set, or null if the tile is not in the checkpoint
+     */
+    public DataSet readOsmTile(String key) {
+        File file = new File(directory, key + OSM_SUFFIX);
+        if (System.currentTimeMillis() - file.lastModified() > timeToLive) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | IllegalDataException e) {
+            Logging.warn(e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Store the OSM data of a tile. The file is written under a temporary
+     * name first, so a crash can't leave an incomplete tile behind.
+     *
+     * @param key The tile key
+     * @param dataSet The data of the tile
+     */
+    public void writeOsmTile(String key, DataSet dataSet) {
+        directory.mkdirs();
+        File file = new File(directory, key + OSM_SUFFIX);
+        File tempFile = new File(directory, key + OSM_SUFFIX + ".tmp");
+        try {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(tempFile.toPath()),
+                    StandardCharsets.UTF_8);
+                    OsmWriter osmWriter = OsmWriterFactory.createOsmWriter(
+                            new PrintWriter(writer), false, dataSet.getVersion())) {
+                osmWriter.write(dataSet);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The checkpoint is an optimization only
+            Logging.warn(e);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Remove the checkpoint.
+     */
+    public synchronized void delete() {
+        featureCache = null;
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            Logging.warn("Could not delete {0}", file);
+        }
+    }
+
+    static String sha1(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.tools.I18n;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Shared executor for all download tasks. The worker threads are reused
+ * between downloads and between the download phases.
+ * Tasks may wait for other tasks that were submitted to this executor. When
+ * a worker thread has to wait, the pool temporarily adds a spare thread, so
+ * nested tasks (for example the feature downloaders of a layer downloader)
+ * can't starve the pool.
+ *
+ * The phase timeout applies to a download phase or pipeline as a whole.
+ * The task timeout only applies to single requests, like the download of a
+ * tile or a page. Tasks that contain other tasks, like the layer downloaders
+ * and the feature downloaders, don't have a deadline of their own.
+ *
+ * The parallelism and the timeouts can be configured with the preferences
+ * 'ods.download.parallelism', 'ods.download.phase.timeout' and
+ * 'ods.download.task.timeout'. The timeouts are in seconds.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class DownloadExecutor {
+    private static DownloadExecutor instance;
+
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService timer;
+
+    public synchronized static DownloadExecutor getInstance() {
+        if (instance == null) {
+            instance = new DownloadExecutor(
+                    Preferences.main().getInt("ods.download.parallelism", 10));
+        }
+        return instance;
+    }
+
+    public DownloadExecutor(int parallelism) {
+        super();
+        // Use the class loader of the plugin in the worker threads. GeoTools
+        // needs it to find its service providers.
+        ClassLoader classLoader = DownloadExecutor.class.getClassLoader();
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("ods-download-" + thread.getPoolIndex());
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        }, null, true);
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "ods-download-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.timer = scheduler;
+    }
+
+    /**
+     * @return The number of tasks that can run at the same time
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return The maximal duration of a download phase in milliseconds
+     */
+    public long getPhaseTimeout() {
+        return Preferences.main().getInt("ods.download.phase.timeout", 300) * 1000L;
+    }
+
+    /**
+     * The default task timeout is well below the phase timeout, so a single
+     * hanging request is interrupted while the other requests of the phase
+     * can still complete.
+     *
+     * @return The maximal duration of a single request in milliseconds
+     * @see #callWithDeadline(IoTask)
+     */
+    public long getTaskTimeout() {
+        return Preferences.main().getInt("ods.download.task.timeout", 120) * 1000L;
+    }
+
+    /**
+     * Check if downloads should keep the results of the tiles that did
+     * complete, when other tiles fail or time out. Can be enabled with the
+     * 'ods.download.partial' preference.
+     *
+     * @return true for partial results
+     */
+    public boolean isPartialResultsEnabled() {
+        return Preferences.main().getBoolean("ods.download.partial", false);
+    }
+
+    /**
+     * @return The time in milliseconds a partial download may take. This is
+     *     less than the phase timeout, so the completed parts can still be
+     *     processed.
+     */
+    public long getPartialTimeout() {
+        return getPhaseTimeout() * 9 / 10;
+    }
+
+    /**
+     * Get the time a partial download may take, if it has to complete before
+     * the deadline of the enclosing phase. The partial download has to stop
+     * before that deadline; otherwise it is interrupted and the completed
+     * parts are lost.
+     *
+     * @param deadline The deadline of the enclosing phase in milliseconds
+     *     since the epoch, or 0 if there is no such deadline
+     * @return The time in milliseconds
+     */
+    public long getPartialTimeout(long deadline) {
+        if (deadline <= 0) {
+            return getPartialTimeout();
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        return Math.max(1, Math.min(getPartialTimeout(), remaining * 9 / 10));
+    }
+
+    /**
+     * Submit a single task. Cancelling the returned future interrupts the
+     * task if it is running.
+     *
+     * @param task
+     * @return the future for the task
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        pool.execute(() -> run(future));
+        return future;
+    }
+
+    /**
+     * Submit a single task that is interrupted if it doesn't complete within
+     * the given timeout.
+     *
+     * @param task
+     * @param timeout The timeout in milliseconds, or 0 for no timeout
+     * @param whenDone Called once when the task completes, fails or is cancelled.
+     *     May be null.
+     * @return the future for the task
+     */
+    public <T> Future<T> submit(Callable<T> task, long timeout, Runnable whenDone) {
+        DeadlineTask<T> future = new DeadlineTask<>(task, whenDone);
+        if (timeout > 0) {
+            future.deadline = timer.schedule(() -> {
+                future.cancel(true);
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        pool.execute(() -> run(future));
+        return future;
+    }
+
+    /**
+     * Run a single request, for example the download of a tile or a page, in
+     * the current thread. The thread is interrupted if the request doesn't
+     * complete within the task timeout. The deadline starts when the request
+     * starts, so the time a task waited for a worker thread doesn't count.
+     * An interrupt caused by the deadline is cleared afterwards, so the caller
+     * sees a failed request and not a cancelled download.
+     *
+     * @param task The request
+     * @return The result of the request
+     * @throws E
+     * @throws InterruptedIOException if the request timed out
+     */
+    public <T, E extends Exception> T callWithDeadline(IoTask<T, E> task) throws E, InterruptedIOException {
+        Thread thread = Thread.currentThread();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean expired = new AtomicBoolean(false);
+        ScheduledFuture<?> deadline = timer.schedule(() -> {
+            synchronized (running) {
+                if (running.get()) {
+                    expired.set(true);
+                    thread.interrupt();
+                }
+            }
+        }, getTaskTimeout(), TimeUnit.MILLISECONDS);
+        T result;
+        try {
+            result = task.call();
+        }
+        finally {
+            deadline.cancel(false);
+            synchronized (running) {
+                running.set(false);
+                if (expired.get()) {
+                    Thread.interrupted();
+                }
+            }
+        }
+        // The request may have returned an incomplete result
+        if (expired.get()) {
+            throw new InterruptedIOException(I18n.tr("The request timed out after {0} seconds",
+                    getTaskTimeout() / 1000));
+        }
+        return result;
+    }
+
+    /**
+     * Run a task on a worker thread. A cancelled task may leave the interrupt
+     * flag set; clear it so it doesn't affect the next task on this thread.
+     */
+    private static void run(FutureTask<?> task) {
+        task.run();
+        Thread.interrupted();
+    }
+
+    /**
+     * Start a batch of tasks without a deadline per task. Only the timeout
+     * of {@link Batch#await(long)} applies.
+     *
+     * @param tasks
+     * @return the batch
+     */
+    public Batch start(Collection<? extends Runnable> tasks) {
+        return start(tasks, 0);
+    }
+
+    /**
+     * Start a batch of tasks. Tasks that don't complete within the task
+     * timeout are interrupted.
+     *
+     * @param tasks
+     * @param taskTimeout The task timeout in milliseconds, or 0 for no timeout
+     * @return the batch
+     */
+    public Batch start(Collection<? extends Runnable> tasks, long taskTimeout) {
+        Batch batch = new Batch(tasks.size());
+        for (Runnable task : tasks) {
+            batch.add(task, taskTimeout);
+        }
+        return batch;
+    }
+
+    /**
+     * Wait for the result of a future. If the current thread is a worker
+     * thread of this executor, the pool will compensate for the blocked thread.
+     *
+     * @param future
+     * @return The result
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public static <T> T await(Future<T> future) throws InterruptedException, ExecutionException {
+        if (!future.isDone()) {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        // Will be rethrown below
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return future.isDone();
+                }
+            });
+        }
+        return future.get();
+    }
+
+    /**
+     * A request that may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface IoTask<T, E extends Exception> {
+        public T call() throws E;
+    }
+
+    /**
+     * FutureTask that removes its deadline from the timer when it's done,
+     * and notifies the caller.
+     */
+    private static class DeadlineTask<T> extends FutureTask<T> {
+        private final Runnable whenDone;
+        volatile ScheduledFuture<?> deadline;
+
+        DeadlineTask(Callable<T> callable, Runnable whenDone) {
+            super(callable);
+            this.whenDone = whenDone;
+        }
+
+        @Override
+        protected void done() {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            if (whenDone != null) {
+                whenDone.run();
+            }
+        }
+    }
+
+    /**
+     * A group of tasks that run in parallel, for example the tasks of a
+     * download phase.
+     */
+    public class Batch {
+        private final List<FutureTask<?>> tasks;
+        private final CountDownLatch latch;
+        private volatile boolean timedOut = false;
+
+        Batch(int size) {
+            this.tasks = new ArrayList<>(size);
+            this.latch = new CountDownLatch(size);
+        }
+
+        void add(Runnable task, long taskTimeout) {
+            FutureTask<?> future = new FutureTask<Void>(task, null) {
+                @Override
+                protected void done() {
+                    if (!isCancelled()) {
+                        try {
+                            get();
+                        } catch (ExecutionException e) {
+                            Logging.error(e.getCause());
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    latch.countDown();
+                }
+            };
+            tasks.add(future);
+            if (taskTimeout <= 0) {
+                pool.execute(() -> run(future));
+                return;
+            }
+            ScheduledFuture<?> deadline = timer.schedule(() -> {
+                if (!future.isDone()) {
+                    timedOut = true;
+                    future.cancel(true);
+                }
+            }, taskTimeout, TimeUnit.MILLISECONDS);
+            pool.execute(() -> {
+                run(future);
+                deadline.cancel(false);
+            });
+        }
+
+        /**
+         * Wait for the tasks to complete, using the default phase timeout.
+         *
+         * @return true if all tasks completed in time
+         * @throws InterruptedException
+         */
+        public boolean await() throws InterruptedException {
+            return await(getPhaseTimeout());
+        }
+
+        /**
+         * Wait for the tasks to complete. Tasks that are still running after
+         * the timeout are cancelled.
+         *
+         * @param timeout The timeout in milliseconds
+         * @return true if all tasks completed in time; false if the phase
+         *     or one of the tasks timed out
+         * @throws InterruptedException
+         */
+        public boolean await(long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    long remaining = deadline - System.currentTimeMillis();
+                    return remaining <= 0 || latch.await(remaining, TimeUnit.MILLISECONDS);
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return latch.getCount() == 0 || System.currentTimeMillis() >= deadline;
+                }
+            });
+            if (latch.getCount() > 0) {
+                timedOut = true;
+                cancel();
+            }
+            return !timedOut;
+        }
+
+        /**
+         * @return true if the batch or one of its tasks timed out
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Cancel all tasks in this batch. Running tasks are interrupted.
+         */
+        public void cancel() {
+            for (FutureTask<?> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.openstreetmap.josm.plugins.ods.io;
 
 import java.time.LocalDateTime;
 
+import org.locationtech.jts.geom.Geometry;
 import org.openstreetmap.josm.plugins.ods.jts.Boundary;
 
 public class DownloadRequest {
@@ -9,6 +10,10 @@ public class DownloadRequest {
     private Boundary boundary;
     private boolean getOsm;
     private boolean getOds;
+    private boolean incremental = false;
+    private DownloadCheckpoint checkpoint;
+    private PrefetchStore prefetchStore;
+    private long deadline = 0;
 
     public DownloadRequest(LocalDateTime downloadTime, Boundary boundary,boolean getOsm, boolean getOds) {
         super();
@@ -33,4 +38,67 @@ public class DownloadRequest {
     public boolean isGetOds() {
         return getOds;
     }
+
+    /**
+     * Check if this is an incremental download. In an incremental download,
+     * areas that have been downloaded before are skipped.
+     *
+     * @return true if this is an incremental download
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Get the identity of this request. Requests for the same area and the
+     * same data have the same key, so a download can be resumed from the
+     * checkpoint of an earlier attempt.
+     *
+     * @return The key
+     */
+    public String getKey() {
+        Geometry area = boundary.getMultiPolygon().copy();
+        area.normalize();
+        return DownloadCheckpoint.sha1(area.toText() + '|' + getOsm + '|' + getOds);
+    }
+
+    /**
+     * @return The checkpoint of this download, or null if the download is
+     *     not checkpointed
+     */
+    public DownloadCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(DownloadCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return The store with prefetched data that may be used to serve this
+     *     download, or null if prefetching is disabled
+     */
+    public PrefetchStore getPrefetchStore() {
+        return prefetchStore;
+    }
+
+    public void setPrefetchStore(PrefetchStore prefetchStore) {
+        this.prefetchStore = prefetchStore;
+    }
+
+    /**
+     * @return The time in milliseconds at which the running download phase
+     *     will be cancelled, or 0 if it is unknown
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
 }
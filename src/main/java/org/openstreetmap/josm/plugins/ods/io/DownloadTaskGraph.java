@@ -0,0 +1,279 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
+import org.openstreetmap.josm.tools.I18n;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * A set of download tasks with dependencies between them. A task starts as
+ * soon as all tasks it depends on are done, so fast sources don't have to
+ * wait for slow ones.
+ * A task can depend on other tasks directly, or on entity stores. A task
+ * that depends on an entity store will start after all tasks that fill
+ * that store are done.
+ * A task is done when its code has returned. If a task throws an exception
+ * or is cancelled, the tasks that depend on it are skipped.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class DownloadTaskGraph {
+    private final DownloadExecutor executor;
+    private final List<Task> tasks = new LinkedList<>();
+    private CountDownLatch latch;
+    private volatile boolean cancelled = false;
+    private volatile boolean timedOut = false;
+
+    public DownloadTaskGraph(DownloadExecutor executor) {
+        super();
+        this.executor = executor;
+    }
+
+    /**
+     * Add a task.
+     *
+     * @param runnable The code to run
+     * @param produces The entity stores that are filled by this task
+     * @param dependencies The entity stores that must be complete before this task can start
+     * @return The task
+     */
+    public Task addTask(Runnable runnable, Collection<? extends EntityStore<?>> produces,
+            Collection<? extends EntityStore<?>> dependencies) {
+        return addTask(runnable, null, produces, dependencies);
+    }
+
+    /**
+     * Add a task that reports to a status. The status is marked as timed out
+     * if the graph times out before the task is done, and as failed if the
+     * task is skipped.
+     *
+     * @param runnable The code to run
+     * @param status The status of the downloader that runs this task. May be null.
+     * @param produces The entity stores that are filled by this task
+     * @param dependencies The entity stores that must be complete before this task can start
+     * @return The task
+     */
+    public Task addTask(Runnable runnable, Status status, Collection<? extends EntityStore<?>> produces,
+            Collection<? extends EntityStore<?>> dependencies) {
+        Task task = new Task(runnable, status, produces, dependencies);
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Add a task that depends on other tasks.
+     *
+     * @param runnable The code to run
+     * @param predecessors The tasks that must be done before this task can start
+     * @return The task
+     */
+    public Task addTask(Runnable runnable, Collection<Task> predecessors) {
+        return addTask(runnable, (Status) null, predecessors);
+    }
+
+    /**
+     * Add a task that depends on other tasks and reports to a status.
+     *
+     * @param runnable The code to run
+     * @param status The status of the downloader that runs this task. May be null.
+     * @param predecessors The tasks that must be done before this task can start
+     * @return The task
+     */
+    public Task addTask(Runnable runnable, Status status, Collection<Task> predecessors) {
+        Task task = new Task(runnable, status, Collections.emptyList(), Collections.emptyList());
+        task.predecessors.addAll(predecessors);
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Run all tasks and wait for them to complete. The tasks don't have a
+     * deadline of their own; the timeout applies to the graph as a whole.
+     *
+     * @param timeout The maximal duration in milliseconds
+     * @return true if all tasks completed in time
+     * @throws InterruptedException
+     */
+    public boolean run(long timeout) throws InterruptedException {
+        link();
+        latch = new CountDownLatch(tasks.size());
+        for (Task task : tasks) {
+            if (task.waitCount == 0) {
+                start(task);
+            }
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                long remaining = deadline - System.currentTimeMillis();
+                return remaining <= 0 || latch.await(remaining, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return latch.getCount() == 0 || System.currentTimeMillis() >= deadline;
+            }
+        });
+        if (latch.getCount() > 0) {
+            timedOut = true;
+            for (Task task : tasks) {
+                if (!task.finished.get() && task.status != null) {
+                    task.status.setTimedOut(true);
+                }
+            }
+            cancel();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Cancel the graph. Running tasks are interrupted and tasks that didn't
+     * start yet will not be started.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            for (Task task : tasks) {
+                if (task.future != null) {
+                    task.future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve the entity store dependencies to task dependencies and count
+     * the number of predecessors of each task.
+     */
+    private void link() {
+        Map<EntityStore<?>, List<Task>> producers = new HashMap<>();
+        for (Task task : tasks) {
+            for (EntityStore<?> store : task.produces) {
+                producers.computeIfAbsent(store, s -> new ArrayList<>()).add(task);
+            }
+        }
+        for (Task task : tasks) {
+            for (EntityStore<?> store : task.dependencies) {
+                for (Task producer : producers.getOrDefault(store, Collections.emptyList())) {
+                    if (producer != task && !task.predecessors.contains(producer)) {
+                        task.predecessors.add(producer);
+                    }
+                }
+            }
+        }
+        for (Task task : tasks) {
+            task.waitCount = task.predecessors.size();
+            for (Task predecessor : task.predecessors) {
+                predecessor.successors.add(task);
+            }
+        }
+    }
+
+    /**
+     * Start a task. The task is skipped if the graph was cancelled or if one
+     * of its predecessors didn't complete, because the data it needs may be
+     * incomplete.
+     */
+    private synchronized void start(Task task) {
+        if (cancelled) {
+            finish(task);
+            return;
+        }
+        for (Task predecessor : task.predecessors) {
+            if (!predecessor.completed) {
+                if (task.status != null) {
+                    task.status.setFailed(true);
+                    task.status.setMessage(I18n.tr("Skipped because an earlier part of the download did not complete"));
+                }
+                finish(task);
+                return;
+            }
+        }
+        task.future = executor.submit(() -> {
+            task.started = true;
+            try {
+                task.runnable.run();
+                task.completed = true;
+            }
+            catch (RuntimeException e) {
+                Logging.error(e);
+                if (task.status != null) {
+                    task.status.setException(e);
+                }
+            }
+            finally {
+                finish(task);
+            }
+            return null;
+        }, 0, () -> {
+            // A task that was cancelled before it started, will never finish by itself
+            if (!task.started) {
+                finish(task);
+            }
+        });
+    }
+
+    /**
+     * Mark a task as finished and start the successors that are ready.
+     * Called when the task has returned, or when it will never run. A
+     * cancelled task that is still running is not finished, so its
+     * successors never see the stores it was filling.
+     */
+    private void finish(Task task) {
+        if (!task.finished.compareAndSet(false, true)) {
+            return;
+        }
+        List<Task> ready = new ArrayList<>();
+        synchronized (this) {
+            for (Task successor : task.successors) {
+                if (--successor.waitCount == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+        latch.countDown();
+        ready.forEach(this::start);
+    }
+
+    public static class Task {
+        final Runnable runnable;
+        final Status status;
+        final Collection<? extends EntityStore<?>> produces;
+        final Collection<? extends EntityStore<?>> dependencies;
+        final List<Task> predecessors = new ArrayList<>();
+        final List<Task> successors = new ArrayList<>();
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        int waitCount;
+        Future<?> future;
+        volatile boolean started = false;
+        // True if the runnable returned normally
+        volatile boolean completed = false;
+
+        Task(Runnable runnable, Status status, Collection<? extends EntityStore<?>> produces,
+                Collection<? extends EntityStore<?>> dependencies) {
+            this.runnable = runnable;
+            this.status = status;
+            this.produces = produces;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package org.openstreetmap.josm.plugins.ods.io;
 
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
+import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+
 // TODO consider changing the method signatures from Runnable to Callable
 // returning a Status object
 public interface Downloader {
@@ -14,4 +21,47 @@ public interface Downloader {
     public void cancel();
 
     public Status getStatus();
+
+    /**
+     * Get the entity stores that are filled by this downloader. Tasks that
+     * depend on these stores will not start before this downloader has
+     * processed its data.
+     *
+     * @return the entity stores
+     */
+    public default Collection<? extends EntityStore<?>> getEntityStores() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Set the progress monitor for the download phase. Downloaders that can
+     * report their own progress, override this method.
+     *
+     * @param progressMonitor
+     */
+    public default void setProgressMonitor(ProgressMonitor progressMonitor) {
+        // Ignore by default
+    }
+
+    /**
+     * Get the number of objects that the download phase is expected to
+     * retrieve. Known after the prepare phase.
+     *
+     * @return The expected number of objects, or -1 if it is unknown
+     */
+    public default int getExpectedCount() {
+        return -1;
+    }
+
+    /**
+     * Fetch the data for an area into the prefetch store, without changing
+     * the entity stores or the layers. Called from a background thread.
+     * Downloaders that support prefetching, override this method.
+     *
+     * @param boundary The area to fetch
+     * @param store The store for the fetched data
+     */
+    public default void prefetch(Boundary boundary, PrefetchStore store) {
+        // Ignore by default
+    }
 }
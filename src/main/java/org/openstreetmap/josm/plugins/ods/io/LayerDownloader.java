@@ -1,8 +1,43 @@
 package org.openstreetmap.josm.plugins.ods.io;
 
+import java.util.Collections;
+
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
+
 /**
  * Marker interface
  */
 public interface LayerDownloader extends Downloader {
     public void setResponse(DownloadResponse response);
+
+    /**
+     * Add the tasks of this downloader to a download pipeline. By default,
+     * a single task is added that prepares, downloads and processes the data.
+     *
+     * @param graph
+     */
+    public default void addTasks(DownloadTaskGraph graph) {
+        graph.addTask(() -> {
+            prepare();
+            if (getStatus().isSucces()) {
+                download();
+            }
+            if (getStatus().isSucces()) {
+                process();
+            }
+        }, getStatus(), getEntityStores(), Collections.emptyList());
+    }
+
+    /**
+     * Get the status of the part of the download that fills an entity store.
+     * Downloaders that fill their stores with separate tasks, override this
+     * method, so a task that depends on one store doesn't have to wait for
+     * the others.
+     *
+     * @param store One of the entity stores of this downloader
+     * @return the status
+     */
+    public default Status getStatus(EntityStore<?> store) {
+        return getStatus();
+    }
 }
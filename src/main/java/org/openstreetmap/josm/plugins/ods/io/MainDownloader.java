@@ -1,20 +1,26 @@
 package org.openstreetmap.josm.plugins.ods.io;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.swing.JOptionPane;
 
 import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.layer.MainLayerManager;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.plugins.ods.OdsModule;
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
+import org.openstreetmap.josm.plugins.ods.entities.osm.OsmAddressNodeMatchingPostProcessor;
 import org.openstreetmap.josm.tools.I18n;
+import org.openstreetmap.josm.tools.Logging;
 
 /**
  * Main downloader that retrieves data from multiple sources. Currently only a OSM source
@@ -25,16 +31,23 @@ import org.openstreetmap.josm.tools.I18n;
  *
  */
 public abstract class MainDownloader {
-    private static final int NTHREADS = 10;
-
     private final OdsModule module;
 
     private List<LayerDownloader> enabledDownloaders;
 
-    private ExecutorService executorService;
+    private DownloadExecutor.Batch batch;
+
+    private DownloadTaskGraph pipeline;
+
+    private final List<PostProcessor> postProcessors = new LinkedList<>();
 
     private Status status = new Status();
 
+    private final RingPrefetcher prefetcher = new RingPrefetcher();
+
+    // True when the expired checkpoints have been deleted in this session
+    private boolean checkpointsSwept = false;
+
     public abstract void initialize() throws Exception;
 
     protected abstract LayerDownloader getOsmLayerDownloader();
@@ -44,13 +57,61 @@ public abstract class MainDownloader {
     public MainDownloader(OdsModule module) {
         super();
         this.module = module;
+        addPostProcessor(new OsmAddressNodeMatchingPostProcessor(module));
     }
 
     public OdsModule getModule() {
         return module;
     }
 
+    /**
+     * Add a post-processor that runs after the data it depends on has been
+     * downloaded and processed.
+     *
+     * @param postProcessor
+     */
+    public void addPostProcessor(PostProcessor postProcessor) {
+        postProcessors.add(postProcessor);
+    }
+
+    /**
+     * Check if the download should run as a pipeline. In a pipeline, every
+     * downloader processes its data as soon as its own download is complete,
+     * instead of waiting for all other downloaders at the end of every phase.
+     * Can be enabled with the 'ods.download.pipeline' preference.
+     *
+     * @return true if the download runs as a pipeline
+     */
+    protected boolean isPipelined() {
+        return Preferences.main().getBoolean("ods.download.pipeline", false);
+    }
+
+    /**
+     * Check if the progress of large downloads should be saved, so a
+     * download of the same area can resume after a crash or a cancel.
+     * Can be enabled with the 'ods.download.checkpoint' preference.
+     *
+     * @return true if downloads are checkpointed
+     */
+    protected boolean isCheckpointed() {
+        return Preferences.main().getBoolean("ods.download.checkpoint", false);
+    }
+
+    /**
+     * Check if the ring around a completed download should be prefetched in
+     * the background. Can be enabled with the 'ods.prefetch' preference. The
+     * width of the ring, relative to the size of the download area, can be
+     * configured with the 'ods.prefetch.ring' preference.
+     *
+     * @return true if prefetching is enabled
+     */
+    protected boolean isPrefetchEnabled() {
+        return Preferences.main().getBoolean("ods.prefetch", false);
+    }
+
     public void run(ProgressMonitor pm, DownloadRequest request) {
+        // Foreground downloads have priority over the prefetch
+        prefetcher.cancel();
         status.clear();
         // Switch to the Open data layer before downloading.
         MainLayerManager layerManager = MainApplication.getLayerManager();
@@ -61,43 +122,136 @@ public abstract class MainDownloader {
         if (status.isCancelled()) {
             return;
         }
-        pm.indeterminateSubTask(I18n.tr("Preparing"));
-        prepare();
-        if (status.isCancelled()) {
-            return;
+        DownloadResponse response = new DownloadResponse(request);
+        long start = System.currentTimeMillis();
+        // False if parts of the area are missing
+        boolean complete;
+        if (isPipelined()) {
+            // The counts are not known yet, so the progress is indeterminate
+            startDownloadProgress(pm);
+            runPipeline(response);
+            logDuration("pipeline", start);
+            complete = !status.isPartial();
+            if (!status.isSucces()) {
+                // The user has been informed by runPipeline
+                pm.finishTask();
+                return;
+            }
         }
-        pm.indeterminateSubTask(I18n.tr("Downloading"));
-        download();
-        if (status.isCancelled()) {
-            return;
+        else {
+            pm.indeterminateSubTask(I18n.tr("Preparing"));
+            long phaseStart = System.currentTimeMillis();
+            prepare();
+            logDuration("prepare", phaseStart);
+            if (status.isCancelled()) {
+                return;
+            }
+            if (!status.isSucces()) {
+                // Rejected before anything was downloaded
+                pm.finishTask();
+                JOptionPane.showMessageDialog(MainApplication.getMainFrame(), I18n.tr(
+                        "An error occurred: " + status.getMessage()));
+                return;
+            }
+            startDownloadProgress(pm);
+            phaseStart = System.currentTimeMillis();
+            download(response);
+            logDuration("download", phaseStart);
+            complete = !status.isPartial();
+            if (status.isCancelled()) {
+                return;
+            }
+            if (!status.isSucces()) {
+                pm.finishTask();
+                JOptionPane.showMessageDialog(MainApplication.getMainFrame(), I18n.tr(
+                        "An error occurred: " + status.getMessage()));
+                return;
+            }
+            pm.indeterminateSubTask(I18n.tr("Processing data"));
+            phaseStart = System.currentTimeMillis();
+            process(response);
+            logDuration("process", phaseStart);
+            if (status.isSucces()) {
+                phaseStart = System.currentTimeMillis();
+                postProcess(response);
+                logDuration("post-process", phaseStart);
+            }
+            if (!status.isSucces()) {
+                pm.finishTask();
+                JOptionPane.showMessageDialog(MainApplication.getMainFrame(), I18n.tr(
+                        "An error occurred: " + status.getMessage()));
+                return;
+            }
         }
-        if (!status.isSucces()) {
-            pm.finishTask();
-            JOptionPane.showMessageDialog(MainApplication.getMainFrame(), I18n.tr(
-                    "An error occurred: " + status.getMessage()));
-            return;
+
+        Logging.info("ODS download completed in {0} ms", System.currentTimeMillis() - start);
+        if (request.getCheckpoint() != null && complete) {
+            request.getCheckpoint().delete();
         }
-        pm.indeterminateSubTask(I18n.tr("Processing data"));
-        DownloadResponse response = new DownloadResponse(request);
-        process(response);
-        if (!status.isSucces()) {
-            pm.finishTask();
-            JOptionPane.showMessageDialog(MainApplication.getMainFrame(), I18n.tr(
-                    "An error occurred: " + status.getMessage()));
-            return;
+        if (isPrefetchEnabled()) {
+            prefetcher.start(request.getBoundary(),
+                    Preferences.main().getDouble("ods.prefetch.ring", 0.5),
+                    new ArrayList<>(enabledDownloaders), module.getPrefetchStore());
         }
-
         Bounds bounds = request.getBoundary().getBounds();
         computeBboxAndCenterScale(bounds);
         pm.finishTask();
     }
 
+    /**
+     * Show a determinate progress bar for the download phase if the layer
+     * downloaders know how many objects they will download. Every layer
+     * downloader gets its own share of the progress bar. This is the only
+     * place where the sub task monitors of the layer downloaders are created.
+     *
+     * @param pm
+     */
+    private void startDownloadProgress(ProgressMonitor pm) {
+        int total = 0;
+        for (LayerDownloader downloader : enabledDownloaders) {
+            total += Math.max(0, downloader.getExpectedCount());
+        }
+        if (total > 0) {
+            pm.subTask(I18n.tr("Downloading"));
+            pm.setTicks(0);
+            pm.setTicksCount(total);
+        }
+        else {
+            pm.indeterminateSubTask(I18n.tr("Downloading"));
+        }
+        for (LayerDownloader downloader : enabledDownloaders) {
+            int ticks = Math.max(0, downloader.getExpectedCount());
+            downloader.setProgressMonitor(pm.createSubTaskMonitor(ticks, false));
+        }
+    }
+
+    private static void logDuration(String phase, long start) {
+        Logging.debug("ODS download {0} took {1} ms", phase, System.currentTimeMillis() - start);
+    }
+
     /**
      * Setup the download jobs. One job for the Osm data and one for imported data.
      * Setup the download tasks. Maybe more than 1 per job.
      */
     private void setup(DownloadRequest request) {
         status.clear();
+        if (isCheckpointed()) {
+            long ttl = Preferences.main().getInt("ods.checkpoint.ttl", 24) * 3600_000L;
+            File checkpoints = new File(module.getPluginDir(), "checkpoints");
+            if (!checkpointsSwept) {
+                DownloadCheckpoint.deleteExpired(checkpoints, ttl);
+                checkpointsSwept = true;
+            }
+            File directory = new File(checkpoints, request.getKey());
+            DownloadCheckpoint checkpoint = new DownloadCheckpoint(directory, ttl);
+            if (checkpoint.exists()) {
+                Logging.info("Resuming the ODS download from checkpoint {0}", directory);
+            }
+            request.setCheckpoint(checkpoint);
+        }
+        if (isPrefetchEnabled()) {
+            request.setPrefetchStore(module.getPrefetchStore());
+        }
         enabledDownloaders = new LinkedList<>();
         if (request.isGetOsm()) {
             enabledDownloaders.add(getOsmLayerDownloader());
@@ -112,25 +266,8 @@ public abstract class MainDownloader {
 
     private void prepare() {
         status.clear();
-        executorService = Executors.newFixedThreadPool(NTHREADS);
-        for (final LayerDownloader downloader : enabledDownloaders) {
-            executorService.execute(downloader::prepare);
-        }
-
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(5, TimeUnit.MINUTES)) {
-                status.setTimedOut(true);
-                return;
-            }
-        }
-        catch (InterruptedException e) {
-            executorService.shutdownNow();
-            for (LayerDownloader downloader : enabledDownloaders) {
-                downloader.cancel();
-            }
-            status.setException(e);
-            status.setFailed(true);
+        if (!runPhase(LayerDownloader::prepare)) {
+            return;
         }
         for (LayerDownloader downloader : enabledDownloaders) {
             Status st = downloader.getStatus();
@@ -140,30 +277,28 @@ public abstract class MainDownloader {
         }
     }
 
-    private void download() {
+    private void download(DownloadResponse response) {
         status.clear();
-        executorService = Executors.newFixedThreadPool(NTHREADS);
-        for (final LayerDownloader downloader : enabledDownloaders) {
-            executorService.execute(downloader::download);
-        }
-
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(5, TimeUnit.MINUTES)) {
-                status.setTimedOut(true);
-                return;
-            }
+        for (LayerDownloader downloader : enabledDownloaders) {
+            downloader.setResponse(response);
         }
-        catch (InterruptedException e) {
-            executorService.shutdownNow();
-            for (LayerDownloader downloader : enabledDownloaders) {
-                downloader.cancel();
-            }
-            status.setException(e);
-            status.setFailed(true);
+        // Partial downloads have to stop before the phase is cancelled
+        response.getRequest().setDeadline(System.currentTimeMillis()
+                + DownloadExecutor.getInstance().getPhaseTimeout());
+        if (!runPhase(LayerDownloader::download)) {
+            return;
         }
+        checkDownloadStatus();
+    }
+
+    /**
+     * Combine the status of the layer downloaders and inform the user about
+     * any problems.
+     */
+    private void checkDownloadStatus() {
         List<String> failureMessages = new LinkedList<>();
         List<String> cancelMessages = new LinkedList<>();
+        List<String> partialMessages = new LinkedList<>();
         boolean timedOut = false;
         for (LayerDownloader downloader : enabledDownloaders) {
             Status st = downloader.getStatus();
@@ -176,6 +311,9 @@ public abstract class MainDownloader {
             if (st.isTimedOut()) {
                 timedOut = true;
             }
+            if (st.isPartial()) {
+                partialMessages.add(st.getMessage());
+            }
         }
         //                this.status.setMessage(this.status.getMessage() + "\n" + status.getMessage());
         if (!failureMessages.isEmpty()) {
@@ -198,6 +336,16 @@ public abstract class MainDownloader {
                     message));
 
         }
+        else if (!partialMessages.isEmpty()) {
+            // Keep the completed parts. The missing parts are not added to
+            // the boundaries of the entity stores, so the next download will
+            // retry them.
+            String message = String.join("\n", partialMessages);
+            this.status.setPartial(true);
+            this.status.setMessage(message);
+            JOptionPane.showMessageDialog(MainApplication.getMainFrame(), I18n.tr("The download is incomplete:\n" +
+                    message), I18n.tr("Warning"), JOptionPane.WARNING_MESSAGE);
+        }
     }
 
     /**
@@ -209,33 +357,135 @@ public abstract class MainDownloader {
             return;
         }
         status.clear();
-        executorService = Executors.newFixedThreadPool(NTHREADS);
-        for (final LayerDownloader downloader : enabledDownloaders) {
+        for (LayerDownloader downloader : enabledDownloaders) {
             downloader.setResponse(response);
-            executorService.execute(downloader::process);
         }
+        if (!runPhase(LayerDownloader::process)) {
+            return;
+        }
+        for (LayerDownloader downloader : enabledDownloaders) {
+            Status st = downloader.getStatus();
+            if (!st.isSucces()) {
+                this.status = st;
+            }
+        }
+    }
 
-        executorService.shutdown();
+    /**
+     * Run the post-processors in parallel.
+     *
+     * @param response
+     */
+    private void postProcess(DownloadResponse response) {
+        if (postProcessors.isEmpty()) {
+            return;
+        }
+        List<Runnable> tasks = new ArrayList<>(postProcessors.size());
+        for (PostProcessor postProcessor : postProcessors) {
+            tasks.add(() -> postProcessor.run(response));
+        }
+        batch = DownloadExecutor.getInstance().start(tasks);
         try {
-            if (!executorService.awaitTermination(5, TimeUnit.MINUTES)) {
+            if (!batch.await()) {
                 status.setTimedOut(true);
+            }
+        }
+        catch (InterruptedException e) {
+            batch.cancel();
+            status.setException(e);
+        }
+    }
+
+    /**
+     * Run the download as a pipeline. Every layer downloader adds its own
+     * tasks to the pipeline. A post-processor starts as soon as the entity
+     * stores it depends on are complete.
+     *
+     * @param response
+     */
+    private void runPipeline(DownloadResponse response) {
+        status.clear();
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        pipeline = new DownloadTaskGraph(executor);
+        for (LayerDownloader downloader : enabledDownloaders) {
+            downloader.setResponse(response);
+            downloader.addTasks(pipeline);
+        }
+        for (PostProcessor postProcessor : postProcessors) {
+            Collection<? extends EntityStore<?>> dependencies = postProcessor.getDependencies();
+            pipeline.addTask(() -> {
+                // Don't run on incomplete data
+                if (isComplete(dependencies)) {
+                    postProcessor.run(response);
+                }
+            }, Collections.emptyList(), dependencies);
+        }
+        response.getRequest().setDeadline(System.currentTimeMillis() + executor.getPhaseTimeout());
+        try {
+            if (!pipeline.run(executor.getPhaseTimeout())) {
+                status.setTimedOut(true);
+                JOptionPane.showMessageDialog(MainApplication.getMainFrame(), I18n.tr("The download timed out"));
                 return;
             }
         }
         catch (InterruptedException e) {
-            executorService.shutdownNow();
-            //            for (LayerDownloader downloader : enabledDownloaders) {
-            //                downloader.cancel();
-            //            }
+            pipeline.cancel();
+            for (LayerDownloader downloader : enabledDownloaders) {
+                downloader.cancel();
+            }
             status.setException(e);
-            status.setFailed(true);
+            return;
         }
+        checkDownloadStatus();
+    }
+
+    /**
+     * Check if the tasks that fill the given entity stores succeeded. Only
+     * call this from a task that depends on these stores, because the status
+     * of a task that is still running is not final.
+     *
+     * @param stores The entity stores
+     * @return false if one of the stores was not filled completely
+     */
+    private boolean isComplete(Collection<? extends EntityStore<?>> stores) {
         for (LayerDownloader downloader : enabledDownloaders) {
-            Status st = downloader.getStatus();
-            if (!st.isSucces()) {
-                this.status = st;
+            Collection<? extends EntityStore<?>> produced = downloader.getEntityStores();
+            for (EntityStore<?> store : stores) {
+                if (produced.contains(store) && !downloader.getStatus(store).isSucces()) {
+                    return false;
+                }
             }
         }
+        return true;
+    }
+
+    /**
+     * Run a download phase for all enabled layer downloaders in parallel.
+     *
+     * @param phase The phase to run
+     * @return false if the phase timed out
+     */
+    private boolean runPhase(Consumer<LayerDownloader> phase) {
+        List<Runnable> tasks = new ArrayList<>(enabledDownloaders.size());
+        for (LayerDownloader downloader : enabledDownloaders) {
+            tasks.add(() -> phase.accept(downloader));
+        }
+        batch = DownloadExecutor.getInstance().start(tasks);
+        try {
+            if (!batch.await()) {
+                status.setTimedOut(true);
+                return false;
+            }
+        }
+        catch (InterruptedException e) {
+            batch.cancel();
+            for (LayerDownloader downloader : enabledDownloaders) {
+                downloader.cancel();
+            }
+            status.setException(e);
+            status.setFailed(true);
+        }
+        return true;
     }
 
     protected static void computeBboxAndCenterScale(Bounds bounds) {
@@ -247,10 +497,16 @@ public abstract class MainDownloader {
     }
 
     public void cancel() {
+        prefetcher.cancel();
         status.setCancelled(true);
         for (LayerDownloader downloader : enabledDownloaders) {
             downloader.cancel();
         }
-        executorService.shutdownNow();
+        if (batch != null) {
+            batch.cancel();
+        }
+        if (pipeline != null) {
+            pipeline.cancel();
+        }
     }
 }
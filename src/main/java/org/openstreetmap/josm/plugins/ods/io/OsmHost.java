@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.ods.io;
 import java.net.MalformedURLException;
 
 import org.openstreetmap.josm.io.OsmServerReader;
+import org.openstreetmap.josm.plugins.ods.jts.Boundary;
 
 /**
  * A host that can handle a request for OSM data;
@@ -29,4 +30,12 @@ public interface OsmHost {
      * @throws MalformedURLException 
      */
     public OsmServerReader getServerReader(DownloadRequest request) throws MalformedURLException;
+
+    /**
+     * Create a ServerReader for the supplied boundary.
+     * @param boundary
+     * @return an OsmServerReader for the boundary
+     * @throws MalformedURLException
+     */
+    public OsmServerReader getServerReader(Boundary boundary) throws MalformedURLException;
 }
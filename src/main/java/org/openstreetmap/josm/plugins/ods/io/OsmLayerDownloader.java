@@ -2,22 +2,38 @@ package org.openstreetmap.josm.plugins.ods.io;
 
 import java.net.MalformedURLException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.OsmApiException;
 import org.openstreetmap.josm.io.OsmServerReader;
 import org.openstreetmap.josm.io.OsmTransferException;
 import org.openstreetmap.josm.plugins.ods.OdsModule;
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
 import org.openstreetmap.josm.plugins.ods.entities.osm.OsmEntitiesBuilder;
 import org.openstreetmap.josm.plugins.ods.entities.osm.OsmLayerManager;
 import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+import org.openstreetmap.josm.plugins.ods.jts.GeoUtil;
+import org.openstreetmap.josm.plugins.ods.jts.GridTiler;
 import org.openstreetmap.josm.plugins.ods.jts.MultiPolygonFilter;
 import org.openstreetmap.josm.tools.I18n;
 import org.openstreetmap.josm.tools.Logging;
 
 public class OsmLayerDownloader implements LayerDownloader {
+    private static final String PREFETCH_SOURCE = "osm";
+
     private DownloadRequest request;
     @SuppressWarnings("unused")
     private DownloadResponse response;
@@ -28,7 +44,14 @@ public class OsmLayerDownloader implements LayerDownloader {
     private OsmEntitiesBuilder entitiesBuilder;
 
     private OsmHost host;
+    private Boundary boundary;
+    // The area to keep if the host downloaded a larger area than requested
+    private MultiPolygon filterArea;
+    private List<Geometry> tiles = Collections.emptyList();
+    // The tiles that could not be downloaded in time
+    private List<Geometry> missingAreas = Collections.emptyList();
     private DataSet dataSet;
+    private ProgressMonitor progressMonitor = NullProgressMonitor.INSTANCE;
 
     static enum DownloadSource {
         OSM,
@@ -47,6 +70,11 @@ public class OsmLayerDownloader implements LayerDownloader {
         return status;
     }
 
+    @Override
+    public void setProgressMonitor(ProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
     @Override
     public void setResponse(DownloadResponse response) {
         this.response = response;
@@ -67,19 +95,180 @@ public class OsmLayerDownloader implements LayerDownloader {
         default:
             return;
         }
+        filterArea = null;
+        tiles = Collections.emptyList();
+        missingAreas = Collections.emptyList();
+        boundary = getDownloadBoundary();
+        if (boundary == null) {
+            // Everything has been downloaded before
+            osmServerReader = null;
+            return;
+        }
+        if (!boundary.isRectangular() && !host.supportsPolygon()) {
+            filterArea = boundary.getMultiPolygon();
+            boundary = new Boundary(boundary.getBounds());
+        }
         try {
-            osmServerReader = host.getServerReader(request);
+            osmServerReader = createServerReader();
         } catch (MalformedURLException e) {
             status.setException(e);
+            return;
+        }
+        List<String> prefetched = findPrefetched();
+        if (prefetched != null) {
+            // The prefetched areas are larger than the download area
+            if (filterArea == null) {
+                filterArea = boundary.getMultiPolygon();
+            }
+            osmServerReader = new PrefetchedOsmServerReader(request.getPrefetchStore(),
+                    prefetched, osmServerReader);
+        }
+    }
+
+    /**
+     * Find the prefetched data for the part of the download area that has
+     * not been downloaded yet.
+     *
+     * @return The keys of the prefetched data, or null if the prefetched
+     *     data doesn't cover the area
+     */
+    private List<String> findPrefetched() {
+        PrefetchStore store = request.getPrefetchStore();
+        if (store == null) {
+            return null;
+        }
+        Geometry needed = boundary.getMultiPolygon();
+        Geometry covered = getCoveredArea();
+        if (covered != null) {
+            needed = needed.difference(covered);
+        }
+        List<PrefetchStore.Entry> entries = store.findCovering(PREFETCH_SOURCE, needed);
+        if (entries == null) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>(entries.size());
+        entries.forEach(entry -> keys.add(entry.getKey()));
+        Logging.debug("Using prefetched OSM data");
+        return keys;
+    }
+
+    /**
+     * Fetch the OSM data of an area into the prefetch store.
+     */
+    @Override
+    public void prefetch(Boundary area, PrefetchStore store) {
+        OsmHost osmHost = host;
+        if (osmHost == null) {
+            return;
+        }
+        try {
+            DataSet prefetched = osmHost.getServerReader(area).parseOsm(NullProgressMonitor.INSTANCE);
+            if (prefetched == null || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            String key = DownloadCheckpoint.createKey("prefetch:" + PREFETCH_SOURCE, area.getMultiPolygon());
+            store.writeOsm(key, prefetched);
+            store.add(PREFETCH_SOURCE, area.getMultiPolygon(), key);
+        } catch (MalformedURLException | OsmTransferException e) {
+            Logging.info("Prefetch of OSM data failed: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Create the server reader. If a tile size was configured with the
+     * 'ods.osm.tile.size' preference (in degrees), large areas are split
+     * into tiles that are downloaded in parallel. The tiles are stored in
+     * the checkpoint of the download, if any.
+     *
+     * @return The server reader
+     * @throws MalformedURLException
+     */
+    private OsmServerReader createServerReader() throws MalformedURLException {
+        double tileSize = Preferences.main().getDouble("ods.osm.tile.size", 0.0);
+        if (tileSize <= 0) {
+            return host.getServerReader(boundary);
+        }
+        tiles = new GridTiler(tileSize).split(boundary.getMultiPolygon());
+        if (tiles.size() <= 1) {
+            return host.getServerReader(boundary);
+        }
+        DownloadCheckpoint checkpoint = request.getCheckpoint();
+        List<OsmServerReader> tileReaders = new ArrayList<>(tiles.size());
+        for (Geometry tile : tiles) {
+            OsmServerReader reader = host.getServerReader(getTileBoundary(tile));
+            if (checkpoint != null) {
+                String key = DownloadCheckpoint.createKey("osm", tile);
+                reader = new CheckpointOsmServerReader(reader, checkpoint, key);
+            }
+            tileReaders.add(reader);
+        }
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        if (executor.isPartialResultsEnabled()) {
+            return new TiledOsmServerReader(tileReaders, executor,
+                    () -> executor.getPartialTimeout(request.getDeadline()));
+        }
+        return new TiledOsmServerReader(tileReaders, executor);
+    }
+
+    private Boundary getTileBoundary(Geometry tile) {
+        Envelope envelope = tile.getEnvelopeInternal();
+        Bounds bounds = new Bounds(envelope.getMinY(), envelope.getMinX(),
+                envelope.getMaxY(), envelope.getMaxX());
+        if (tile.isRectangle() || !host.supportsPolygon()) {
+            return new Boundary(bounds);
+        }
+        List<Polygon> polygons = new ArrayList<>(tile.getNumGeometries());
+        for (int i = 0; i < tile.getNumGeometries(); i++) {
+            if (tile.getGeometryN(i) instanceof Polygon) {
+                polygons.add((Polygon) tile.getGeometryN(i));
+            }
+        }
+        if (polygons.isEmpty()) {
+            return new Boundary(bounds);
         }
+        return new Boundary(GeoUtil.getInstance().createMultiPolygon(polygons));
+    }
+
+    /**
+     * Get the boundary of the area to download. For an incremental download,
+     * this is the part of the requested area that has not been downloaded yet.
+     *
+     * @return The boundary, or null if there is nothing to download
+     */
+    private Boundary getDownloadBoundary() {
+        if (!request.isIncremental()) {
+            return request.getBoundary();
+        }
+        return request.getBoundary().difference(getCoveredArea());
+    }
+
+    /**
+     * Get the area that is covered by all OSM entity stores.
+     *
+     * @return the covered area, or null if nothing was downloaded yet.
+     */
+    private Geometry getCoveredArea() {
+        Geometry covered = null;
+        for (EntityStore<?> store : layerManager.getEntityStores()) {
+            Geometry storeBoundary = store.getBoundary();
+            covered = (covered == null ? storeBoundary : covered.intersection(storeBoundary));
+        }
+        return covered;
     }
 
     @Override
     public void download() {
+        if (osmServerReader == null) {
+            dataSet = null;
+            return;
+        }
         try {
             dataSet = parseDataSet();
-            if (downloadSource == DownloadSource.OSM) {
-                MultiPolygonFilter filter = new MultiPolygonFilter(request.getBoundary().getMultiPolygon());
+            if (osmServerReader instanceof TiledOsmServerReader) {
+                collectMissingAreas(((TiledOsmServerReader) osmServerReader).getIncompleteTiles());
+            }
+            if (filterArea != null) {
+                MultiPolygonFilter filter = new MultiPolygonFilter(filterArea);
                 dataSet = filter.filter(dataSet);
             }
         }
@@ -111,6 +300,26 @@ public class OsmLayerDownloader implements LayerDownloader {
         }
     }
 
+    /**
+     * Record the tiles that were not downloaded by a partial download.
+     *
+     * @param incompleteTiles The indexes of the incomplete tiles
+     */
+    private void collectMissingAreas(List<Integer> incompleteTiles) {
+        if (incompleteTiles.isEmpty()) {
+            return;
+        }
+        List<Geometry> areas = new ArrayList<>(incompleteTiles.size());
+        for (Integer tile : incompleteTiles) {
+            areas.add(tiles.get(tile));
+        }
+        missingAreas = areas;
+        status.setPartial(true);
+        status.setMessage(I18n.tr("{0} of {1} parts of the OSM download are missing.",
+                incompleteTiles.size(), tiles.size()));
+        Logging.warn(status.getMessage());
+    }
+
     @Override
     public void prepare() {
         // Nothing to prepare
@@ -119,19 +328,34 @@ public class OsmLayerDownloader implements LayerDownloader {
 
     @Override
     public void process() {
-        merge();
-        entitiesBuilder.build();
+        if (dataSet != null) {
+            merge();
+        }
+        entitiesBuilder.buildEntities();
+        // Leave the missing areas out of the boundary, so an incremental
+        // download will retry them
+        Geometry downloaded = request.getBoundary().getMultiPolygon();
+        for (Geometry missingArea : missingAreas) {
+            downloaded = downloaded.difference(missingArea);
+        }
+        for (EntityStore<?> store : layerManager.getEntityStores()) {
+            store.extendBoundary(downloaded);
+        }
     }
 
     private void merge() {
         layerManager.getOsmDataLayer().mergeFrom(dataSet);
-        Boundary boundary = request.getBoundary();
         DataSource ds = new DataSource(boundary.getBounds(), "OSM");
         layerManager.getOsmDataLayer().getDataSet().addDataSource(ds);
 
     }
     private DataSet parseDataSet() throws OsmTransferException {
-        return osmServerReader.parseOsm(NullProgressMonitor.INSTANCE);
+        return osmServerReader.parseOsm(progressMonitor);
+    }
+
+    @Override
+    public Collection<? extends EntityStore<?>> getEntityStores() {
+        return layerManager.getEntityStores();
     }
 
     public DataSet getDataSet() {
@@ -140,7 +364,9 @@ public class OsmLayerDownloader implements LayerDownloader {
 
     @Override
     public void cancel() {
-        osmServerReader.cancel();
+        if (osmServerReader != null) {
+            osmServerReader.cancel();
+        }
         status.setCancelled(true);
     }
 }
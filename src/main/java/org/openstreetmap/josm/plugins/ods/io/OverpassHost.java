@@ -1,6 +1,11 @@
 package org.openstreetmap.josm.plugins.ods.io;
 
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 import org.openstreetmap.josm.data.Bounds;
@@ -8,14 +13,25 @@ import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.io.OsmServerReader;
 import org.openstreetmap.josm.io.OverpassDownloadReader;
 import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+import org.openstreetmap.josm.plugins.ods.jts.RingSimplifier;
 
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.operation.buffer.BufferOp;
+import org.locationtech.jts.operation.buffer.BufferParameters;
 
 public class OverpassHost implements OsmHost {
-    private static final String OVERPASS_QUERY =
+    private static final String BBOX_QUERY =
             "(node({{bbox}});rel(bn)->.x;way({{bbox}});" +
                     "node(w)->.x;rel(bw););out meta;";
+    // Above this number of polygons, query the convex hull instead
+    private static final int MAX_POLYGONS = 10;
+    // The minimal number of points of a simplified polygon
+    private static final int MIN_POINTS = 5;
 
     @Override
     public String getHostString() {
@@ -32,19 +48,71 @@ public class OverpassHost implements OsmHost {
 
     @Override
     public OsmServerReader getServerReader(DownloadRequest request) throws MalformedURLException {
-        return new OverpassDownloadReader(request.getBoundary().getBounds(),
-                getHostString(), OVERPASS_QUERY);
+        return getServerReader(request.getBoundary());
+    }
+
+    @Override
+    public OsmServerReader getServerReader(Boundary boundary) throws MalformedURLException {
+        ResponseStore store = ResponseStore.fromPreferences();
+        if (store != null) {
+            return new RecordReplayOverpassReader(boundary.getBounds(),
+                    getHostString(), getQuery(boundary), store);
+        }
+        return new OverpassDownloadReader(boundary.getBounds(),
+                getHostString(), getQuery(boundary));
     }
 
     /**
      * The current implementation is based on the Josm built-in OverpassDownloadReader
-     * class. This class doesn't support polygon-based downloading.
+     * class. This class only substitutes the bounding box in the query, so
+     * the polygons are added to the query before it is passed to the reader.
      *
      * @see org.openstreetmap.josm.plugins.ods.io.OsmHost#supportsPolygon()
      */
     @Override
     public boolean supportsPolygon() {
-        return false;
+        return true;
+    }
+
+    /**
+     * Create the overpass query for a boundary. A rectangular boundary is
+     * queried by its bounding box. For other boundaries, every polygon is
+     * selected once into a named set, and the results of all sets are
+     * combined in a union.
+     * The polygons are simplified until the URL encoded query fits in the
+     * maximal query length. If even the convex hull doesn't fit, the
+     * bounding box is queried instead. The maximal length can be configured
+     * with the 'ods.overpass.query.maxlength' preference, the initial number
+     * of points with the 'ods.overpass.polygon.maxpoints' preference.
+     *
+     * @param boundary
+     * @return The query
+     */
+    static String getQuery(Boundary boundary) {
+        if (boundary.isRectangular()) {
+            return BBOX_QUERY;
+        }
+        int maxLength = getMaxLength();
+        MultiPolygon multiPolygon = boundary.getMultiPolygon();
+        int count = multiPolygon.getNumGeometries();
+        if (count > 0 && count <= MAX_POLYGONS) {
+            for (int maxPoints = getMaxPoints(); maxPoints / count >= MIN_POINTS; maxPoints /= 2) {
+                String query = getPolygonQuery(multiPolygon, boundary, maxPoints / count);
+                if (getEncodedLength(query) <= maxLength) {
+                    return query;
+                }
+            }
+        }
+        // Query the convex hull of all polygons
+        Polygon hull = toPolygon(multiPolygon.convexHull(), boundary);
+        for (int maxPoints = getMaxPoints(); maxPoints >= MIN_POINTS; maxPoints /= 2) {
+            String query = createQuery(Collections.singletonList(
+                    getPolygon(new RingSimplifier(maxPoints).simplify(hull))));
+            if (getEncodedLength(query) <= maxLength) {
+                return query;
+            }
+        }
+        return BBOX_QUERY;
     }
 
     /**
@@ -56,7 +124,74 @@ public class OverpassHost implements OsmHost {
         if (boundary.isRectangular()) {
             return getBBox(boundary.getBounds());
         }
-        return getBBox(boundary.getRing());
+        Polygon hull = toPolygon(boundary.getMultiPolygon().convexHull(), boundary);
+        return getPolygon(new RingSimplifier(getMaxPoints()).simplify(hull));
+    }
+
+    /**
+     * Create the query for the simplified polygons of a multipolygon.
+     *
+     * @param multiPolygon
+     * @param boundary
+     * @param maxPoints The maximal number of points per polygon
+     * @return The query
+     */
+    private static String getPolygonQuery(MultiPolygon multiPolygon, Boundary boundary, int maxPoints) {
+        RingSimplifier simplifier = new RingSimplifier(maxPoints);
+        List<String> polygons = new ArrayList<>(multiPolygon.getNumGeometries());
+        for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
+            Polygon polygon = toPolygon(multiPolygon.getGeometryN(i), boundary);
+            polygons.add(getPolygon(simplifier.simplify(polygon)));
+        }
+        return createQuery(polygons);
+    }
+
+    /**
+     * Create a query that selects everything in the polygons. Every polygon
+     * occurs only once in the query. The query returns the same data as the
+     * bounding box query.
+     *
+     * @param polygons The overpass polygon strings
+     * @return The query
+     */
+    private static String createQuery(List<String> polygons) {
+        StringBuilder sb = new StringBuilder(4000);
+        for (int i = 0; i < polygons.size(); i++) {
+            sb.append("nwr(").append(polygons.get(i)).append(")->.a").append(i).append(';');
+        }
+        sb.append('(');
+        for (int i = 0; i < polygons.size(); i++) {
+            sb.append("node.a").append(i).append(";way.a").append(i)
+                .append(";rel(bw.a").append(i).append(");");
+        }
+        sb.append(");out meta;");
+        return sb.toString();
+    }
+
+    /**
+     * Get the length of the query as it is sent to the server.
+     */
+    static int getEncodedLength(String query) {
+        try {
+            return URLEncoder.encode(query, "UTF-8").length();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Polygon toPolygon(Geometry geometry, Boundary boundary) {
+        if (geometry instanceof Polygon) {
+            return (Polygon) geometry;
+        }
+        return (Polygon) geometry.getFactory().toGeometry(boundary.getEnvelope());
+    }
+
+    private static int getMaxPoints() {
+        return Preferences.main().getInt("ods.overpass.polygon.maxpoints", 200);
+    }
+
+    private static int getMaxLength() {
+        return Preferences.main().getInt("ods.overpass.query.maxlength", 4000);
     }
 
     /**
@@ -72,24 +207,36 @@ public class OverpassHost implements OsmHost {
     }
 
     /**
-     * Create an overpass bounding box String from a JTS LinearRing object
-     * @param ring
+     * Create an overpass polygon String from a simplified polygon.
+     * The coordinates are rounded to a precision that matches the size of
+     * the polygon. The polygon is first grown by the rounding error, so the
+     * rounded polygon still covers the original.
+     *
+     * @param polygon
      * @return
      */
-    private static String getBBox(LinearRing ring) {
+    private static String getPolygon(Polygon polygon) {
+        Envelope envelope = polygon.getEnvelopeInternal();
+        double size = Math.max(envelope.getWidth(), envelope.getHeight());
+        // About 1/10000 of the polygon size, between 1 cm and 100 m
+        int decimals = (int) Math.ceil(-Math.log10(Math.max(size, 1e-3) / 10000));
+        decimals = Math.max(3, Math.min(7, decimals));
+        double roundingError = Math.pow(10, -decimals);
+        Geometry grown = BufferOp.bufferOp(polygon, roundingError, new BufferParameters(0,
+                BufferParameters.CAP_FLAT, BufferParameters.JOIN_MITRE, 5.0));
+        LineString ring = (grown instanceof Polygon ? (Polygon) grown : polygon).getExteriorRing();
+        String format = "%." + decimals + "f %." + decimals + "f";
         StringBuilder sb = new StringBuilder(1000);
         sb.append("poly:\"");
         Coordinate[] coords = ring.getCoordinates();
-        for (Coordinate coord : coords) {
-            sb.append(formatCoordinate(coord.y, coord.x));
+        // Overpass closes the ring by itself
+        for (int i = 0; i < coords.length - 1; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(String.format(Locale.ENGLISH, format, coords[i].y, coords[i].x));
         }
-        // Remove last space to fix issue #57
-        sb.setLength(sb.length() - 1);
         sb.append("\"");
         return sb.toString();
     }
-
-    private static String formatCoordinate(Double lat, Double lon) {
-        return String.format(Locale.ENGLISH, "%f %f ", lat, lon);
-    }
 }
@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.ods.io;
 import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.io.BoundingBoxDownloader;
 import org.openstreetmap.josm.io.OsmServerReader;
+import org.openstreetmap.josm.plugins.ods.jts.Boundary;
 import org.openstreetmap.josm.tools.I18n;
 
 public class PlainOsmHost implements OsmHost {
@@ -23,12 +24,17 @@ public class PlainOsmHost implements OsmHost {
 
     @Override
     public OsmServerReader getServerReader(DownloadRequest request) {
-        if (!request.getBoundary().isRectangular()) {
+        return getServerReader(request.getBoundary());
+    }
+
+    @Override
+    public OsmServerReader getServerReader(Boundary boundary) {
+        if (!boundary.isRectangular()) {
             throw new UnsupportedOperationException(I18n.tr(
                     "Polygon downloads are not supported for this host: {0}",
                     getHostString()));
         }
-        return new BoundingBoxDownloader(request.getBoundary().getBounds());
+        return new BoundingBoxDownloader(boundary.getBounds());
     }
 
 
@@ -0,0 +1,25 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.util.Collection;
+
+import org.openstreetmap.josm.plugins.ods.entities.EntityStore;
+
+/**
+ * A task that runs after the download and depends on the data in one or more
+ * entity stores. For example the matching of address nodes to buildings.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public interface PostProcessor {
+    /**
+     * Get the entity stores this post-processor depends on. In a pipelined
+     * download, the post-processor starts as soon as the downloaders that
+     * fill these stores are done.
+     *
+     * @return the entity stores
+     */
+    public Collection<? extends EntityStore<?>> getDependencies();
+
+    public void run(DownloadResponse response);
+}
@@ -0,0 +1,115 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.locationtech.jts.geom.Geometry;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.plugins.ods.geotools.FeatureCache;
+
+/**
+ * On-disk store for data that was prefetched in the background. The data is
+ * stored per source (a feature type or the OSM data) and per area.
+ * A download can be served from this store if the prefetched areas of its
+ * source cover the download area.
+ * The data itself is stored in the same format as the tiles of a
+ * {@link DownloadCheckpoint}. The index of the areas is kept in memory, so
+ * prefetched data is only used in the session that fetched it.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class PrefetchStore {
+    private final DownloadCheckpoint storage;
+    private final Map<String, List<Entry>> entries = new HashMap<>();
+
+    /**
+     * @param directory The directory for the prefetched data
+     * @param timeToLive The time to live of the prefetched data in milliseconds
+     */
+    public PrefetchStore(File directory, long timeToLive) {
+        super();
+        this.storage = new DownloadCheckpoint(directory, timeToLive);
+    }
+
+    public FeatureCache getFeatureCache() {
+        return storage.getFeatureCache();
+    }
+
+    public DataSet readOsm(String key) {
+        return storage.readOsmTile(key);
+    }
+
+    public void writeOsm(String key, DataSet dataSet) {
+        storage.writeOsmTile(key, dataSet);
+    }
+
+    /**
+     * Register the prefetched data for an area. Call this method after the
+     * data has been stored completely.
+     *
+     * @param source The source name
+     * @param area The area in the OSM CRS
+     * @param key The key of the stored data
+     */
+    public synchronized void add(String source, Geometry area, String key) {
+        entries.computeIfAbsent(source, s -> new ArrayList<>()).add(new Entry(area, key));
+    }
+
+    /**
+     * Find the prefetched data that covers an area.
+     *
+     * @param source The source name
+     * @param area The area in the OSM CRS
+     * @return The entries that together cover the area, or null if the area
+     *     is not covered completely.
+     */
+    public synchronized List<Entry> findCovering(String source, Geometry area) {
+        List<Entry> sourceEntries = entries.get(source);
+        if (sourceEntries == null || area.isEmpty()) {
+            return null;
+        }
+        List<Entry> result = new ArrayList<>();
+        Geometry covered = null;
+        for (Entry entry : sourceEntries) {
+            if (entry.getArea().intersects(area)) {
+                result.add(entry);
+                covered = (covered == null ? entry.getArea() : covered.union(entry.getArea()));
+            }
+        }
+        if (covered == null || !covered.covers(area)) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Remove all prefetched data.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        storage.delete();
+    }
+
+    public static class Entry {
+        private final Geometry area;
+        private final String key;
+
+        Entry(Geometry area, String key) {
+            super();
+            this.area = area;
+            this.key = key;
+        }
+
+        public Geometry getArea() {
+            return area;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+}
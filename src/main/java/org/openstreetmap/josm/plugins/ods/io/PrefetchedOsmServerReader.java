@@ -0,0 +1,49 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.util.List;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.io.OsmServerReader;
+import org.openstreetmap.josm.io.OsmTransferException;
+
+/**
+ * OsmServerReader that serves the OSM data from the prefetch store. The data
+ * of the prefetched areas is merged into a single data set. If one of the
+ * areas is no longer available, the data is read from the fallback reader.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class PrefetchedOsmServerReader extends OsmServerReader {
+    private final PrefetchStore store;
+    private final List<String> keys;
+    private final OsmServerReader fallbackReader;
+
+    public PrefetchedOsmServerReader(PrefetchStore store, List<String> keys,
+            OsmServerReader fallbackReader) {
+        super();
+        this.store = store;
+        this.keys = keys;
+        this.fallbackReader = fallbackReader;
+    }
+
+    @Override
+    public DataSet parseOsm(ProgressMonitor progressMonitor) throws OsmTransferException {
+        DataSet dataSet = new DataSet();
+        for (String key : keys) {
+            DataSet prefetched = store.readOsm(key);
+            if (prefetched == null) {
+                return fallbackReader.parseOsm(progressMonitor);
+            }
+            dataSet.mergeFrom(prefetched);
+        }
+        return dataSet;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        fallbackReader.cancel();
+    }
+}
@@ -0,0 +1,48 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.io.OsmTransferException;
+import org.openstreetmap.josm.io.OverpassDownloadReader;
+
+/**
+ * OverpassDownloadReader that records the server responses in a response
+ * store, or replays them from the store without contacting the server.
+ *
+ * @see ResponseStore
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class RecordReplayOverpassReader extends OverpassDownloadReader {
+    private final ResponseStore store;
+
+    public RecordReplayOverpassReader(Bounds downloadArea, String overpassServer,
+            String overpassQuery, ResponseStore store) {
+        super(downloadArea, overpassServer, overpassQuery);
+        this.store = store;
+    }
+
+    @Override
+    protected InputStream getInputStreamRaw(String urlStr, ProgressMonitor progressMonitor,
+            String reason, boolean uncompressAccordingToContentDisposition) throws OsmTransferException {
+        // The url contains the complete query
+        String key = ResponseStore.createKey("GET", urlStr, null);
+        try {
+            if (store.getMode() == ResponseStore.Mode.REPLAY) {
+                return store.replay(key, urlStr);
+            }
+            InputStream in = super.getInputStreamRaw(urlStr, progressMonitor, reason,
+                    uncompressAccordingToContentDisposition);
+            if (in == null) {
+                return null;
+            }
+            return store.record(key, urlStr, in, new Properties());
+        } catch (IOException e) {
+            throw new OsmTransferException(e);
+        }
+    }
+}
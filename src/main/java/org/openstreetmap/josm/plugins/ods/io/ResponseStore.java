@@ -0,0 +1,201 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Directory with raw server responses, for recording and replaying the
+ * traffic of a download. In record mode, every response of the WFS and
+ * Overpass servers is written to the directory. In replay mode, the
+ * responses are read back from the directory and the servers are not
+ * contacted at all. This allows repeatable offline tests and benchmarks of
+ * the download pipeline.
+ *
+ * The mode is set with the 'ods.transport.mode' preference (live, record or
+ * replay). The directory can be set with 'ods.transport.dir' and a latency
+ * (in milliseconds) can be added to every replayed response with
+ * 'ods.transport.latency'.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class ResponseStore {
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".properties";
+
+    public enum Mode {
+        LIVE,
+        RECORD,
+        REPLAY;
+    }
+
+    private final Mode mode;
+    private final File directory;
+    private final long latency;
+
+    public ResponseStore(Mode mode, File directory, long latency) {
+        super();
+        this.mode = mode;
+        this.directory = directory;
+        this.latency = latency;
+    }
+
+    /**
+     * Create a response store from the preferences.
+     *
+     * @return The response store, or null if the transport is live.
+     */
+    public static ResponseStore fromPreferences() {
+        String modeName = Preferences.main().get("ods.transport.mode", "live");
+        Mode mode;
+        try {
+            mode = Mode.valueOf(modeName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Logging.warn("Unknown transport mode: {0}", modeName);
+            return null;
+        }
+        if (mode == Mode.LIVE) {
+            return null;
+        }
+        String dirName = Preferences.main().get("ods.transport.dir", null);
+        File dir = (dirName == null || dirName.isEmpty()
+                ? new File(Config.getDirs().getCacheDirectory(true), "ods-recordings")
+                : new File(dirName));
+        long latency = Preferences.main().getInt("ods.transport.latency", 0);
+        return new ResponseStore(mode, dir, latency);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Create the key for a request.
+     *
+     * @param method The request method (GET or POST)
+     * @param url The request url
+     * @param body The request body, or null if there is no body
+     * @return The key
+     */
+    public static String createKey(String method, String url, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(method.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '|');
+            digest.update(url.getBytes(StandardCharsets.UTF_8));
+            if (body != null) {
+                digest.update((byte) '|');
+                digest.update(body);
+            }
+            byte[] hash = digest.digest();
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write a response to the store. The response is read completely and
+     * can be read again from the returned stream.
+     *
+     * @param key The request key
+     * @param url The request url. Only stored for reference.
+     * @param in The response body
+     * @param headers The response headers that are needed to replay the
+     *     response, for example the content type.
+     * @return A stream with the recorded response body
+     * @throws IOException
+     */
+    public InputStream record(String key, String url, InputStream in, Properties headers) throws IOException {
+        directory.mkdirs();
+        File bodyFile = new File(directory, key + BODY_SUFFIX);
+        File tempFile = File.createTempFile(key, ".tmp", directory);
+        try (InputStream source = in;
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = source.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        Files.move(tempFile.toPath(), bodyFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Properties meta = new Properties();
+        meta.putAll(headers);
+        meta.setProperty("url", url);
+        try (OutputStream out = new FileOutputStream(new File(directory, key + META_SUFFIX))) {
+            meta.store(out, null);
+        }
+        return new FileInputStream(bodyFile);
+    }
+
+    /**
+     * Get the response headers of a recorded response.
+     *
+     * @param key The request key
+     * @return The headers
+     * @throws FileNotFoundException if no response was recorded for the key
+     * @throws IOException
+     */
+    public Properties getHeaders(String key) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(new File(directory, key + META_SUFFIX))) {
+            meta.load(in);
+        }
+        return meta;
+    }
+
+    /**
+     * Replay a recorded response, after waiting for the configured latency.
+     *
+     * @param key The request key
+     * @param url The request url. Used in the error message only.
+     * @return The response body
+     * @throws FileNotFoundException if no response was recorded for the key
+     * @throws IOException
+     */
+    public InputStream replay(String key, String url) throws IOException {
+        File bodyFile = new File(directory, key + BODY_SUFFIX);
+        if (!bodyFile.exists()) {
+            throw new FileNotFoundException("No recorded response for " + url);
+        }
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        return new FileInputStream(bodyFile);
+    }
+}
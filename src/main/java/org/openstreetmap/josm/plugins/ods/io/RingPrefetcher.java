@@ -0,0 +1,110 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.locationtech.jts.geom.Envelope;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Prefetch the data for a ring around the last download area in the
+ * background. After a download, the user usually continues with an adjacent
+ * area. The ring consists of 4 rectangular bands around the envelope of the
+ * download area. The downloaders fetch the data for these bands into a
+ * {@link PrefetchStore}, without touching the layers.
+ * The prefetcher runs on a single low priority thread, so it doesn't compete
+ * with the foreground downloads. A new download cancels the prefetch.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class RingPrefetcher {
+    private final ExecutorService executor;
+    private Future<?> current;
+
+    public RingPrefetcher() {
+        super();
+        // Use the class loader of the plugin in the worker thread. GeoTools
+        // needs it to find its service providers.
+        ClassLoader classLoader = RingPrefetcher.class.getClassLoader();
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ods-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        });
+    }
+
+    /**
+     * Start prefetching the ring around a boundary. A prefetch that is still
+     * running, is cancelled first. The data of earlier prefetches is removed.
+     *
+     * @param boundary The boundary of the last download
+     * @param width The width of the ring, relative to the size of the boundary
+     * @param downloaders The downloaders that fetch the data
+     * @param store The store for the prefetched data
+     */
+    public synchronized void start(Boundary boundary, double width,
+            List<? extends Downloader> downloaders, PrefetchStore store) {
+        cancel();
+        List<Boundary> ring = createRing(boundary.getEnvelope(), width);
+        current = executor.submit(() -> {
+            long start = System.currentTimeMillis();
+            store.clear();
+            for (Boundary band : ring) {
+                for (Downloader downloader : downloaders) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    downloader.prefetch(band, store);
+                }
+            }
+            Logging.debug("ODS prefetch took {0} ms", System.currentTimeMillis() - start);
+        });
+    }
+
+    /**
+     * Cancel the running prefetch, if any.
+     */
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+        }
+    }
+
+    /**
+     * Create the 4 bands around an envelope.
+     *
+     * @param envelope The envelope in the OSM CRS
+     * @param width The width of the bands, relative to the size of the envelope
+     * @return the bands
+     */
+    static List<Boundary> createRing(Envelope envelope, double width) {
+        double dx = envelope.getWidth() * width;
+        double dy = envelope.getHeight() * width;
+        double minX = envelope.getMinX();
+        double maxX = envelope.getMaxX();
+        double minY = envelope.getMinY();
+        double maxY = envelope.getMaxY();
+        List<Boundary> ring = new ArrayList<>(4);
+        // South and north, including the corners
+        ring.add(createBand(minX - dx, minY - dy, maxX + dx, minY));
+        ring.add(createBand(minX - dx, maxY, maxX + dx, maxY + dy));
+        // West and east
+        ring.add(createBand(minX - dx, minY, minX, maxY));
+        ring.add(createBand(maxX, minY, maxX + dx, maxY));
+        return ring;
+    }
+
+    private static Boundary createBand(double minX, double minY, double maxX, double maxY) {
+        return new Boundary(new Bounds(Math.max(-90, minY), Math.max(-180, minX),
+                Math.min(90, maxY), Math.min(180, maxX)));
+    }
+}
@@ -6,6 +6,7 @@ public class Status {
     private boolean failed = false;
     private boolean timedOut = false;
     private boolean cancelled = false;
+    private boolean partial = false;
     private String message = "";
     private Exception exception = null;
 
@@ -33,6 +34,18 @@ public class Status {
         this.timedOut = timedOut;
     }
 
+    /**
+     * @return true if the download succeeded, but parts of the download area
+     *     are missing.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
     public void setMessage(String message) {
         this.message = message;
     }
@@ -64,6 +77,7 @@ public class Status {
         this.cancelled = false;
         this.failed = false;
         this.timedOut = false;
+        this.partial = false;
         this.exception = null;
         this.message = null;
     }
@@ -0,0 +1,175 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.io.OsmServerReader;
+import org.openstreetmap.josm.io.OsmTransferException;
+import org.openstreetmap.josm.tools.I18n;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * OsmServerReader that downloads an area as a number of tiles. The tiles
+ * are downloaded in parallel and merged into a single dataset. Primitives
+ * that were downloaded in more than one tile, for example ways that cross a
+ * tile border, are merged into a single primitive.
+ * If one of the tiles fails, the remaining tiles are cancelled and the
+ * exception of the failing tile is thrown.
+ * With a timeout, the reader runs in partial mode: tiles that fail or don't
+ * complete in time are skipped and reported by {@link #getIncompleteTiles()}.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class TiledOsmServerReader extends OsmServerReader {
+    private final List<OsmServerReader> tileReaders;
+    private final DownloadExecutor executor;
+    private final LongSupplier timeout;
+    private final List<Future<Void>> futures = new ArrayList<>();
+    private List<Integer> incompleteTiles = Collections.emptyList();
+    private DataSet dataSet;
+    private int tilesDone;
+    private boolean closed;
+
+    public TiledOsmServerReader(List<OsmServerReader> tileReaders, DownloadExecutor executor) {
+        this(tileReaders, executor, null);
+    }
+
+    /**
+     * @param tileReaders The readers for the tiles
+     * @param executor The executor to run the tile readers
+     * @param timeout Supplies the timeout for the complete download in
+     *     milliseconds when the download starts. If not null, the reader
+     *     runs in partial mode.
+     */
+    public TiledOsmServerReader(List<OsmServerReader> tileReaders, DownloadExecutor executor,
+            LongSupplier timeout) {
+        super();
+        this.tileReaders = tileReaders;
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return The indexes of the tiles that were not downloaded by the last
+     *     partial download.
+     */
+    public List<Integer> getIncompleteTiles() {
+        return incompleteTiles;
+    }
+
+    @Override
+    public DataSet parseOsm(ProgressMonitor progressMonitor) throws OsmTransferException {
+        synchronized (this) {
+            dataSet = new DataSet();
+            tilesDone = 0;
+            closed = false;
+        }
+        incompleteTiles = Collections.emptyList();
+        progressMonitor.beginTask(I18n.tr("Downloading OSM data"), tileReaders.size());
+        long partialTimeout = (timeout == null ? 0 : timeout.getAsLong());
+        try {
+            synchronized (futures) {
+                futures.clear();
+                for (OsmServerReader reader : tileReaders) {
+                    Callable<Void> task = () -> {
+                        DataSet tileDataSet = executor.callWithDeadline(
+                                () -> reader.parseOsm(NullProgressMonitor.INSTANCE));
+                        merge(tileDataSet, progressMonitor);
+                        return null;
+                    };
+                    futures.add(partialTimeout > 0 ? executor.submit(task, partialTimeout, null)
+                            : executor.submit(task));
+                }
+            }
+            if (partialTimeout > 0) {
+                return collectPartial();
+            }
+            for (Future<Void> future : futures) {
+                DownloadExecutor.await(future);
+            }
+            return dataSet;
+        }
+        catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new OsmTransferException(e);
+        }
+        catch (CancellationException e) {
+            throw new OsmTransferException(e);
+        }
+        catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof OsmTransferException) {
+                throw (OsmTransferException) cause;
+            }
+            throw new OsmTransferException(cause);
+        }
+        finally {
+            progressMonitor.finishTask();
+        }
+    }
+
+    /**
+     * Wait for the tiles of a partial download and record the tiles that
+     * failed or timed out.
+     *
+     * @return The merged data of the completed tiles
+     * @throws InterruptedException
+     */
+    private DataSet collectPartial() throws InterruptedException {
+        List<Integer> incomplete = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                DownloadExecutor.await(futures.get(i));
+            } catch (CancellationException e) {
+                incomplete.add(i);
+            } catch (ExecutionException e) {
+                Logging.warn("OSM tile {0} could not be downloaded: {1}", i, e.getCause().getMessage());
+                incomplete.add(i);
+            }
+        }
+        incompleteTiles = incomplete;
+        synchronized (this) {
+            // Tiles that were cancelled may still be running
+            closed = true;
+            return dataSet;
+        }
+    }
+
+    private synchronized void merge(DataSet tileDataSet, ProgressMonitor progressMonitor) {
+        if (closed) {
+            return;
+        }
+        if (tileDataSet != null) {
+            dataSet.mergeFrom(tileDataSet);
+        }
+        tilesDone++;
+        progressMonitor.worked(1);
+        progressMonitor.setCustomText(I18n.tr("Downloaded {0} of {1} tiles",
+                tilesDone, tileReaders.size()));
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        for (OsmServerReader reader : tileReaders) {
+            reader.cancel();
+        }
+        synchronized (futures) {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+}
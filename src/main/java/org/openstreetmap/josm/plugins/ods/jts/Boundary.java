@@ -9,12 +9,15 @@ import org.openstreetmap.josm.plugins.ods.crs.UnclosedWayException;
 
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Polygon;
 
 public class Boundary {
     private final static GeoUtil geoUtil = GeoUtil.getInstance();
+    // Approximately 1 square meter
+    private final static double SLIVER_AREA = 1e-10;
     
     private LinearRing ring;
     private MultiPolygon multiPolygon;
@@ -54,6 +57,55 @@ public class Boundary {
         this.multiPolygon = geoUtil.toMultiPolygon(polygon);        
     }
 
+    /**
+     * Create a boundary from a (multi-)polygon. The ring of this boundary
+     * is the convex hull of the polygons.
+     *
+     * @param multiPolygon
+     */
+    public Boundary(MultiPolygon multiPolygon) {
+        rectangular = false;
+        this.multiPolygon = multiPolygon;
+        this.envelope = multiPolygon.getEnvelopeInternal();
+        Geometry hull = multiPolygon.convexHull();
+        if (hull instanceof Polygon) {
+            this.ring = (LinearRing) ((Polygon) hull).getExteriorRing();
+        }
+        else {
+            this.ring = (LinearRing) ((Polygon) multiPolygon.getFactory()
+                    .toGeometry(envelope)).getExteriorRing();
+        }
+    }
+
+    /**
+     * Get the part of this boundary that is not covered by the given area.
+     * Slivers that are caused by rounding errors are ignored.
+     *
+     * @param covered The covered area in WGS84
+     * @return The remaining boundary; this boundary if nothing was covered,
+     *     or null if this boundary is completely covered.
+     */
+    public Boundary difference(Geometry covered) {
+        if (covered == null || covered.isEmpty()) {
+            return this;
+        }
+        if (!covered.intersects(multiPolygon)) {
+            return this;
+        }
+        Geometry remainder = multiPolygon.difference(covered);
+        List<Polygon> polygons = new ArrayList<>(remainder.getNumGeometries());
+        for (int i = 0; i < remainder.getNumGeometries(); i++) {
+            Geometry part = remainder.getGeometryN(i);
+            if (part instanceof Polygon && part.getArea() > SLIVER_AREA) {
+                polygons.add((Polygon) part);
+            }
+        }
+        if (polygons.isEmpty()) {
+            return null;
+        }
+        return new Boundary(geoUtil.createMultiPolygon(polygons));
+    }
+
     public boolean isRectangular() {
         return rectangular;
     }
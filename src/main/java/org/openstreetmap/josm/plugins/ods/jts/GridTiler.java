@@ -0,0 +1,170 @@
+package org.openstreetmap.josm.plugins.ods.jts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Split an area into a grid of smaller sub-areas (tiles).
+ * Every tile is the intersection of a grid cell with the area, so the tiles
+ * together cover exactly the original area. Cells that don't intersect the
+ * area are skipped.
+ * The tile size is expressed in the units of the area's coordinate system.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class GridTiler {
+    private final double tileWidth;
+    private final double tileHeight;
+
+    public GridTiler(double tileSize) {
+        this(tileSize, tileSize);
+    }
+
+    public GridTiler(double tileWidth, double tileHeight) {
+        super();
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("The tile size must be positive");
+        }
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    /**
+     * Create a GridTiler that splits the given envelope into approximately
+     * tileCount tiles. The tiles are as square as possible.
+     *
+     * @param envelope The envelope of the area to split
+     * @param tileCount The desired number of tiles
+     * @return the GridTiler
+     */
+    public static GridTiler forTileCount(Envelope envelope, int tileCount) {
+        double width = envelope.getWidth();
+        double height = envelope.getHeight();
+        if (tileCount <= 1 || width <= 0 || height <= 0) {
+            return new GridTiler(Math.max(width, Double.MIN_VALUE), Math.max(height, Double.MIN_VALUE));
+        }
+        int columns = (int) Math.max(1, Math.round(Math.sqrt(tileCount * width / height)));
+        int rows = (int) Math.ceil((double) tileCount / columns);
+        return new GridTiler(width / columns, height / rows);
+    }
+
+    public double getTileWidth() {
+        return tileWidth;
+    }
+
+    public double getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * Split the area into tiles.
+     *
+     * @param area The area to split
+     * @return A list of non-empty tiles. If the area fits in a single tile,
+     *     the list contains only the area itself.
+     */
+    public List<Geometry> split(Geometry area) {
+        Envelope envelope = area.getEnvelopeInternal();
+        int columns = (int) Math.max(1, Math.ceil(envelope.getWidth() / tileWidth));
+        int rows = (int) Math.max(1, Math.ceil(envelope.getHeight() / tileHeight));
+        List<Geometry> tiles = new ArrayList<>(columns * rows);
+        if (columns == 1 && rows == 1) {
+            tiles.add(area);
+            return tiles;
+        }
+        PreparedGeometry preparedArea = PreparedGeometryFactory.prepare(area);
+        for (int row = 0; row < rows; row++) {
+            double minY = envelope.getMinY() + row * tileHeight;
+            double maxY = Math.min(minY + tileHeight, envelope.getMaxY());
+            for (int column = 0; column < columns; column++) {
+                double minX = envelope.getMinX() + column * tileWidth;
+                double maxX = Math.min(minX + tileWidth, envelope.getMaxX());
+                Geometry cell = area.getFactory().toGeometry(new Envelope(minX, maxX, minY, maxY));
+                if (preparedArea.containsProperly(cell)) {
+                    tiles.add(cell);
+                }
+                else if (preparedArea.intersects(cell)) {
+                    Geometry tile = area.intersection(cell);
+                    if (!tile.isEmpty() && tile.getArea() > 0) {
+                        tiles.add(tile);
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Split the area into tiles that are aligned to the origin of the
+     * coordinate system. Every tile is the intersection of the area with one
+     * of the cells of {@link #getAlignedCells(Geometry)}, so every tile lies
+     * within a single cell. If another grid has a cell size that divides the
+     * tile size, every cell of that grid lies within a single tile.
+     *
+     * @param area The area to split
+     * @return A list of non-empty tiles. If the area lies within a single
+     *     cell, the list contains only the area itself.
+     */
+    public List<Geometry> splitAligned(Geometry area) {
+        List<Geometry> cells = getAlignedCells(area);
+        List<Geometry> tiles = new ArrayList<>(cells.size());
+        if (cells.size() == 1) {
+            tiles.add(area);
+            return tiles;
+        }
+        PreparedGeometry preparedArea = PreparedGeometryFactory.prepare(area);
+        for (Geometry cell : cells) {
+            if (preparedArea.containsProperly(cell)) {
+                tiles.add(cell);
+            }
+            else {
+                Geometry tile = area.intersection(cell);
+                if (!tile.isEmpty() && tile.getArea() > 0) {
+                    tiles.add(tile);
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Get the grid cells that overlap the area. Unlike the tiles of
+     * {@link #split(Geometry)}, the cells are aligned to the origin of the
+     * coordinate system and are not clipped to the area. Overlapping areas
+     * therefore share the same cells, which makes the cells usable as cache
+     * keys.
+     *
+     * Cells that only touch a polygonal area on their border are skipped, so the
+     * cells of an aligned tile are the cells within that tile.
+     *
+     * @param area The area
+     * @return The cells that intersect the area
+     */
+    public List<Geometry> getAlignedCells(Geometry area) {
+        Envelope envelope = area.getEnvelopeInternal();
+        long minColumn = (long) Math.floor(envelope.getMinX() / tileWidth);
+        long maxColumn = Math.max(minColumn, (long) Math.ceil(envelope.getMaxX() / tileWidth) - 1);
+        long minRow = (long) Math.floor(envelope.getMinY() / tileHeight);
+        long maxRow = Math.max(minRow, (long) Math.ceil(envelope.getMaxY() / tileHeight) - 1);
+        PreparedGeometry preparedArea = PreparedGeometryFactory.prepare(area);
+        boolean polygonal = area.getDimension() == 2;
+        List<Geometry> cells = new ArrayList<>();
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long column = minColumn; column <= maxColumn; column++) {
+                Geometry cell = area.getFactory().toGeometry(new Envelope(
+                        column * tileWidth, (column + 1) * tileWidth,
+                        row * tileHeight, (row + 1) * tileHeight));
+                if (preparedArea.intersects(cell) && !(polygonal && preparedArea.touches(cell))) {
+                    cells.add(cell);
+                }
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,69 @@
+package org.openstreetmap.josm.plugins.ods.jts;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.operation.buffer.BufferOp;
+import org.locationtech.jts.operation.buffer.BufferParameters;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+
+/**
+ * Reduce the number of points of a polygon's exterior ring, without losing
+ * any part of the polygon. The result always covers the original polygon.
+ * Holes are removed.
+ * This is used to keep polygon based queries within the size limits of
+ * the server.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class RingSimplifier {
+    private static final int MAX_ITERATIONS = 20;
+
+    private final int maxPoints;
+
+    /**
+     * @param maxPoints The maximal number of points of the resulting ring,
+     *     including the closing point. At least 5, so a rectangle always fits.
+     */
+    public RingSimplifier(int maxPoints) {
+        super();
+        this.maxPoints = Math.max(5, maxPoints);
+    }
+
+    /**
+     * Simplify the polygon.
+     *
+     * @param polygon
+     * @return A polygon without holes, that covers the original polygon and
+     *     has no more than maxPoints points.
+     */
+    public Polygon simplify(Polygon polygon) {
+        Polygon shell = polygon.getFactory().createPolygon(
+                polygon.getExteriorRing().getCoordinateSequence());
+        if (shell.getNumPoints() <= maxPoints) {
+            return shell;
+        }
+        // The simplified ring deviates at most 'tolerance' from the original
+        // ring. Growing it by the same distance makes sure that no part of
+        // the original polygon is cut off. Mitred joins don't add any points.
+        BufferParameters parameters = new BufferParameters(0,
+                BufferParameters.CAP_FLAT, BufferParameters.JOIN_MITRE, 5.0);
+        double tolerance = Math.max(shell.getEnvelopeInternal().getWidth(),
+                shell.getEnvelopeInternal().getHeight()) / 1000;
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            Geometry simplified = DouglasPeuckerSimplifier.simplify(shell, tolerance);
+            Geometry buffered = BufferOp.bufferOp(simplified, tolerance, parameters);
+            if (buffered instanceof Polygon && buffered.getNumPoints() <= maxPoints
+                    && buffered.covers(shell)) {
+                Polygon result = (Polygon) buffered;
+                return result.getFactory().createPolygon(result.getExteriorRing().getCoordinateSequence());
+            }
+            tolerance *= 2;
+        }
+        Geometry hull = shell.convexHull();
+        if (hull instanceof Polygon && hull.getNumPoints() <= maxPoints) {
+            return (Polygon) hull;
+        }
+        return (Polygon) shell.getFactory().toGeometry(shell.getEnvelopeInternal());
+    }
+}
@@ -1,6 +1,5 @@
 package org.openstreetmap.josm.plugins.ods.matching;
 
-import java.util.List;
 import java.util.function.Consumer;
 
 import org.openstreetmap.josm.plugins.ods.OdsModule;
@@ -44,13 +43,10 @@ public class OsmBuildingToAddressNodesMatcher {
                 .getOsmLayerManager().getEntityStore(OsmAddressNode.class);
         GeoIndex<OsmAddressNode> geoIndex = addressNodeStore.getGeoIndex();
         if (building.getAddressNodes().size() == 0) {
-            List<OsmAddressNode> addressNodes = geoIndex.intersection(building.getGeometry());
-            if (addressNodes.size() > 0) {
-                for (OsmAddressNode node : addressNodes) {
-                    building.getAddressNodes().add(node);
-                    node.setBuilding(building);
-                }
-            }
+            geoIndex.intersection(building.getGeometry(), node -> {
+                building.getAddressNodes().add(node);
+                node.setBuilding(building);
+            });
         }
     }
 
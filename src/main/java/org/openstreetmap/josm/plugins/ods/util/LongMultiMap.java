@@ -0,0 +1,185 @@
+package org.openstreetmap.josm.plugins.ods.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Multimap with primitive long keys.
+ * Most keys have a single value, which is stored directly in a
+ * {@link LongObjectMap}. Keys with more values get a compact array instead of
+ * a linked list.
+ * Null values are not supported.
+ * This class is not thread safe.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ * @param <V> The value type
+ */
+public class LongMultiMap<V> {
+    private final LongObjectMap<Object> map;
+    private int size;
+
+    public LongMultiMap() {
+        this.map = new LongObjectMap<>();
+    }
+
+    /**
+     * @param expectedSize The expected number of keys
+     */
+    public LongMultiMap(int expectedSize) {
+        this.map = new LongObjectMap<>(expectedSize);
+    }
+
+    /**
+     * @param key
+     * @return an unmodifiable list with the values for the key. The list is
+     *     empty if the map doesn't contain the key.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> get(long key) {
+        Object current = map.get(key);
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        if (current instanceof Bucket) {
+            return ((Bucket) current).<V>asList();
+        }
+        return Collections.singletonList((V) current);
+    }
+
+    /**
+     * Add a value for a key.
+     *
+     * @param key
+     * @param value The value. Must not be null
+     */
+    public void put(long key, V value) {
+        Objects.requireNonNull(value);
+        Object current = map.get(key);
+        if (current == null) {
+            map.put(key, value);
+        }
+        else if (current instanceof Bucket) {
+            ((Bucket) current).add(value);
+        }
+        else {
+            map.put(key, new Bucket(current, value));
+        }
+        size++;
+    }
+
+    /**
+     * Remove a single value for a key.
+     *
+     * @param key
+     * @param value
+     * @return true if the value was removed
+     */
+    public boolean remove(long key, V value) {
+        Object current = map.get(key);
+        if (current == null) {
+            return false;
+        }
+        if (current instanceof Bucket) {
+            Bucket bucket = (Bucket) current;
+            if (!bucket.remove(value)) {
+                return false;
+            }
+            if (bucket.size == 1) {
+                map.put(key, bucket.items[0]);
+            }
+        }
+        else if (current.equals(value)) {
+            map.remove(key);
+        }
+        else {
+            return false;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove all values for a key.
+     *
+     * @param key
+     */
+    public void removeAll(long key) {
+        Object current = map.remove(key);
+        if (current instanceof Bucket) {
+            size -= ((Bucket) current).size;
+        }
+        else if (current != null) {
+            size--;
+        }
+    }
+
+    /**
+     * @return the total number of values in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param expectedSize The expected number of keys
+     */
+    public void ensureCapacity(int expectedSize) {
+        map.ensureCapacity(expectedSize);
+    }
+
+    public void clear() {
+        map.clear();
+        size = 0;
+    }
+
+    /**
+     * @return a stream of all values in this map
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<V> values() {
+        return map.values().flatMap(value -> value instanceof Bucket
+                ? ((Bucket) value).<V>asList().stream()
+                : Stream.of((V) value));
+    }
+
+    private static class Bucket {
+        Object[] items;
+        int size;
+
+        Bucket(Object first, Object second) {
+            items = new Object[] {first, second, null, null};
+            size = 2;
+        }
+
+        void add(Object value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size + (size >> 1));
+            }
+            items[size++] = value;
+        }
+
+        boolean remove(Object value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i].equals(value)) {
+                    System.arraycopy(items, i + 1, items, i, size - i - 1);
+                    items[--size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> List<V> asList() {
+            return Collections.unmodifiableList((List<V>) Arrays.asList(items).subList(0, size));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.openstreetmap.josm.plugins.ods.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Hash map with primitive long keys.
+ * The map uses open addressing with linear probing and stores the keys and
+ * values in two arrays. Unlike a HashMap&lt;Long, V&gt;, it needs no boxed
+ * Long and no node object per entry.
+ * Null values are not supported. A null value marks an empty slot.
+ * This class is not thread safe.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ * @param <V> The value type
+ */
+public class LongObjectMap<V> {
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private int size;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The expected number of entries
+     */
+    public LongObjectMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param key
+     * @return the value for the given key, or null if the map doesn't contain the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = slot(key);
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Add or replace the value for a key.
+     *
+     * @param key
+     * @param value The value. Must not be null
+     * @return the previous value for the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Objects.requireNonNull(value);
+        int i = slot(key);
+        Object current;
+        while ((current = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) current;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            rehash(values.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value for a key.
+     * The entries after the removed entry are shifted back, so lookups
+     * never have to skip deleted slots.
+     *
+     * @param key
+     * @return the removed value, or null if the map didn't contain the key
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = slot(key);
+        Object current;
+        while ((current = values[i]) != null) {
+            if (keys[i] == key) {
+                shiftBack(i);
+                size--;
+                return (V) current;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private void shiftBack(int gap) {
+        int j = gap;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                break;
+            }
+            int home = slot(keys[j]);
+            // The entry at j can move to the gap, unless its home slot lies
+            // cyclically in (gap, j]
+            boolean move = j > gap ? (home <= gap || home > j) : (home <= gap && home > j);
+            if (move) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Make sure the map can hold the expected number of entries without
+     * growing.
+     *
+     * @param expectedSize
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > values.length) {
+            rehash(capacity);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return a stream of the values in this map
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<V> values() {
+        return Arrays.stream(values).filter(Objects::nonNull).map(value -> (V) value);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldValues.length; j++) {
+            Object value = oldValues[j];
+            if (value != null) {
+                int i = slot(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit(needed - 1) << 1;
+        return Math.max(MIN_CAPACITY, capacity);
+    }
+}
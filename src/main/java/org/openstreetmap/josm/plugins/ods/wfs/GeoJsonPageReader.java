@@ -0,0 +1,266 @@
+package org.openstreetmap.josm.plugins.ods.wfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import javax.xml.namespace.QName;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.feature.SchemaException;
+import org.geotools.filter.v1_1.OGC;
+import org.geotools.filter.v1_1.OGCConfiguration;
+import org.geotools.filter.v2_0.FES;
+import org.geotools.filter.v2_0.FESConfiguration;
+import org.geotools.xsd.Configuration;
+import org.geotools.xsd.Encoder;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+import org.opengis.util.ProgressListener;
+import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureSource;
+import org.openstreetmap.josm.plugins.ods.geotools.GtPageReader;
+import org.openstreetmap.josm.plugins.ods.io.ResponseStore;
+import org.openstreetmap.josm.tools.HttpClient;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * GtPageReader that retrieves the features from a WFS server as GeoJSON
+ * (outputFormat=application/json) instead of GML. The GetFeature request is
+ * sent as a KVP request with the filter encoded in the FILTER parameter.
+ * GeoJSON is much cheaper to parse than GML.
+ * If the server doesn't return GeoJSON, the host is marked as not supporting
+ * it and the fallback reader is used from then on. A server may also answer
+ * with an exception report, with status 200 or 400. If the report is about
+ * the output format, the host doesn't support GeoJSON either. Any other
+ * report rejects a single request, so only that request falls back.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class GeoJsonPageReader implements GtPageReader {
+    private static final String OUTPUT_FORMAT = "application/json";
+    private static final String CONTENT_TYPE = "Content-Type";
+    // Exception reports are small; don't read more of an unexpected response
+    private static final int MAX_REPORT_LENGTH = 16 * 1024;
+
+    private final WFSHost host;
+    private final GtFeatureSource featureSource;
+    private final GtPageReader fallbackReader;
+
+    public GeoJsonPageReader(WFSHost host, GtFeatureSource featureSource, GtPageReader fallbackReader) {
+        super();
+        this.host = host;
+        this.featureSource = featureSource;
+        this.fallbackReader = fallbackReader;
+    }
+
+    @Override
+    public Collection<SimpleFeature> read(Query query, ProgressListener progressListener) throws IOException {
+        if (!host.isJsonSupported()) {
+            return fallbackReader.read(query, progressListener);
+        }
+        URL url = createRequest(query);
+        List<SimpleFeature> features = new ArrayList<>();
+        try (InputStream in = openStream(url)) {
+            if (in == null) {
+                Logging.info("Host {0} doesn't support GeoJSON. Falling back to GML", host.getName());
+                host.setJsonSupported(false);
+                return fallbackReader.read(query, progressListener);
+            }
+            GeoJsonParser parser = new GeoJsonParser(getFeatureType(query), new GeometryFactory());
+            parser.parse(in, features::add);
+        } catch (RequestRejectedException e) {
+            // The server may reject a filter or parameter in this request
+            // only, so the host keeps using GeoJSON for other requests.
+            Logging.info("Host {0} rejected a GeoJSON request for {1}. Falling back to GML for this request",
+                    host.getName(), featureSource.getFeatureName());
+            return fallbackReader.read(query, progressListener);
+        }
+        return features;
+    }
+
+    /**
+     * Open the response of a GetFeature request.
+     *
+     * @param url The request url
+     * @return The response stream, or null if the server doesn't support GeoJSON
+     * @throws RequestRejectedException if the server rejected this request only
+     * @throws IOException
+     */
+    private InputStream openStream(URL url) throws IOException {
+        ResponseStore store = ResponseStore.fromPreferences();
+        String key = ResponseStore.createKey("GET", url.toString(), null);
+        if (store != null && store.getMode() == ResponseStore.Mode.REPLAY) {
+            return isJson(store.getHeaders(key).getProperty(CONTENT_TYPE)) ? store.replay(key, url.toString()) : null;
+        }
+        HttpClient client = HttpClient.create(url);
+        int timeout = host.getDataTimeout();
+        client.setConnectTimeout(timeout);
+        client.setReadTimeout(timeout);
+        if (host.isGzipEnabled()) {
+            client.setHeader("Accept-Encoding", "gzip");
+        }
+        HttpClient.Response response = client.connect();
+        String contentType = response.getContentType();
+        int code = response.getResponseCode();
+        if (code == 400 || (code == 200 && !isJson(contentType))) {
+            // The exception report, if any, tells whether the server rejects
+            // the output format or something in this request
+            String body = readStart(response);
+            response.disconnect();
+            boolean report = body.contains("ExceptionReport");
+            if (report && isOutputFormatRejected(body)) {
+                return null;
+            }
+            if (report || code == 400) {
+                throw new RequestRejectedException();
+            }
+            // A valid response in another format. The output format is ignored.
+            return null;
+        }
+        if (response.getResponseCode() != 200) {
+            response.disconnect();
+            throw new IOException(String.format("GetFeature request failed with response code %d: %s",
+                    response.getResponseCode(), response.getResponseMessage()));
+        }
+        InputStream in = response.uncompress(true).getContent();
+        if (store != null && store.getMode() == ResponseStore.Mode.RECORD) {
+            Properties headers = new Properties();
+            headers.setProperty(CONTENT_TYPE, contentType);
+            return store.record(key, url.toString(), in, headers);
+        }
+        return in;
+    }
+
+    /**
+     * Read the start of a response that is not GeoJSON.
+     *
+     * @return The start of the response, or an empty string if there is no
+     *     content
+     */
+    private static String readStart(HttpClient.Response response) {
+        try (InputStream in = response.uncompress(true).getContent()) {
+            if (in == null) {
+                return "";
+            }
+            byte[] buffer = new byte[MAX_REPORT_LENGTH];
+            int length = 0;
+            int count;
+            while (length < buffer.length && (count = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += count;
+            }
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Logging.debug(e);
+            return "";
+        }
+    }
+
+    /**
+     * Check if an exception report is about the output format, for example
+     * an InvalidParameterValue exception with locator="outputFormat".
+     *
+     * @param report The exception report
+     * @return true if the server doesn't support the requested output format
+     */
+    static boolean isOutputFormatRejected(String report) {
+        String text = report.toLowerCase(Locale.ROOT);
+        return text.contains("outputformat") || text.contains("output format");
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.toLowerCase().contains("json");
+    }
+
+    private SimpleFeatureType getFeatureType(Query query) {
+        SimpleFeatureType featureType = (SimpleFeatureType) featureSource.getFeatureType();
+        if (query.getPropertyNames() == null) {
+            return featureType;
+        }
+        try {
+            return DataUtilities.createSubType(featureType, query.getPropertyNames());
+        } catch (SchemaException e) {
+            Logging.warn(e);
+            return featureType;
+        }
+    }
+
+    /**
+     * Create the url for a KVP GetFeature request.
+     *
+     * @param query
+     * @return the url
+     * @throws IOException
+     */
+    private URL createRequest(Query query) throws IOException {
+        boolean wfs2 = host.getWfsVersion().toString().startsWith("2");
+        StringBuilder sb = new StringBuilder(host.getUrl().toString());
+        sb.append(sb.indexOf("?") < 0 ? '?' : '&');
+        sb.append("SERVICE=WFS&REQUEST=GetFeature");
+        addParameter(sb, "VERSION", host.getWfsVersion().toString());
+        addParameter(sb, wfs2 ? "TYPENAMES" : "TYPENAME", featureSource.getFeatureName());
+        addParameter(sb, "OUTPUTFORMAT", OUTPUT_FORMAT);
+        addParameter(sb, "SRSNAME", "EPSG:" + featureSource.getSRID());
+        if (query.getStartIndex() != null && query.getStartIndex() > 0) {
+            addParameter(sb, "STARTINDEX", query.getStartIndex().toString());
+        }
+        if (!query.isMaxFeaturesUnlimited()) {
+            addParameter(sb, wfs2 ? "COUNT" : "MAXFEATURES", Integer.toString(query.getMaxFeatures()));
+        }
+        if (query.getPropertyNames() != null) {
+            addParameter(sb, "PROPERTYNAME", String.join(",", query.getPropertyNames()));
+        }
+        if (query.getSortBy() != null && query.getSortBy().length > 0) {
+            List<String> sortBy = new ArrayList<>(query.getSortBy().length);
+            for (SortBy sort : query.getSortBy()) {
+                boolean ascending = sort.getSortOrder() != SortOrder.DESCENDING;
+                String order = wfs2 ? (ascending ? "ASC" : "DESC") : (ascending ? "A" : "D");
+                sortBy.add(sort.getPropertyName().getPropertyName() + " " + order);
+            }
+            addParameter(sb, "SORTBY", String.join(",", sortBy));
+        }
+        Filter filter = query.getFilter();
+        if (filter != null && filter != Filter.INCLUDE) {
+            addParameter(sb, "FILTER", encodeFilter(filter, wfs2));
+        }
+        return new URL(sb.toString());
+    }
+
+    private static String encodeFilter(Filter filter, boolean wfs2) throws IOException {
+        Configuration configuration = wfs2 ? new FESConfiguration() : new OGCConfiguration();
+        QName name = wfs2 ? FES.Filter : OGC.Filter;
+        Encoder encoder = new Encoder(configuration);
+        encoder.setOmitXMLDeclaration(true);
+        return encoder.encodeAsString(filter, name);
+    }
+
+    private static void addParameter(StringBuilder sb, String name, String value) {
+        try {
+            sb.append('&').append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8.name()));
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Thrown when the server rejects a single GeoJSON request, with HTTP 400
+     * or with an exception report that is not about the output format.
+     */
+    private static class RequestRejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+}
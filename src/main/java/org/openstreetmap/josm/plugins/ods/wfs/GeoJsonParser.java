@@ -0,0 +1,228 @@
+package org.openstreetmap.josm.plugins.ods.wfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.util.Converters;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+/**
+ * Streaming parser for GeoJSON feature collections. The features are parsed
+ * one at a time and passed to a consumer, so the complete response is never
+ * kept in memory. The properties of the features are converted to the
+ * bindings of the given feature type. Properties that are not in the feature
+ * type are ignored.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class GeoJsonParser {
+    private final SimpleFeatureType featureType;
+    private final GeometryFactory geometryFactory;
+
+    public GeoJsonParser(SimpleFeatureType featureType, GeometryFactory geometryFactory) {
+        super();
+        this.featureType = featureType;
+        this.geometryFactory = geometryFactory;
+    }
+
+    /**
+     * Parse a GeoJSON feature collection.
+     *
+     * @param in The input stream
+     * @param consumer The consumer for the features
+     * @throws IOException if the stream is not a valid GeoJSON feature collection
+     */
+    public void parse(InputStream in, Consumer<SimpleFeature> consumer) throws IOException {
+        try (JsonParser parser = Json.createParser(in)) {
+            if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+                throw new IOException("A GeoJSON feature collection was expected");
+            }
+            Event event;
+            while ((event = parser.next()) != Event.END_OBJECT) {
+                if (event != Event.KEY_NAME) {
+                    throw new IOException("Invalid GeoJSON");
+                }
+                if ("features".equals(parser.getString())) {
+                    if (parser.next() != Event.START_ARRAY) {
+                        throw new IOException("Invalid GeoJSON features");
+                    }
+                    while ((event = parser.next()) != Event.END_ARRAY) {
+                        Map<?, ?> feature = (Map<?, ?>) readValue(parser, event);
+                        consumer.accept(createFeature(feature));
+                    }
+                }
+                else {
+                    readValue(parser, parser.next());
+                }
+            }
+        } catch (JsonException | ClassCastException | IllegalArgumentException | NoSuchElementException e) {
+            // Some JSON providers report a truncated stream as a missing element
+            throw new IOException("Invalid GeoJSON: " + e.getMessage(), e);
+        }
+    }
+
+    private SimpleFeature createFeature(Map<?, ?> feature) {
+        Object id = feature.get("id");
+        Map<?, ?> properties = (Map<?, ?>) feature.get("properties");
+        if (properties == null) {
+            properties = Collections.emptyMap();
+        }
+        Map<?, ?> geometry = (Map<?, ?>) feature.get("geometry");
+        GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        for (AttributeDescriptor descriptor : featureType.getAttributeDescriptors()) {
+            String name = descriptor.getLocalName();
+            if (descriptor == geometryDescriptor) {
+                builder.set(name, geometry == null ? null : createGeometry(geometry));
+            }
+            else {
+                Object value = properties.get(name);
+                builder.set(name, value == null ? null
+                        : Converters.convert(value, descriptor.getType().getBinding()));
+            }
+        }
+        return builder.buildFeature(id == null ? null : id.toString());
+    }
+
+    private Geometry createGeometry(Map<?, ?> geometry) {
+        String type = (String) geometry.get("type");
+        Object coordinates = geometry.get("coordinates");
+        switch (type) {
+        case "Point":
+            return geometryFactory.createPoint(createCoordinate(coordinates));
+        case "LineString":
+            return geometryFactory.createLineString(createCoordinates(coordinates));
+        case "Polygon":
+            return createPolygon(coordinates);
+        case "MultiPoint": {
+            Coordinate[] points = createCoordinates(coordinates);
+            return geometryFactory.createMultiPointFromCoords(points);
+        }
+        case "MultiLineString": {
+            List<?> parts = (List<?>) coordinates;
+            LineString[] lines = new LineString[parts.size()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = geometryFactory.createLineString(createCoordinates(parts.get(i)));
+            }
+            return geometryFactory.createMultiLineString(lines);
+        }
+        case "MultiPolygon": {
+            List<?> parts = (List<?>) coordinates;
+            Polygon[] polygons = new Polygon[parts.size()];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = createPolygon(parts.get(i));
+            }
+            return geometryFactory.createMultiPolygon(polygons);
+        }
+        case "GeometryCollection": {
+            List<?> parts = (List<?>) geometry.get("geometries");
+            Geometry[] geometries = new Geometry[parts.size()];
+            for (int i = 0; i < geometries.length; i++) {
+                geometries[i] = createGeometry((Map<?, ?>) parts.get(i));
+            }
+            return geometryFactory.createGeometryCollection(geometries);
+        }
+        default:
+            throw new IllegalArgumentException("Unsupported geometry type: " + type);
+        }
+    }
+
+    private Polygon createPolygon(Object coordinates) {
+        List<?> rings = (List<?>) coordinates;
+        if (rings.isEmpty()) {
+            return geometryFactory.createPolygon();
+        }
+        LinearRing shell = geometryFactory.createLinearRing(createCoordinates(rings.get(0)));
+        LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = geometryFactory.createLinearRing(createCoordinates(rings.get(i + 1)));
+        }
+        return geometryFactory.createPolygon(shell, holes);
+    }
+
+    private static Coordinate[] createCoordinates(Object coordinates) {
+        List<?> points = (List<?>) coordinates;
+        Coordinate[] result = new Coordinate[points.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = createCoordinate(points.get(i));
+        }
+        return result;
+    }
+
+    private static Coordinate createCoordinate(Object coordinate) {
+        List<?> ordinates = (List<?>) coordinate;
+        double x = ((Number) ordinates.get(0)).doubleValue();
+        double y = ((Number) ordinates.get(1)).doubleValue();
+        if (ordinates.size() > 2) {
+            return new Coordinate(x, y, ((Number) ordinates.get(2)).doubleValue());
+        }
+        return new Coordinate(x, y);
+    }
+
+    /**
+     * Read a JSON value into plain Java objects: maps, lists, strings,
+     * numbers and booleans.
+     *
+     * @param parser The parser
+     * @param event The event that starts the value
+     * @return The value
+     */
+    private static Object readValue(JsonParser parser, Event event) {
+        switch (event) {
+        case START_OBJECT: {
+            Map<String, Object> map = new LinkedHashMap<>();
+            while (parser.next() != Event.END_OBJECT) {
+                String key = parser.getString();
+                map.put(key, readValue(parser, parser.next()));
+            }
+            return map;
+        }
+        case START_ARRAY: {
+            List<Object> list = new ArrayList<>();
+            Event next;
+            while ((next = parser.next()) != Event.END_ARRAY) {
+                list.add(readValue(parser, next));
+            }
+            return list;
+        }
+        case VALUE_STRING:
+            return parser.getString();
+        case VALUE_NUMBER:
+            if (parser.isIntegralNumber()) {
+                return parser.getLong();
+            }
+            return parser.getBigDecimal().doubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        default:
+            throw new JsonException("Unexpected JSON event: " + event);
+        }
+    }
+}
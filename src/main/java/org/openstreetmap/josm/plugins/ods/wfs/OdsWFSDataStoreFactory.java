@@ -0,0 +1,31 @@
+package org.openstreetmap.josm.plugins.ods.wfs;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+
+import org.geotools.data.ows.HTTPClient;
+import org.geotools.data.wfs.WFSDataStoreFactory;
+import org.openstreetmap.josm.plugins.ods.io.ResponseStore;
+
+/**
+ * WFSDataStoreFactory that records or replays the server responses if a
+ * response store has been configured.
+ *
+ * @see ResponseStore
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class OdsWFSDataStoreFactory extends WFSDataStoreFactory {
+
+    @Override
+    public HTTPClient getHttpClient(Map<String, Serializable> params) throws IOException {
+        ResponseStore store = ResponseStore.fromPreferences();
+        if (store == null) {
+            return super.getHttpClient(params);
+        }
+        HTTPClient delegate = (store.getMode() == ResponseStore.Mode.RECORD
+                ? super.getHttpClient(params) : null);
+        return new RecordReplayHttpClient(delegate, store);
+    }
+}
@@ -0,0 +1,196 @@
+package org.openstreetmap.josm.plugins.ods.wfs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+
+import org.geotools.data.ows.HTTPClient;
+import org.geotools.data.ows.HTTPResponse;
+import org.openstreetmap.josm.plugins.ods.io.ResponseStore;
+
+/**
+ * HTTPClient that records the responses of the wrapped client in a
+ * response store, or replays them from the store without contacting the
+ * server.
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class RecordReplayHttpClient implements HTTPClient {
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CHARSET = "charset";
+
+    private final HTTPClient delegate;
+    private final ResponseStore store;
+
+    /**
+     * @param delegate The client that contacts the server. Only used in
+     *     record mode.
+     * @param store The response store
+     */
+    public RecordReplayHttpClient(HTTPClient delegate, ResponseStore store) {
+        super();
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    @Override
+    public HTTPResponse get(URL url) throws IOException {
+        String key = ResponseStore.createKey("GET", url.toString(), null);
+        if (store.getMode() == ResponseStore.Mode.REPLAY) {
+            return replay(key, url);
+        }
+        return record(key, url, delegate.get(url));
+    }
+
+    @Override
+    public HTTPResponse post(URL url, InputStream postContent, String postContentType)
+            throws IOException {
+        byte[] body = readAll(postContent);
+        String key = ResponseStore.createKey("POST", url.toString(), body);
+        if (store.getMode() == ResponseStore.Mode.REPLAY) {
+            return replay(key, url);
+        }
+        return record(key, url, delegate.post(url, new ByteArrayInputStream(body), postContentType));
+    }
+
+    private HTTPResponse record(String key, URL url, HTTPResponse response) throws IOException {
+        try {
+            Properties headers = new Properties();
+            if (response.getContentType() != null) {
+                headers.setProperty(CONTENT_TYPE, response.getContentType());
+            }
+            if (response.getResponseCharset() != null) {
+                headers.setProperty(CHARSET, response.getResponseCharset());
+            }
+            InputStream in = store.record(key, url.toString(), response.getResponseStream(), headers);
+            return new StoredResponse(in, headers);
+        }
+        finally {
+            response.dispose();
+        }
+    }
+
+    private HTTPResponse replay(String key, URL url) throws IOException {
+        InputStream in = store.replay(key, url.toString());
+        return new StoredResponse(in, store.getHeaders(key));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String getUser() {
+        return delegate == null ? null : delegate.getUser();
+    }
+
+    @Override
+    public void setUser(String user) {
+        if (delegate != null) {
+            delegate.setUser(user);
+        }
+    }
+
+    @Override
+    public String getPassword() {
+        return delegate == null ? null : delegate.getPassword();
+    }
+
+    @Override
+    public void setPassword(String password) {
+        if (delegate != null) {
+            delegate.setPassword(password);
+        }
+    }
+
+    @Override
+    public int getConnectTimeout() {
+        return delegate == null ? 0 : delegate.getConnectTimeout();
+    }
+
+    @Override
+    public void setConnectTimeout(int connectTimeout) {
+        if (delegate != null) {
+            delegate.setConnectTimeout(connectTimeout);
+        }
+    }
+
+    @Override
+    public int getReadTimeout() {
+        return delegate == null ? 0 : delegate.getReadTimeout();
+    }
+
+    @Override
+    public void setReadTimeout(int readTimeout) {
+        if (delegate != null) {
+            delegate.setReadTimeout(readTimeout);
+        }
+    }
+
+    @Override
+    public void setTryGzip(boolean tryGZIP) {
+        if (delegate != null) {
+            delegate.setTryGzip(tryGZIP);
+        }
+    }
+
+    @Override
+    public boolean isTryGzip() {
+        return delegate != null && delegate.isTryGzip();
+    }
+
+    /**
+     * Response that is read from the response store.
+     */
+    private static class StoredResponse implements HTTPResponse {
+        private final InputStream in;
+        private final Properties headers;
+
+        StoredResponse(InputStream in, Properties headers) {
+            this.in = in;
+            this.headers = headers;
+        }
+
+        @Override
+        public void dispose() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+
+        @Override
+        public String getContentType() {
+            return headers.getProperty(CONTENT_TYPE);
+        }
+
+        @Override
+        public String getResponseHeader(String headerName) {
+            if (CONTENT_TYPE.equalsIgnoreCase(headerName)) {
+                return getContentType();
+            }
+            return null;
+        }
+
+        @Override
+        public InputStream getResponseStream() throws IOException {
+            return in;
+        }
+
+        @Override
+        public String getResponseCharset() {
+            return headers.getProperty(CHARSET);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.geotools.data.DataStore;
 import org.geotools.data.wfs.WFSDataStore;
@@ -15,13 +17,18 @@ import org.geotools.data.wfs.WFSDataStoreFactory;
 import org.geotools.data.wfs.impl.WFSDataAccessFactory;
 import org.geotools.data.wfs.internal.Versions;
 import org.geotools.util.Version;
+import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.plugins.ods.InitializationException;
 import org.openstreetmap.josm.plugins.ods.OdsFeatureSource;
 import org.openstreetmap.josm.plugins.ods.ParameterType;
 import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureSource;
 import org.openstreetmap.josm.plugins.ods.geotools.GtHost;
+import org.openstreetmap.josm.plugins.ods.geotools.GtPageReader;
+import org.openstreetmap.josm.plugins.ods.geotools.MetadataCache;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
 import org.openstreetmap.josm.plugins.ods.metadata.MetaData;
 import org.openstreetmap.josm.tools.I18n;
+import org.openstreetmap.josm.tools.Logging;
 
 //import net.opengis.ows11.CapabilitiesBaseType;
 //import net.opengis.ows11.DomainType;
@@ -49,12 +56,12 @@ public class WFSHost implements GtHost {
         PROTOCOL = ParameterType.BOOLEAN();
     }
 
-    private static WFSDataStoreFactory wfsDataStoreFactory = new WFSDataStoreFactory();
+    private static WFSDataStoreFactory wfsDataStoreFactory = new OdsWFSDataStoreFactory();
     private final static String TYPE = "WFS";
 
     private final String name;
     private final URL url;
-    private Version wfsVersion;
+    private volatile Version wfsVersion;
     private final Integer maxFeatures;
     private final Integer defaultPageSize;
     private final String strategy;
@@ -63,6 +70,9 @@ public class WFSHost implements GtHost {
     private final Integer initTimeout;
     private final Integer dataTimeout;
     private Boolean initialized = false;
+    private WFSDataStore sharedDataStore;
+    private Future<Version> versionCheck;
+    private volatile boolean jsonSupported = true;
     //    private boolean pagingSupported = false;
 
     public WFSHost(String name, URL url, Version wfsVersion,
@@ -138,6 +148,49 @@ public class WFSHost implements GtHost {
         return initialized;
     }
 
+    public Version getWfsVersion() {
+        return wfsVersion;
+    }
+
+    public Integer getDataTimeout() {
+        return dataTimeout;
+    }
+
+    /**
+     * Check if the responses of this host should be compressed. Can be
+     * configured with the 'ods.wfs.gzip' preference.
+     *
+     * @return true if gzip compression should be requested
+     */
+    @SuppressWarnings("static-method")
+    public boolean isGzipEnabled() {
+        return Preferences.main().getBoolean("ods.wfs.gzip", true);
+    }
+
+    /**
+     * Check if the features should be requested as GeoJSON. Can be enabled
+     * with the 'ods.wfs.json' preference. Hosts that turn out not to
+     * support GeoJSON fall back to GML.
+     *
+     * @return true if the features should be requested as GeoJSON
+     */
+    public boolean isJsonSupported() {
+        return jsonSupported && Preferences.main().getBoolean("ods.wfs.json", false);
+    }
+
+    public void setJsonSupported(boolean jsonSupported) {
+        this.jsonSupported = jsonSupported;
+    }
+
+    @Override
+    public GtPageReader createPageReader(GtFeatureSource featureSource) {
+        GtPageReader reader = GtHost.super.createPageReader(featureSource);
+        if (isJsonSupported()) {
+            return new GeoJsonPageReader(this, featureSource, reader);
+        }
+        return reader;
+    }
+
     @Override
     public OdsFeatureSource getOdsFeatureSource(String feature) {
         return new GtFeatureSource(this, feature, null);
@@ -148,10 +201,16 @@ public class WFSHost implements GtHost {
         try {
             if (!isInitialized()) {
                 if (wfsVersion == null) {
-                    // Check the WFS version that is negotiated with the server
-                    // TODO
-                    WFSDataStore dataStore = createDataStore(initTimeout);
-                    wfsVersion = new Version(dataStore.getInfo().getVersion());
+                    String cachedVersion = MetadataCache.getInstance().getVersion(url);
+                    if (cachedVersion != null) {
+                        // Use the version from the previous session and
+                        // validate it in the background
+                        wfsVersion = new Version(cachedVersion);
+                        versionCheck = DownloadExecutor.getInstance().submit(this::negotiateVersion);
+                    }
+                    else {
+                        wfsVersion = negotiateVersion();
+                    }
                 }
                 this.initialized = true;
             }
@@ -161,11 +220,66 @@ public class WFSHost implements GtHost {
         return;
     }
 
+    /**
+     * Check the WFS version that is negotiated with the server and store it
+     * in the metadata cache.
+     *
+     * @return The negotiated version
+     * @throws IOException
+     */
+    private Version negotiateVersion() throws IOException {
+        WFSDataStore dataStore = createDataStore(initTimeout);
+        String version = dataStore.getInfo().getVersion();
+        MetadataCache.getInstance().putVersion(url, version);
+        return new Version(version);
+    }
+
+    /**
+     * Apply the result of the background version negotiation, if any. The
+     * shared data store is created after the negotiation, so it uses the
+     * version that the server supports now.
+     */
+    private void checkVersion() {
+        Future<Version> future = versionCheck;
+        if (future == null) {
+            return;
+        }
+        try {
+            Version version = DownloadExecutor.await(future);
+            if (!version.equals(wfsVersion)) {
+                Logging.info("Host {0} now uses WFS version {1} instead of {2}", name, version, wfsVersion);
+                wfsVersion = version;
+                if (sharedDataStore != null) {
+                    sharedDataStore.dispose();
+                    sharedDataStore = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            // Keep the cached version. If the host is unavailable, creating
+            // the data store will report the problem.
+            Logging.warn("The WFS version of host {0} could not be checked: {1}", name,
+                    e.getCause().getMessage());
+        }
+        versionCheck = null;
+    }
+
     @Override
     public DataStore createDataStore() throws IOException {
         return createDataStore(dataTimeout);
     }
 
+    @Override
+    public synchronized DataStore getDataStore() throws IOException {
+        checkVersion();
+        if (sharedDataStore == null) {
+            sharedDataStore = createDataStore(dataTimeout);
+        }
+        return sharedDataStore;
+    }
+
     public Map<String, Serializable> getConnectionParameters(int timeOut) {
         URL capabilitiesUrl = WFSDataStoreFactory
                 .createGetCapabilitiesRequest(getUrl(), wfsVersion);
@@ -178,6 +292,13 @@ public class WFSHost implements GtHost {
         if (strategy != null) {
             connectionParameters.put(WFSDataAccessFactory.WFS_STRATEGY.key, strategy);
         }
+        connectionParameters.put(WFSDataAccessFactory.GZIP_REQUEST.key, isGzipEnabled());
+        // Keep the connections to the host open, because all feature types
+        // of this host share the same data store. The pool is as large as the
+        // number of download tasks that can run at the same time.
+        connectionParameters.put(WFSDataAccessFactory.USE_HTTP_CONNECTION_POOLING.key, Boolean.TRUE);
+        connectionParameters.put(WFSDataAccessFactory.MAX_CONNECTION_POOL_SIZE.key,
+                DownloadExecutor.getInstance().getParallelism());
         return connectionParameters;
     }
 
@@ -0,0 +1,56 @@
+package org.openstreetmap.josm.plugins.ods.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+public class CompositeKeyTest {
+
+    @Test
+    public void equalPartsGiveEqualKeys() {
+        CompositeKey key1 = CompositeKey.of("1234AB", "12a");
+        CompositeKey key2 = CompositeKey.of(new String("1234AB"), "12a");
+        assertEquals(key1, key2);
+        assertEquals(key1.hashCode(), key2.hashCode());
+        assertNotEquals(key1, CompositeKey.of("1234AB", "12b"));
+        assertNotEquals(key1, CompositeKey.of("12a", "1234AB"));
+    }
+
+    @Test
+    public void numericPartsArePacked() {
+        CompositeKey key = CompositeKey.of(12, 3L);
+        assertEquals(key, CompositeKey.ofLongs(12L, 3L));
+        assertEquals(key, CompositeKey.of(12L, (short) 3));
+        assertEquals(Long.valueOf(12), key.get(0));
+        assertNotEquals(key, CompositeKey.of(12, "3"));
+    }
+
+    @Test
+    public void nullPartsAreAllowed() {
+        assertEquals(CompositeKey.of("1234AB", null), CompositeKey.of("1234AB", null));
+        assertNotEquals(CompositeKey.of("1234AB", null), CompositeKey.of(null, "1234AB"));
+    }
+
+    @Test
+    public void keysCanBeUsedInHashMap() {
+        Map<Object, String> map = new HashMap<>();
+        map.put(CompositeKey.of("1234AB", 12), "first");
+        map.put(CompositeKey.of("1234AB", 14), "second");
+        assertEquals("first", map.get(CompositeKey.of("1234AB", 12L)));
+        assertEquals("second", map.get(CompositeKey.normalize(new Object[] {"1234AB", 14})));
+        assertNull(map.get(CompositeKey.of("1234AB", 16)));
+    }
+
+    @Test
+    public void extractorCombinesParts() {
+        Function<String, CompositeKey> extractor = CompositeKey.<String>extractor(
+                s -> s.substring(0, 1), String::length);
+        assertEquals(CompositeKey.of("a", 3), extractor.apply("abc"));
+    }
+}
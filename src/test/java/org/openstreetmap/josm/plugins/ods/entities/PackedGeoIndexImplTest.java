@@ -0,0 +1,143 @@
+package org.openstreetmap.josm.plugins.ods.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.openstreetmap.josm.plugins.ods.domains.places.impl.AbstractOdCity;
+
+public class PackedGeoIndexImplTest {
+    private final GeometryFactory factory = new GeometryFactory();
+    private final Map<Entity, Geometry> geometries = new HashMap<>();
+    private PackedGeoIndexImpl<Entity> index;
+
+    @BeforeEach
+    public void setUp() {
+        geometries.clear();
+        index = new PackedGeoIndexImpl<>(geometries::get);
+    }
+
+    @Test
+    public void overlayAndTreeAreQueried() {
+        Entity packed = entity(0, 0);
+        index.insert(packed);
+        index.batchComplete();
+        Entity inserted = entity(5, 5);
+        index.insert(inserted);
+        assertEquals(Arrays.asList(packed), index.intersection(box(-1, -1, 1, 1)));
+        assertEquals(Arrays.asList(inserted), index.intersection(box(4, 4, 6, 6)));
+        assertEquals(new HashSet<>(Arrays.asList(packed, inserted)),
+                new HashSet<>(index.intersection(box(-1, -1, 6, 6))));
+        assertTrue(index.intersection(box(10, 10, 11, 11)).isEmpty());
+    }
+
+    @Test
+    public void removeFromOverlayAndTree() {
+        Entity packed = entity(0, 0);
+        Entity inserted = entity(1, 1);
+        index.insert(packed);
+        index.batchComplete();
+        index.insert(inserted);
+        index.remove(packed);
+        index.remove(inserted);
+        assertEquals(0, index.size());
+        assertTrue(index.intersection(box(-1, -1, 2, 2)).isEmpty());
+    }
+
+    @Test
+    public void removeAfterGeometryChange() {
+        Entity packed = entity(0, 0);
+        Entity inserted = entity(1, 1);
+        index.insert(packed);
+        index.batchComplete();
+        index.insert(inserted);
+        geometries.put(packed, point(20, 20));
+        geometries.put(inserted, point(30, 30));
+        index.remove(packed);
+        index.remove(inserted);
+        assertEquals(0, index.size());
+        index.batchComplete();
+        assertTrue(index.intersection(box(-1, -1, 40, 40)).isEmpty());
+    }
+
+    @Test
+    public void packMovesChangedAndDropsEmptyGeometries() {
+        Entity moved = entity(0, 0);
+        Entity lost = entity(1, 1);
+        index.insert(moved);
+        index.insert(lost);
+        geometries.put(moved, point(20, 20));
+        geometries.remove(lost);
+        index.batchComplete();
+        assertEquals(1, index.size());
+        assertEquals(Arrays.asList(moved), index.intersection(box(19, 19, 21, 21)));
+        index.insert(entity(2, 2));
+        index.batchComplete();
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void queryIgnoresRemovedGeometries() {
+        Entity packed = entity(0, 0);
+        index.insert(packed);
+        index.batchComplete();
+        Entity inserted = entity(0, 0);
+        index.insert(inserted);
+        geometries.remove(packed);
+        geometries.put(inserted, factory.createPoint());
+        assertTrue(index.intersection(box(-1, -1, 1, 1)).isEmpty());
+    }
+
+    @Test
+    public void manyEntities() {
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                index.insert(entity(i, j));
+            }
+        }
+        index.batchComplete();
+        List<Entity> result = index.intersection(box(9.5, 9.5, 19.5, 19.5));
+        assertEquals(100, result.size());
+    }
+
+    @Test
+    public void largeOverlayIsPackedOnInsert() {
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                index.insert(entity(i, j));
+            }
+        }
+        // No batchComplete; the inserts keep the overlay small
+        assertTrue(index.getOverlaySize() <= 1000);
+        assertEquals(10000, index.size());
+        int overlaySize = index.getOverlaySize();
+        assertEquals(100, index.intersection(box(9.5, 9.5, 19.5, 19.5)).size());
+        // Queries don't modify the index
+        assertEquals(overlaySize, index.getOverlaySize());
+    }
+
+    private Entity entity(double x, double y) {
+        Entity entity = new AbstractOdCity();
+        geometries.put(entity, point(x, y));
+        return entity;
+    }
+
+    private Geometry point(double x, double y) {
+        return factory.createPoint(new Coordinate(x, y));
+    }
+
+    private Geometry box(double minX, double minY, double maxX, double maxY) {
+        return factory.toGeometry(new Envelope(minX, maxX, minY, maxY));
+    }
+}
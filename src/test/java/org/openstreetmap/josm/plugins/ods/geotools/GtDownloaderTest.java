@@ -0,0 +1,177 @@
+package org.openstreetmap.josm.plugins.ods.geotools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.openstreetmap.josm.plugins.ods.crs.CRSException;
+import org.openstreetmap.josm.plugins.ods.crs.CRSUtil;
+import org.openstreetmap.josm.plugins.ods.domains.places.OdCity;
+import org.openstreetmap.josm.plugins.ods.domains.places.impl.AbstractOdCity;
+import org.openstreetmap.josm.plugins.ods.domains.places.impl.OpenDataCityStore;
+import org.openstreetmap.josm.plugins.ods.io.DownloadRequest;
+import org.openstreetmap.josm.plugins.ods.io.DownloadResponse;
+import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+import org.openstreetmap.josm.plugins.ods.test.util.JOSMFixture;
+import org.openstreetmap.josm.plugins.ods.test.util.LocalWfsServer;
+import org.openstreetmap.josm.plugins.ods.wfs.WFSHost;
+
+/**
+ * Load test of a paged and tiled download from the local WFS server. The
+ * server has more than 100.000 features; the download area contains about
+ * half of them.
+ */
+public class GtDownloaderTest {
+    private static final int GRID_SIZE = 320;
+    private static final double SPACING = 10.0;
+    private static final double MIN_X = 154000;
+    private static final double MIN_Y = 462000;
+    private static final int PAGE_SIZE = 2000;
+    private static final GeometryFactory geometryFactory = new GeometryFactory();
+    private static LocalWfsServer server;
+    private static List<SimpleFeature> features;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws IOException {
+        JOSMFixture.createUnitTestFixture().init();
+        features = createFeatures();
+        server = new LocalWfsServer();
+        server.addFeatureType("buildings", features, 28992);
+        server.start();
+    }
+
+    @AfterAll
+    public static void tearDownAfterClass() {
+        server.stop();
+    }
+
+    @Test
+    public void downloadPagedTiles() throws IOException, CRSException {
+        WFSHost host = server.createHost("test");
+        String typeName = Arrays.stream(host.getDataStore().getTypeNames())
+                .filter(t -> t.endsWith("buildings")).findFirst().get();
+        GtDatasourceBuilder builder = new GtDatasourceBuilder();
+        builder.setFeatureSource(new GtFeatureSource(host, typeName, "id"));
+        builder.setProperties(Arrays.asList("id", "geometry"));
+        builder.setUniqueKey("id");
+        builder.setPageSize(PAGE_SIZE);
+        builder.setPrefetchCount(2);
+        builder.setTileSize(1000);
+        GtDataSource dataSource = builder.build();
+
+        CoordinateReferenceSystem crs = CRSUtil.getCrs(28992L);
+        Geometry osmArea = CRSUtil.getInstance().toOsm(createDiamond(), crs);
+        MultiPolygon multiPolygon = geometryFactory.createMultiPolygon(new Polygon[] {(Polygon) osmArea});
+        DownloadRequest request = new DownloadRequest(LocalDateTime.now(), new Boundary(multiPolygon), false, true);
+        OpenDataCityStore store = new OpenDataCityStore();
+        GtDownloader<OdCity> downloader = new GtDownloader<>(dataSource, CRSUtil.getInstance(),
+                new CityFactory(), store);
+        downloader.setup(request);
+        downloader.setResponse(new DownloadResponse(request));
+
+        int requestCount = server.getFeatureRequestCount();
+        downloader.prepare();
+        downloader.download();
+        downloader.process();
+        assertTrue(downloader.getStatus().isSucces(), downloader.getStatus().getMessage());
+
+        // The downloader transforms the area back to the CRS of the server
+        int expected = countIntersecting(CRSUtil.getInstance().fromOsm(multiPolygon, crs));
+        assertTrue(expected > 40_000);
+        assertEquals(expected, store.stream().count());
+        // The area is split in tiles and every tile is downloaded in pages
+        assertTrue(server.getFeatureRequestCount() - requestCount > expected / PAGE_SIZE);
+    }
+
+    /**
+     * A diamond in the middle of the data, so the download area is not
+     * aligned with the tiles.
+     */
+    private static Polygon createDiamond() {
+        double cx = MIN_X + GRID_SIZE * SPACING / 2;
+        double cy = MIN_Y + GRID_SIZE * SPACING / 2;
+        double r = 1500;
+        return geometryFactory.createPolygon(new Coordinate[] {
+            new Coordinate(cx, cy - r), new Coordinate(cx + r, cy),
+            new Coordinate(cx, cy + r), new Coordinate(cx - r, cy),
+            new Coordinate(cx, cy - r)
+        });
+    }
+
+    private static int countIntersecting(Geometry area) {
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(area);
+        int count = 0;
+        for (SimpleFeature feature : features) {
+            if (prepared.intersects((Geometry) feature.getDefaultGeometry())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<SimpleFeature> createFeatures() {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("buildings");
+        typeBuilder.add("id", Integer.class);
+        typeBuilder.add("geometry", Polygon.class);
+        SimpleFeatureType featureType = typeBuilder.buildFeatureType();
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
+        List<SimpleFeature> result = new ArrayList<>(GRID_SIZE * GRID_SIZE);
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                int id = i * GRID_SIZE + j;
+                double x = MIN_X + i * SPACING;
+                double y = MIN_Y + j * SPACING;
+                featureBuilder.add(id);
+                featureBuilder.add(geometryFactory.toGeometry(new Envelope(x, x + 2, y, y + 2)));
+                result.add(featureBuilder.buildFeature("buildings." + id));
+            }
+        }
+        return result;
+    }
+
+    private static class CityFactory implements GtEntityFactory<OdCity> {
+
+        @Override
+        public boolean isApplicable(Name featureType, Class<?> entityType) {
+            return true;
+        }
+
+        @Override
+        public Class<OdCity> getTargetType() {
+            return OdCity.class;
+        }
+
+        @Override
+        public OdCity create(SimpleFeature feature, DownloadResponse response) {
+            AbstractOdCity city = new AbstractOdCity();
+            city.setPrimaryId(feature.getAttribute("id"));
+            city.setReferenceId(feature.getAttribute("id"));
+            city.setGeometry((Geometry) feature.getDefaultGeometry());
+            city.setDownloadResponse(response);
+            return city;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.openstreetmap.josm.plugins.ods.geotools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PageSizePolicyTest {
+
+    @Test
+    public void fastServerGrowsPageSize() {
+        PageSizePolicy policy = new PageSizePolicy(100, 50, 1000, 2000, 0);
+        policy.pageRead(100, 0, 100);
+        assertEquals(200, policy.getPageSize());
+        policy.pageRead(200, 0, 100);
+        assertEquals(400, policy.getPageSize());
+        for (int i = 0; i < 10; i++) {
+            policy.pageRead(policy.getPageSize(), 0, 100);
+        }
+        assertEquals(1000, policy.getPageSize());
+    }
+
+    @Test
+    public void slowServerShrinksPageSize() {
+        PageSizePolicy policy = new PageSizePolicy(1000, 50, 1000, 2000, 0);
+        // 100 features per second
+        for (int i = 0; i < 10; i++) {
+            int size = policy.getPageSize();
+            policy.pageRead(size, 0, size * 10L);
+        }
+        assertEquals(200, policy.getPageSize());
+    }
+
+    @Test
+    public void largeFeaturesLimitPageSize() {
+        PageSizePolicy policy = new PageSizePolicy(500, 10, 1000, 2000, 100_000);
+        for (int i = 0; i < 10; i++) {
+            int size = policy.getPageSize();
+            // 1000 bytes per feature, very fast server
+            policy.pageRead(size, size * 1000L, 10);
+        }
+        assertEquals(100, policy.getPageSize());
+    }
+
+    @Test
+    public void emptyPageIsIgnored() {
+        PageSizePolicy policy = new PageSizePolicy(100, 50, 1000, 2000, 0);
+        policy.pageRead(0, 0, 5000);
+        assertEquals(100, policy.getPageSize());
+    }
+
+    @Test
+    public void initialSizeIsClamped() {
+        PageSizePolicy policy = new PageSizePolicy(5000, 50, 1000, 2000, 0);
+        assertEquals(1000, policy.getPageSize());
+        policy.pageRead(1000, 0, 1_000_000);
+        assertTrue(policy.getPageSize() >= 50);
+    }
+}
@@ -0,0 +1,94 @@
+package org.openstreetmap.josm.plugins.ods.geotools.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.openstreetmap.josm.plugins.ods.geotools.GtFeatureReader;
+import org.openstreetmap.josm.plugins.ods.io.DownloadExecutor;
+import org.openstreetmap.josm.plugins.ods.test.util.JOSMFixture;
+
+public class TiledFeatureReaderTest {
+    private static SimpleFeatureBuilder featureBuilder;
+
+    @BeforeAll
+    public static void setUpBeforeClass() {
+        JOSMFixture.createUnitTestFixture().init();
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("buildings");
+        typeBuilder.add("id", Integer.class);
+        SimpleFeatureType featureType = typeBuilder.buildFeatureType();
+        featureBuilder = new SimpleFeatureBuilder(featureType);
+    }
+
+    /**
+     * The partial window is derived from the deadline of the enclosing phase,
+     * so it closes before the phase is cancelled. The features of the
+     * completed tile are kept and the hanging tile is reported.
+     */
+    @Test
+    public void partialWindowClosesBeforePhaseDeadline() throws InterruptedException {
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        long phaseTimeout = 3000;
+        long deadline = System.currentTimeMillis() + phaseTimeout;
+        TiledFeatureReader reader = new TiledFeatureReader(
+                Arrays.asList(createTile(3), createHangingTile()), 2,
+                executor.getPartialTimeout(deadline));
+        List<SimpleFeature> features = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        DownloadExecutor.Batch phase = executor.start(Collections.singletonList(() -> {
+            try {
+                reader.read(features::add, null);
+            } catch (IOException e) {
+                failure.set(e);
+            }
+        }));
+        assertTrue(phase.await(phaseTimeout), "The phase timed out");
+        assertNull(failure.get());
+        assertEquals(3, features.size());
+        assertEquals(Arrays.asList(1), reader.getIncompleteTiles());
+    }
+
+    @Test
+    public void partialWindowFollowsRemainingTime() {
+        DownloadExecutor executor = DownloadExecutor.getInstance();
+        long remaining = 10_000;
+        long timeout = executor.getPartialTimeout(System.currentTimeMillis() + remaining);
+        assertTrue(timeout < remaining);
+        assertTrue(timeout <= executor.getPartialTimeout());
+        assertEquals(1, executor.getPartialTimeout(System.currentTimeMillis() - 1));
+    }
+
+    private static GtFeatureReader createTile(int count) {
+        return (consumer, progressListener) -> {
+            for (int i = 0; i < count; i++) {
+                featureBuilder.add(i);
+                consumer.accept(featureBuilder.buildFeature("buildings." + i));
+            }
+        };
+    }
+
+    private static GtFeatureReader createHangingTile() {
+        return (consumer, progressListener) -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        };
+    }
+}
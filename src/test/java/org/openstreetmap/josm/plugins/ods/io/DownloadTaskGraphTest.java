@@ -0,0 +1,84 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.ods.test.util.JOSMFixture;
+
+public class DownloadTaskGraphTest {
+    private static DownloadExecutor executor;
+
+    @BeforeAll
+    public static void setUpBeforeClass() {
+        JOSMFixture.createUnitTestFixture().init();
+        executor = new DownloadExecutor(4);
+    }
+
+    @Test
+    public void successorStartsAfterPredecessorReturns() throws InterruptedException {
+        DownloadTaskGraph graph = new DownloadTaskGraph(executor);
+        AtomicBoolean predecessorDone = new AtomicBoolean(false);
+        AtomicBoolean order = new AtomicBoolean(false);
+        DownloadTaskGraph.Task first = graph.addTask(() -> {
+            sleep(100);
+            predecessorDone.set(true);
+        }, Collections.emptyList());
+        graph.addTask(() -> order.set(predecessorDone.get()), Collections.singletonList(first));
+        assertTrue(graph.run(5000));
+        assertTrue(order.get());
+    }
+
+    @Test
+    public void timeoutMarksStatusAndSkipsSuccessors() throws InterruptedException {
+        DownloadTaskGraph graph = new DownloadTaskGraph(executor);
+        Status status = new Status();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicBoolean successorRan = new AtomicBoolean(false);
+        DownloadTaskGraph.Task slow = graph.addTask(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                // Keep writing for a while after the cancel
+                sleep(200);
+                interrupted.countDown();
+            }
+        }, status, Collections.emptyList());
+        graph.addTask(() -> successorRan.set(true), Collections.singletonList(slow));
+        assertFalse(graph.run(200));
+        assertTrue(status.isTimedOut());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        sleep(100);
+        assertFalse(successorRan.get());
+    }
+
+    @Test
+    public void failedPredecessorSkipsSuccessors() throws InterruptedException {
+        DownloadTaskGraph graph = new DownloadTaskGraph(executor);
+        Status failedStatus = new Status();
+        Status skippedStatus = new Status();
+        AtomicBoolean successorRan = new AtomicBoolean(false);
+        DownloadTaskGraph.Task failing = graph.addTask(() -> {
+            throw new IllegalStateException("Test");
+        }, failedStatus, Collections.emptyList());
+        graph.addTask(() -> successorRan.set(true), skippedStatus, Collections.singletonList(failing));
+        assertTrue(graph.run(5000));
+        assertFalse(successorRan.get());
+        assertTrue(failedStatus.isFailed());
+        assertTrue(skippedStatus.isFailed());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
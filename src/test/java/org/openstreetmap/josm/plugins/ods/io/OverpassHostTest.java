@@ -0,0 +1,83 @@
+package org.openstreetmap.josm.plugins.ods.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.plugins.ods.jts.Boundary;
+import org.openstreetmap.josm.plugins.ods.test.util.JOSMFixture;
+
+public class OverpassHostTest {
+    private static final int MAX_LENGTH = 4000;
+    private final GeometryFactory factory = new GeometryFactory();
+
+    @BeforeAll
+    public static void setUpBeforeClass() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Preferences.main().putInt("ods.overpass.query.maxlength", MAX_LENGTH);
+    }
+
+    @Test
+    public void detailedPolygonFitsInQueryLength() {
+        Polygon circle = createCircle(5.0, 52.0, 0.05, 5000);
+        String query = OverpassHost.getQuery(new Boundary(factory.createMultiPolygon(new Polygon[] {circle})));
+        assertTrue(OverpassHost.getEncodedLength(query) <= MAX_LENGTH);
+        // The polygon is defined only once
+        assertEquals(1, count(query, "poly:"));
+        assertTrue(query.endsWith("out meta;"));
+    }
+
+    @Test
+    public void multiPolygonFitsInQueryLength() {
+        Polygon[] polygons = new Polygon[6];
+        for (int i = 0; i < polygons.length; i++) {
+            polygons[i] = createCircle(5.0 + i * 0.2, 52.0, 0.05, 1000);
+        }
+        MultiPolygon multiPolygon = factory.createMultiPolygon(polygons);
+        String query = OverpassHost.getQuery(new Boundary(multiPolygon));
+        assertTrue(OverpassHost.getEncodedLength(query) <= MAX_LENGTH);
+        assertEquals(polygons.length, count(query, "poly:"));
+    }
+
+    @Test
+    public void tooSmallLengthFallsBackToBoundingBox() {
+        Preferences.main().putInt("ods.overpass.query.maxlength", 100);
+        Polygon circle = createCircle(5.0, 52.0, 0.05, 100);
+        String query = OverpassHost.getQuery(new Boundary(factory.createMultiPolygon(new Polygon[] {circle})));
+        assertEquals(0, count(query, "poly:"));
+        assertTrue(query.contains("{{bbox}}"));
+    }
+
+    private Polygon createCircle(double x, double y, double radius, int points) {
+        Coordinate[] coords = new Coordinate[points + 1];
+        for (int i = 0; i < points; i++) {
+            double angle = 2 * Math.PI * i / points;
+            // Make the outline irregular, so it can't be simplified too much
+            double r = radius * (1 + 0.1 * Math.sin(angle * 37));
+            coords[i] = new Coordinate(x + r * Math.cos(angle), y + r * Math.sin(angle));
+        }
+        coords[points] = coords[0];
+        return factory.createPolygon(coords);
+    }
+
+    private static int count(String s, String part) {
+        int count = 0;
+        int index = s.indexOf(part);
+        while (index >= 0) {
+            count++;
+            index = s.indexOf(part, index + 1);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,98 @@
+package org.openstreetmap.josm.plugins.ods.jts;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+public class GridTilerTest {
+    private static final WKTReader wktReader = new WKTReader(new GeometryFactory());
+
+    @Test
+    public void splitSquare() throws ParseException {
+        Geometry area = wktReader.read("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))");
+        List<Geometry> tiles = new GridTiler(5).split(area);
+        assertEquals(4, tiles.size());
+        for (Geometry tile : tiles) {
+            assertEquals(25.0, tile.getArea(), 1e-9);
+        }
+    }
+
+    @Test
+    public void tilesCoverIrregularArea() throws ParseException {
+        Geometry area = wktReader.read("POLYGON ((0 0, 10 0, 0 10, 0 0))");
+        List<Geometry> tiles = new GridTiler(3).split(area);
+        double total = 0.0;
+        for (Geometry tile : tiles) {
+            total += tile.getArea();
+        }
+        assertEquals(area.getArea(), total, 1e-9);
+        assertEquals(10, tiles.size());
+    }
+
+    @Test
+    public void smallAreaIsNotSplit() throws ParseException {
+        Geometry area = wktReader.read("POLYGON ((0 0, 1 0, 1 1, 0 1, 0 0))");
+        List<Geometry> tiles = new GridTiler(5).split(area);
+        assertEquals(1, tiles.size());
+        assertSame(area, tiles.get(0));
+    }
+
+    @Test
+    public void forTileCount() {
+        GridTiler tiler = GridTiler.forTileCount(new Envelope(0, 20, 0, 10), 8);
+        assertEquals(5.0, tiler.getTileWidth(), 1e-9);
+        assertEquals(5.0, tiler.getTileHeight(), 1e-9);
+    }
+
+    @Test
+    public void alignedCells() throws ParseException {
+        Geometry area = wktReader.read("POLYGON ((1 1, 9 1, 9 4, 1 4, 1 1))");
+        List<Geometry> cells = new GridTiler(5).getAlignedCells(area);
+        assertEquals(2, cells.size());
+        assertEquals(new Envelope(0, 5, 0, 5), cells.get(0).getEnvelopeInternal());
+        assertEquals(new Envelope(5, 10, 0, 5), cells.get(1).getEnvelopeInternal());
+        // An overlapping area gets the same cell
+        Geometry other = wktReader.read("POLYGON ((6 2, 10 2, 10 5, 6 5, 6 2))");
+        List<Geometry> otherCells = new GridTiler(5).getAlignedCells(other);
+        assertEquals(1, otherCells.size());
+        assertEquals(cells.get(1), otherCells.get(0));
+    }
+
+    @Test
+    public void alignedTilesMatchCacheCells() throws ParseException {
+        Geometry area = wktReader.read("POLYGON ((1 1, 19 1, 19 9, 1 9, 1 1))");
+        List<Geometry> tiles = new GridTiler(10).splitAligned(area);
+        assertEquals(2, tiles.size());
+        double total = 0.0;
+        GridTiler cacheGrid = new GridTiler(5);
+        for (Geometry tile : tiles) {
+            total += tile.getArea();
+            // Every tile lies within a single tile-sized cell and has its own cache cells
+            List<Geometry> cells = cacheGrid.getAlignedCells(tile);
+            assertEquals(4, cells.size());
+            for (Geometry cell : cells) {
+                assertTrue(new GridTiler(10).getAlignedCells(tile).get(0).covers(cell));
+            }
+        }
+        assertEquals(area.getArea(), total, 1e-9);
+    }
+
+    @Test
+    public void touchingCellsAreSkipped() throws ParseException {
+        Geometry cell = wktReader.read("POLYGON ((5 0, 10 0, 10 5, 5 5, 5 0))");
+        List<Geometry> cells = new GridTiler(5).getAlignedCells(cell);
+        assertEquals(1, cells.size());
+        assertEquals(cell.getEnvelopeInternal(), cells.get(0).getEnvelopeInternal());
+        Geometry point = wktReader.read("POINT (5 5)");
+        assertEquals(1, new GridTiler(5).getAlignedCells(point).size());
+    }
+}
@@ -0,0 +1,51 @@
+package org.openstreetmap.josm.plugins.ods.jts;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+public class RingSimplifierTest {
+    private static final GeometryFactory geometryFactory = new GeometryFactory();
+    private static final WKTReader wktReader = new WKTReader(geometryFactory);
+
+    @Test
+    public void simplePolygonIsUnchanged() throws ParseException {
+        Polygon polygon = (Polygon) wktReader.read("POLYGON ((0 0, 10 0, 0 10, 0 0))");
+        Polygon result = new RingSimplifier(10).simplify(polygon);
+        assertTrue(result.equalsExact(polygon));
+    }
+
+    @Test
+    public void holesAreRemoved() throws ParseException {
+        Polygon polygon = (Polygon) wktReader.read(
+                "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2))");
+        Polygon result = new RingSimplifier(10).simplify(polygon);
+        assertEquals(0, result.getNumInteriorRing());
+        assertEquals(100.0, result.getArea(), 1e-9);
+    }
+
+    @Test
+    public void jaggedPolygonIsCovered() {
+        // A star shaped polygon with 200 points
+        int n = 200;
+        Coordinate[] coords = new Coordinate[n + 1];
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n;
+            double radius = (i % 2 == 0 ? 10.0 : 9.0);
+            coords[i] = new Coordinate(radius * Math.cos(angle), radius * Math.sin(angle));
+        }
+        coords[n] = coords[0];
+        Polygon polygon = geometryFactory.createPolygon(coords);
+        Polygon result = new RingSimplifier(50).simplify(polygon);
+        assertTrue(result.getNumPoints() <= 50);
+        assertTrue(result.covers(polygon));
+        // The result should not be much larger than the original
+        assertTrue(result.getArea() < 1.5 * polygon.getArea());
+    }
+}
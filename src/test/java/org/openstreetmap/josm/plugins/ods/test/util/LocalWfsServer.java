@@ -0,0 +1,842 @@
+package org.openstreetmap.josm.plugins.ods.test.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.util.Version;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.openstreetmap.josm.plugins.ods.Host;
+import org.openstreetmap.josm.plugins.ods.ParameterSet;
+import org.openstreetmap.josm.plugins.ods.wfs.WFSHost;
+import org.openstreetmap.josm.plugins.ods.wfs.WFSHostFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal in-process WFS 2.0 server for tests. It serves GetCapabilities,
+ * DescribeFeatureType and GetFeature requests from features in memory or
+ * from a GML file.
+ * GetFeature supports the startIndex, count, sortBy, bbox and
+ * resultType=hits parameters. The FILTER parameter may contain BBOX and
+ * Intersects conditions, combined with And and Or. These are the only
+ * operators in the filter capabilities, so a GeoTools client evaluates any
+ * other conditions itself. A filter with other operators is rejected.
+ * Only the KVP (GET) encoding is supported. Coordinates are read and written
+ * in the order in which they are stored.
+ *
+ * Usage:
+ * <pre>
+ * LocalWfsServer server = new LocalWfsServer();
+ * server.addFeatureType("buildings", features, 28992);
+ * server.addFeatureType("addresses", new File("addresses.gml"), 28992);
+ * server.start();
+ * WFSHost host = server.createHost("test");
+ * ...
+ * server.stop();
+ * </pre>
+ *
+ * @author Gertjan Idema <mail@gertjanidema.nl>
+ *
+ */
+public class LocalWfsServer {
+    public static final String PREFIX = "ods";
+    public static final String NAMESPACE = "http://josm.openstreetmap.org/plugins/ods/test";
+    private static final String PATH = "/wfs";
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+    private static final Set<String> GML_NAMESPACES = new HashSet<>(Arrays.asList(
+            "http://www.opengis.net/gml", "http://www.opengis.net/gml/3.2"));
+
+    private final Map<String, Layer> layers = new LinkedHashMap<>();
+    private final AtomicInteger featureRequestCount = new AtomicInteger();
+    private HttpServer server;
+
+    /**
+     * Add a feature type.
+     *
+     * @param name The local name of the feature type
+     * @param features The features. All features must have the same type.
+     * @param srid The EPSG code of the coordinate reference system
+     */
+    public void addFeatureType(String name, List<SimpleFeature> features, int srid) {
+        if (features.isEmpty()) {
+            throw new IllegalArgumentException("At least 1 feature is required");
+        }
+        layers.put(name, new Layer(name, features.get(0).getFeatureType(), features, srid));
+    }
+
+    /**
+     * Add a feature type from a GML file. The file contains a feature
+     * collection with gml:featureMember or wfs:member elements, like the
+     * output of a GetFeature request. The attribute types are derived from
+     * the values: geometries, integers, decimal numbers or else strings.
+     *
+     * @param name The local name of the feature type
+     * @param file The GML file
+     * @param srid The EPSG code of the coordinate reference system
+     * @throws IOException if the file can't be read or parsed
+     */
+    public void addFeatureType(String name, File file, int srid) throws IOException {
+        Document document;
+        try {
+            document = parseXml(new InputSource(file.toURI().toString()));
+        } catch (SAXException e) {
+            throw new IOException(e);
+        }
+        addFeatureType(name, readFeatures(name, document.getDocumentElement()), srid);
+    }
+
+    /**
+     * @return The number of GetFeature requests, including hit counts, since
+     *     the server was created.
+     */
+    public int getFeatureRequestCount() {
+        return featureRequestCount.get();
+    }
+
+    /**
+     * Start the server on a free port.
+     *
+     * @throws IOException
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    public URL getUrl() throws IOException {
+        return new URL("http", "localhost", server.getAddress().getPort(), PATH);
+    }
+
+    /**
+     * Get the parameters for a WFSHost that connects to this server.
+     *
+     * @param hostName
+     * @return The parameters
+     * @throws IOException
+     */
+    public ParameterSet getHostParameters(String hostName) throws IOException {
+        ParameterSet parameters = new ParameterSet();
+        parameters.put(Host.HOST_NAME, hostName);
+        parameters.put(Host.BASE_URL, getUrl().toString());
+        parameters.put(WFSHost.WFS_VERSION, new Version("2.0.0"));
+        // Use the KVP encoding
+        parameters.put(WFSHost.PROTOCOL, Boolean.FALSE);
+        return parameters;
+    }
+
+    public WFSHost createHost(String hostName) throws IOException {
+        return new WFSHostFactory().create(getHostParameters(hostName));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI());
+            String request = params.getOrDefault("REQUEST", "");
+            StringBuilder sb = new StringBuilder(10000);
+            switch (request.toLowerCase(Locale.ROOT)) {
+            case "getcapabilities":
+                writeCapabilities(sb);
+                break;
+            case "describefeaturetype":
+                writeSchema(sb, params);
+                break;
+            case "getfeature":
+                featureRequestCount.incrementAndGet();
+                writeFeatures(sb, params);
+                break;
+            default:
+                sendError(exchange, 400, "Unsupported request: " + request);
+                return;
+            }
+            send(exchange, 200, "text/xml; charset=UTF-8", sb.toString());
+        }
+        catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+        catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String kvp : query.split("&")) {
+            int index = kvp.indexOf('=');
+            String key = (index > 0 ? kvp.substring(0, index) : kvp);
+            String value = (index > 0 ? kvp.substring(index + 1) : "");
+            params.put(URLDecoder.decode(key, "UTF-8").toUpperCase(Locale.ROOT),
+                    URLDecoder.decode(value, "UTF-8"));
+        }
+        return params;
+    }
+
+    private void writeCapabilities(StringBuilder sb) throws IOException {
+        String url = escape(getUrl().toString());
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<wfs:WFS_Capabilities version=\"2.0.0\"")
+          .append(" xmlns:wfs=\"http://www.opengis.net/wfs/2.0\"")
+          .append(" xmlns:ows=\"http://www.opengis.net/ows/1.1\"")
+          .append(" xmlns:fes=\"http://www.opengis.net/fes/2.0\"")
+          .append(" xmlns:xlink=\"http://www.w3.org/1999/xlink\"")
+          .append(" xmlns:").append(PREFIX).append("=\"").append(NAMESPACE).append("\">\n");
+        sb.append("<ows:ServiceIdentification><ows:Title>Local WFS</ows:Title>")
+          .append("<ows:ServiceType>WFS</ows:ServiceType>")
+          .append("<ows:ServiceTypeVersion>2.0.0</ows:ServiceTypeVersion>")
+          .append("</ows:ServiceIdentification>\n");
+        sb.append("<ows:OperationsMetadata>\n");
+        for (String operation : new String[] {"GetCapabilities", "DescribeFeatureType", "GetFeature"}) {
+            sb.append("<ows:Operation name=\"").append(operation).append("\"><ows:DCP><ows:HTTP>")
+              .append("<ows:Get xlink:href=\"").append(url).append("?\"/>")
+              .append("</ows:HTTP></ows:DCP></ows:Operation>\n");
+        }
+        sb.append("<ows:Constraint name=\"ImplementsResultPaging\"><ows:NoValues/>")
+          .append("<ows:DefaultValue>TRUE</ows:DefaultValue></ows:Constraint>\n");
+        sb.append("<ows:Constraint name=\"KVPEncoding\"><ows:NoValues/>")
+          .append("<ows:DefaultValue>TRUE</ows:DefaultValue></ows:Constraint>\n");
+        sb.append("</ows:OperationsMetadata>\n");
+        sb.append("<wfs:FeatureTypeList>\n");
+        for (Layer layer : layers.values()) {
+            sb.append("<wfs:FeatureType><wfs:Name>").append(PREFIX).append(':').append(layer.name)
+              .append("</wfs:Name><wfs:Title>").append(layer.name).append("</wfs:Title>")
+              .append("<wfs:DefaultCRS>urn:ogc:def:crs:EPSG::").append(layer.srid).append("</wfs:DefaultCRS>")
+              .append("<ows:WGS84BoundingBox><ows:LowerCorner>-180 -90</ows:LowerCorner>")
+              .append("<ows:UpperCorner>180 90</ows:UpperCorner></ows:WGS84BoundingBox>")
+              .append("</wfs:FeatureType>\n");
+        }
+        sb.append("</wfs:FeatureTypeList>\n");
+        sb.append("<fes:Filter_Capabilities><fes:Conformance>")
+          .append("<fes:Constraint name=\"ImplementsSorting\"><ows:NoValues/>")
+          .append("<ows:DefaultValue>TRUE</ows:DefaultValue></fes:Constraint>")
+          .append("<fes:Constraint name=\"ImplementsSpatialFilter\"><ows:NoValues/>")
+          .append("<ows:DefaultValue>TRUE</ows:DefaultValue></fes:Constraint>")
+          .append("</fes:Conformance>")
+          .append("<fes:Scalar_Capabilities><fes:LogicalOperators/></fes:Scalar_Capabilities>")
+          .append("<fes:Spatial_Capabilities><fes:GeometryOperands>");
+        for (String operand : new String[] {"Envelope", "Point", "LineString", "Polygon",
+                "MultiPoint", "MultiCurve", "MultiSurface"}) {
+            sb.append("<fes:GeometryOperand name=\"gml:").append(operand).append("\"/>");
+        }
+        sb.append("</fes:GeometryOperands><fes:SpatialOperators>")
+          .append("<fes:SpatialOperator name=\"BBOX\"/><fes:SpatialOperator name=\"Intersects\"/>")
+          .append("</fes:SpatialOperators></fes:Spatial_Capabilities></fes:Filter_Capabilities>\n");
+        sb.append("</wfs:WFS_Capabilities>\n");
+    }
+
+    private void writeSchema(StringBuilder sb, Map<String, String> params) {
+        List<Layer> selected = getLayers(params, false);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\"")
+          .append(" xmlns:gml=\"http://www.opengis.net/gml/3.2\"")
+          .append(" xmlns:").append(PREFIX).append("=\"").append(NAMESPACE).append("\"")
+          .append(" targetNamespace=\"").append(NAMESPACE).append("\"")
+          .append(" elementFormDefault=\"qualified\" version=\"2.0.0\">\n");
+        sb.append("<xsd:import namespace=\"http://www.opengis.net/gml/3.2\"")
+          .append(" schemaLocation=\"http://schemas.opengis.net/gml/3.2.1/gml.xsd\"/>\n");
+        for (Layer layer : selected) {
+            sb.append("<xsd:complexType name=\"").append(layer.name).append("Type\">")
+              .append("<xsd:complexContent><xsd:extension base=\"gml:AbstractFeatureType\"><xsd:sequence>\n");
+            for (AttributeDescriptor descriptor : layer.type.getAttributeDescriptors()) {
+                sb.append("<xsd:element name=\"").append(descriptor.getLocalName())
+                  .append("\" type=\"").append(getXsdType(descriptor))
+                  .append("\" minOccurs=\"0\" nillable=\"true\"/>\n");
+            }
+            sb.append("</xsd:sequence></xsd:extension></xsd:complexContent></xsd:complexType>\n");
+            sb.append("<xsd:element name=\"").append(layer.name).append("\" type=\"")
+              .append(PREFIX).append(':').append(layer.name)
+              .append("Type\" substitutionGroup=\"gml:AbstractFeature\"/>\n");
+        }
+        sb.append("</xsd:schema>\n");
+    }
+
+    private static String getXsdType(AttributeDescriptor descriptor) {
+        Class<?> binding = descriptor.getType().getBinding();
+        if (descriptor instanceof GeometryDescriptor) {
+            if (Point.class.isAssignableFrom(binding)) {
+                return "gml:PointPropertyType";
+            }
+            if (LineString.class.isAssignableFrom(binding)) {
+                return "gml:CurvePropertyType";
+            }
+            if (Polygon.class.isAssignableFrom(binding)) {
+                return "gml:SurfacePropertyType";
+            }
+            if (MultiPoint.class.isAssignableFrom(binding)) {
+                return "gml:MultiPointPropertyType";
+            }
+            if (MultiLineString.class.isAssignableFrom(binding)) {
+                return "gml:MultiCurvePropertyType";
+            }
+            if (MultiPolygon.class.isAssignableFrom(binding)) {
+                return "gml:MultiSurfacePropertyType";
+            }
+            return "gml:GeometryPropertyType";
+        }
+        if (Integer.class.isAssignableFrom(binding) || Short.class.isAssignableFrom(binding)) {
+            return "xsd:int";
+        }
+        if (Long.class.isAssignableFrom(binding)) {
+            return "xsd:long";
+        }
+        if (Double.class.isAssignableFrom(binding) || Float.class.isAssignableFrom(binding)) {
+            return "xsd:double";
+        }
+        if (Boolean.class.isAssignableFrom(binding)) {
+            return "xsd:boolean";
+        }
+        if (Date.class.isAssignableFrom(binding)) {
+            return "xsd:dateTime";
+        }
+        return "xsd:string";
+    }
+
+    private void writeFeatures(StringBuilder sb, Map<String, String> params) {
+        List<Layer> selected = getLayers(params, true);
+        Layer layer = selected.get(0);
+        Predicate<Geometry> filter = getFilter(params);
+        List<SimpleFeature> matches = new ArrayList<>();
+        for (SimpleFeature feature : layer.features) {
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            if (filter == null || (geometry != null && filter.test(geometry))) {
+                matches.add(feature);
+            }
+        }
+        matches.sort(getComparator(params.get("SORTBY")));
+        int startIndex = Integer.parseInt(params.getOrDefault("STARTINDEX", "0"));
+        String countParam = params.containsKey("COUNT") ? params.get("COUNT") : params.get("MAXFEATURES");
+        int count = (countParam == null ? Integer.MAX_VALUE : Integer.parseInt(countParam));
+        boolean hits = "hits".equalsIgnoreCase(params.get("RESULTTYPE"));
+        int from = Math.min(startIndex, matches.size());
+        int to = (int) Math.min((long) from + count, matches.size());
+        List<SimpleFeature> page = (hits ? new ArrayList<>() : matches.subList(from, to));
+
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<wfs:FeatureCollection xmlns:wfs=\"http://www.opengis.net/wfs/2.0\"")
+          .append(" xmlns:gml=\"http://www.opengis.net/gml/3.2\"")
+          .append(" xmlns:").append(PREFIX).append("=\"").append(NAMESPACE).append("\"")
+          .append(" timeStamp=\"").append(Instant.now()).append("\"")
+          .append(" numberMatched=\"").append(matches.size()).append("\"")
+          .append(" numberReturned=\"").append(page.size()).append("\">\n");
+        String srsName = "urn:ogc:def:crs:EPSG::" + layer.srid;
+        for (SimpleFeature feature : page) {
+            sb.append("<wfs:member><").append(PREFIX).append(':').append(layer.name)
+              .append(" gml:id=\"").append(escape(feature.getID())).append("\">");
+            for (AttributeDescriptor descriptor : layer.type.getAttributeDescriptors()) {
+                Object value = feature.getAttribute(descriptor.getLocalName());
+                if (value == null) {
+                    continue;
+                }
+                String element = PREFIX + ':' + descriptor.getLocalName();
+                sb.append('<').append(element).append('>');
+                if (value instanceof Geometry) {
+                    writeGeometry(sb, (Geometry) value, srsName);
+                }
+                else if (value instanceof Date) {
+                    sb.append(((Date) value).toInstant());
+                }
+                else {
+                    sb.append(escape(value.toString()));
+                }
+                sb.append("</").append(element).append('>');
+            }
+            sb.append("</").append(PREFIX).append(':').append(layer.name).append("></wfs:member>\n");
+        }
+        sb.append("</wfs:FeatureCollection>\n");
+    }
+
+    private List<Layer> getLayers(Map<String, String> params, boolean required) {
+        String typeNames = params.containsKey("TYPENAMES") ? params.get("TYPENAMES") : params.get("TYPENAME");
+        List<Layer> selected = new ArrayList<>();
+        if (typeNames == null || typeNames.isEmpty()) {
+            if (required) {
+                throw new IllegalArgumentException("Missing TYPENAMES parameter");
+            }
+            selected.addAll(layers.values());
+            return selected;
+        }
+        for (String typeName : typeNames.split(",")) {
+            String localName = typeName.substring(typeName.indexOf(':') + 1);
+            Layer layer = layers.get(localName);
+            if (layer == null) {
+                throw new IllegalArgumentException("Unknown feature type: " + typeName);
+            }
+            selected.add(layer);
+        }
+        return selected;
+    }
+
+    /**
+     * Get the spatial filter from the BBOX or FILTER parameter.
+     *
+     * @return The filter, or null if all features match
+     */
+    private static Predicate<Geometry> getFilter(Map<String, String> params) {
+        String bbox = params.get("BBOX");
+        if (bbox != null) {
+            String[] parts = bbox.split(",");
+            Envelope envelope = new Envelope(Double.parseDouble(parts[0]), Double.parseDouble(parts[2]),
+                    Double.parseDouble(parts[1]), Double.parseDouble(parts[3]));
+            return geometry -> geometry.getEnvelopeInternal().intersects(envelope);
+        }
+        String filter = params.get("FILTER");
+        if (filter == null || filter.isEmpty()) {
+            return null;
+        }
+        // The filter may be enclosed in parentheses, one filter per type name
+        if (filter.startsWith("(") && filter.endsWith(")")) {
+            filter = filter.substring(1, filter.length() - 1);
+        }
+        try {
+            Element root = parseXml(new InputSource(new StringReader(filter))).getDocumentElement();
+            if (!"Filter".equals(root.getLocalName())) {
+                throw new IllegalArgumentException("Invalid filter: " + root.getLocalName());
+            }
+            List<Element> conditions = getChildElements(root);
+            if (conditions.size() != 1) {
+                throw new IllegalArgumentException("A filter must contain 1 condition");
+            }
+            return createFilter(conditions.get(0));
+        } catch (IOException | SAXException e) {
+            throw new IllegalArgumentException("Invalid filter: " + e.getMessage(), e);
+        }
+    }
+
+    private static Predicate<Geometry> createFilter(Element condition) {
+        List<Element> children = getChildElements(condition);
+        switch (condition.getLocalName()) {
+        case "And":
+        case "Or":
+            Predicate<Geometry> result = null;
+            for (Element child : children) {
+                Predicate<Geometry> filter = createFilter(child);
+                if (result == null) {
+                    result = filter;
+                }
+                else {
+                    result = ("And".equals(condition.getLocalName()) ? result.and(filter) : result.or(filter));
+                }
+            }
+            if (result == null) {
+                throw new IllegalArgumentException("Empty " + condition.getLocalName() + " condition");
+            }
+            return result;
+        case "BBOX":
+            Envelope envelope = readGeometry(children.get(children.size() - 1)).getEnvelopeInternal();
+            return geometry -> geometry.getEnvelopeInternal().intersects(envelope);
+        case "Intersects":
+            PreparedGeometry area = PreparedGeometryFactory.prepare(readGeometry(children.get(children.size() - 1)));
+            return area::intersects;
+        default:
+            throw new IllegalArgumentException("Unsupported filter operator: " + condition.getLocalName());
+        }
+    }
+
+    /**
+     * Read the features of a feature collection.
+     *
+     * @param name The name of the feature type
+     * @param collection The feature collection element
+     * @return The features
+     */
+    private static List<SimpleFeature> readFeatures(String name, Element collection) {
+        List<Element> featureElements = new ArrayList<>();
+        for (Element member : getChildElements(collection)) {
+            switch (member.getLocalName()) {
+            case "member":
+            case "featureMember":
+            case "featureMembers":
+                featureElements.addAll(getChildElements(member));
+                break;
+            default:
+                // Ignore the bounding box and other elements
+            }
+        }
+        // Collect the values per attribute, in the order of first appearance
+        Map<String, List<Object>> values = new LinkedHashMap<>();
+        for (int i = 0; i < featureElements.size(); i++) {
+            for (Element element : getChildElements(featureElements.get(i))) {
+                if (GML_NAMESPACES.contains(element.getNamespaceURI())) {
+                    // Skip gml:name, gml:boundedBy and the like
+                    continue;
+                }
+                List<Element> children = getChildElements(element);
+                Object value = (children.isEmpty() ? element.getTextContent().trim()
+                        : readGeometry(children.get(0)));
+                List<Object> attributeValues = values.computeIfAbsent(element.getLocalName(),
+                        key -> new ArrayList<>(Collections.nCopies(featureElements.size(), null)));
+                attributeValues.set(i, value);
+            }
+        }
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName(name);
+        Map<String, Function<String, Object>> converters = new HashMap<>();
+        for (Map.Entry<String, List<Object>> entry : values.entrySet()) {
+            Class<?> binding = getBinding(entry.getValue());
+            typeBuilder.add(entry.getKey(), binding);
+            if (Long.class.equals(binding)) {
+                converters.put(entry.getKey(), Long::valueOf);
+            }
+            else if (Double.class.equals(binding)) {
+                converters.put(entry.getKey(), Double::valueOf);
+            }
+        }
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(typeBuilder.buildFeatureType());
+        List<SimpleFeature> features = new ArrayList<>(featureElements.size());
+        for (int i = 0; i < featureElements.size(); i++) {
+            for (Map.Entry<String, List<Object>> entry : values.entrySet()) {
+                Object value = entry.getValue().get(i);
+                Function<String, Object> converter = converters.get(entry.getKey());
+                featureBuilder.add(value == null || converter == null ? value : converter.apply((String) value));
+            }
+            features.add(featureBuilder.buildFeature(getFeatureId(featureElements.get(i), name, i)));
+        }
+        return features;
+    }
+
+    /**
+     * Derive the attribute type from its values.
+     */
+    private static Class<?> getBinding(List<Object> values) {
+        Class<?> geometryBinding = null;
+        boolean isLong = true;
+        boolean isDouble = true;
+        for (Object value : values) {
+            if (value instanceof Geometry) {
+                geometryBinding = (geometryBinding == null || geometryBinding.equals(value.getClass())
+                        ? value.getClass() : Geometry.class);
+            }
+            else if (value != null) {
+                String s = (String) value;
+                isLong = isLong && s.matches("-?\\d{1,18}");
+                isDouble = isDouble && s.matches("-?\\d+(\\.\\d*)?([eE][-+]?\\d+)?");
+            }
+        }
+        if (geometryBinding != null) {
+            return geometryBinding;
+        }
+        if (isLong) {
+            return Long.class;
+        }
+        return isDouble ? Double.class : String.class;
+    }
+
+    private static String getFeatureId(Element element, String name, int index) {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            String localName = (attribute.getLocalName() == null ? attribute.getNodeName() : attribute.getLocalName());
+            if ("id".equals(localName) || "fid".equals(localName)) {
+                return attribute.getNodeValue();
+            }
+        }
+        return name + "." + index;
+    }
+
+    /**
+     * Read a GML 2, 3.1 or 3.2 geometry or envelope.
+     *
+     * @param element The geometry element
+     * @return The geometry
+     */
+    private static Geometry readGeometry(Element element) {
+        switch (element.getLocalName()) {
+        case "Point":
+            return GEOMETRY_FACTORY.createPoint(readCoordinates(element)[0]);
+        case "LineString":
+            return GEOMETRY_FACTORY.createLineString(readCoordinates(element));
+        case "LinearRing":
+            return GEOMETRY_FACTORY.createLinearRing(readCoordinates(element));
+        case "Polygon":
+            LinearRing shell = null;
+            List<LinearRing> holes = new ArrayList<>();
+            for (Element boundary : getChildElements(element)) {
+                for (Element ring : getChildElements(boundary)) {
+                    LinearRing linearRing = GEOMETRY_FACTORY.createLinearRing(readCoordinates(ring));
+                    String boundaryName = boundary.getLocalName();
+                    if ("exterior".equals(boundaryName) || "outerBoundaryIs".equals(boundaryName)) {
+                        shell = linearRing;
+                    }
+                    else {
+                        holes.add(linearRing);
+                    }
+                }
+            }
+            return GEOMETRY_FACTORY.createPolygon(shell, holes.toArray(new LinearRing[0]));
+        case "Envelope":
+        case "Box":
+            Coordinate[] corners = readCoordinates(element);
+            return GEOMETRY_FACTORY.toGeometry(new Envelope(corners[0], corners[corners.length - 1]));
+        case "MultiPoint":
+        case "MultiCurve":
+        case "MultiLineString":
+        case "MultiSurface":
+        case "MultiPolygon":
+        case "MultiGeometry":
+            List<Geometry> geometries = new ArrayList<>();
+            for (Element member : getChildElements(element)) {
+                for (Element geometry : getChildElements(member)) {
+                    geometries.add(readGeometry(geometry));
+                }
+            }
+            return GEOMETRY_FACTORY.buildGeometry(geometries);
+        default:
+            throw new IllegalArgumentException("Unsupported geometry type: " + element.getLocalName());
+        }
+    }
+
+    /**
+     * Read the coordinates of the gml:pos, gml:posList, gml:coordinates,
+     * gml:lowerCorner and gml:upperCorner elements below an element.
+     */
+    private static Coordinate[] readCoordinates(Element element) {
+        List<Coordinate> coordinates = new ArrayList<>();
+        NodeList nodes = element.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element child = (Element) nodes.item(i);
+            String text = child.getTextContent().trim();
+            switch (child.getLocalName()) {
+            case "pos":
+            case "posList":
+            case "lowerCorner":
+            case "upperCorner":
+                String dimension = child.getAttribute("srsDimension");
+                int step = (dimension.isEmpty() ? 2 : Integer.parseInt(dimension));
+                String[] parts = text.split("\\s+");
+                for (int j = 0; j + 1 < parts.length; j += step) {
+                    coordinates.add(new Coordinate(Double.parseDouble(parts[j]), Double.parseDouble(parts[j + 1])));
+                }
+                break;
+            case "coordinates":
+                for (String tuple : text.split("\\s+")) {
+                    String[] xy = tuple.split(",");
+                    coordinates.add(new Coordinate(Double.parseDouble(xy[0]), Double.parseDouble(xy[1])));
+                }
+                break;
+            default:
+                // A container element; the coordinates are below it
+            }
+        }
+        if (coordinates.isEmpty()) {
+            throw new IllegalArgumentException("No coordinates in " + element.getLocalName());
+        }
+        return coordinates.toArray(new Coordinate[0]);
+    }
+
+    private static List<Element> getChildElements(Element element) {
+        List<Element> children = new ArrayList<>();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    private static Document parseXml(InputSource source) throws IOException, SAXException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            return factory.newDocumentBuilder().parse(source);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Create a comparator for the sortBy parameter. Features are always
+     * sorted by id last, so the paging is deterministic.
+     */
+    private static Comparator<SimpleFeature> getComparator(String sortBy) {
+        Comparator<SimpleFeature> comparator = null;
+        if (sortBy != null && !sortBy.isEmpty()) {
+            for (String sortKey : sortBy.split(",")) {
+                String[] parts = sortKey.trim().split("\\s+");
+                String property = parts[0].substring(parts[0].indexOf(':') + 1);
+                boolean descending = parts.length > 1 && parts[1].toUpperCase(Locale.ROOT).startsWith("D");
+                Comparator<SimpleFeature> c = Comparator.comparing(
+                        f -> comparable(f.getAttribute(property)),
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                if (descending) {
+                    c = c.reversed();
+                }
+                comparator = (comparator == null ? c : comparator.thenComparing(c));
+            }
+        }
+        Comparator<SimpleFeature> byId = Comparator.comparing(SimpleFeature::getID);
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> comparable(Object value) {
+        if (value == null || value instanceof Comparable) {
+            return (Comparable<Object>) value;
+        }
+        return (Comparable<Object>) (Object) value.toString();
+    }
+
+    private static void writeGeometry(StringBuilder sb, Geometry geometry, String srsName) {
+        String srs = (srsName == null ? "" : " srsName=\"" + srsName + "\"");
+        if (geometry instanceof Point) {
+            sb.append("<gml:Point").append(srs).append("><gml:pos>");
+            writeCoordinates(sb, geometry.getCoordinates());
+            sb.append("</gml:pos></gml:Point>");
+        }
+        else if (geometry instanceof LineString) {
+            sb.append("<gml:LineString").append(srs).append("><gml:posList>");
+            writeCoordinates(sb, geometry.getCoordinates());
+            sb.append("</gml:posList></gml:LineString>");
+        }
+        else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            sb.append("<gml:Polygon").append(srs).append("><gml:exterior><gml:LinearRing><gml:posList>");
+            writeCoordinates(sb, polygon.getExteriorRing().getCoordinates());
+            sb.append("</gml:posList></gml:LinearRing></gml:exterior>");
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                sb.append("<gml:interior><gml:LinearRing><gml:posList>");
+                writeCoordinates(sb, polygon.getInteriorRingN(i).getCoordinates());
+                sb.append("</gml:posList></gml:LinearRing></gml:interior>");
+            }
+            sb.append("</gml:Polygon>");
+        }
+        else {
+            String type;
+            String member;
+            if (geometry instanceof MultiPoint) {
+                type = "MultiPoint";
+                member = "pointMember";
+            }
+            else if (geometry instanceof MultiLineString) {
+                type = "MultiCurve";
+                member = "curveMember";
+            }
+            else if (geometry instanceof MultiPolygon) {
+                type = "MultiSurface";
+                member = "surfaceMember";
+            }
+            else {
+                type = "MultiGeometry";
+                member = "geometryMember";
+            }
+            sb.append("<gml:").append(type).append(srs).append('>');
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                sb.append("<gml:").append(member).append('>');
+                writeGeometry(sb, geometry.getGeometryN(i), null);
+                sb.append("</gml:").append(member).append('>');
+            }
+            sb.append("</gml:").append(type).append('>');
+        }
+    }
+
+    private static void writeCoordinates(StringBuilder sb, Coordinate[] coordinates) {
+        for (int i = 0; i < coordinates.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(coordinates[i].x).append(' ').append(coordinates[i].y);
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("\"", "&quot;");
+    }
+
+    private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        String body = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<ows:ExceptionReport xmlns:ows=\"http://www.opengis.net/ows/1.1\" version=\"2.0.0\">" +
+                "<ows:Exception exceptionCode=\"InvalidParameterValue\"><ows:ExceptionText>" +
+                escape(String.valueOf(message)) +
+                "</ows:ExceptionText></ows:Exception></ows:ExceptionReport>\n";
+        send(exchange, code, "text/xml; charset=UTF-8", body);
+    }
+
+    private static void send(HttpExchange exchange, int code, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class Layer {
+        final String name;
+        final SimpleFeatureType type;
+        final List<SimpleFeature> features;
+        final int srid;
+
+        Layer(String name, SimpleFeatureType type, List<SimpleFeature> features, int srid) {
+            this.name = name;
+            this.type = type;
+            this.features = features;
+            this.srid = srid;
+        }
+    }
+}
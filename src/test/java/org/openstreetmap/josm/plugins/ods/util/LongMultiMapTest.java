@@ -0,0 +1,58 @@
+package org.openstreetmap.josm.plugins.ods.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+public class LongMultiMapTest {
+
+    @Test
+    public void putAndGet() {
+        LongMultiMap<String> map = new LongMultiMap<>();
+        map.put(1L, "a");
+        map.put(1L, "b");
+        map.put(1L, "c");
+        map.put(1L, "d");
+        map.put(1L, "e");
+        map.put(2L, "f");
+        assertEquals(6, map.size());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), map.get(1L));
+        assertEquals(Collections.singletonList("f"), map.get(2L));
+        assertTrue(map.get(3L).isEmpty());
+        assertEquals(6, map.values().count());
+    }
+
+    @Test
+    public void removeSingleValues() {
+        LongMultiMap<String> map = new LongMultiMap<>();
+        map.put(1L, "a");
+        map.put(1L, "b");
+        map.put(1L, "c");
+        assertTrue(map.remove(1L, "b"));
+        assertEquals(Arrays.asList("a", "c"), map.get(1L));
+        assertTrue(map.remove(1L, "a"));
+        assertEquals(Collections.singletonList("c"), map.get(1L));
+        assertFalse(map.remove(1L, "x"));
+        assertTrue(map.remove(1L, "c"));
+        assertTrue(map.get(1L).isEmpty());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void removeAll() {
+        LongMultiMap<String> map = new LongMultiMap<>();
+        map.put(1L, "a");
+        map.put(1L, "b");
+        map.put(2L, "c");
+        map.removeAll(1L);
+        assertEquals(1, map.size());
+        assertTrue(map.get(1L).isEmpty());
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+}
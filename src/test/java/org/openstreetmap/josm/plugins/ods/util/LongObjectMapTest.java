@@ -0,0 +1,66 @@
+package org.openstreetmap.josm.plugins.ods.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.put(1L, "one"));
+        assertNull(map.put(-1L, "minus one"));
+        assertNull(map.put(0L, "zero"));
+        assertEquals("one", map.put(1L, "uno"));
+        assertEquals(3, map.size());
+        assertEquals("uno", map.get(1L));
+        assertEquals("zero", map.get(0L));
+        assertNull(map.get(2L));
+        assertEquals("minus one", map.remove(-1L));
+        assertNull(map.remove(-1L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void behavesLikeHashMap() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // A small key range to get many collisions and removals
+            long key = random.nextInt(5_000) * 1024L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5_000 * 1024L; key += 1024) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        List<Long> values = map.values().sorted().collect(Collectors.toList());
+        assertEquals(expected.values().stream().sorted().collect(Collectors.toList()), values);
+    }
+
+    @Test
+    public void ensureCapacityKeepsEntries() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(7L, "seven");
+        map.ensureCapacity(10_000);
+        assertEquals("seven", map.get(7L));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(7L));
+    }
+}
@@ -0,0 +1,27 @@
+package org.openstreetmap.josm.plugins.ods.wfs;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class GeoJsonPageReaderTest {
+
+    @Test
+    public void outputFormatReportDisablesJson() {
+        String report = "<ows:ExceptionReport xmlns:ows=\"http://www.opengis.net/ows/1.1\" version=\"2.0.0\">" +
+                "<ows:Exception exceptionCode=\"InvalidParameterValue\" locator=\"outputFormat\">" +
+                "<ows:ExceptionText>Failed to find response for output format application/json</ows:ExceptionText>" +
+                "</ows:Exception></ows:ExceptionReport>";
+        assertTrue(GeoJsonPageReader.isOutputFormatRejected(report));
+    }
+
+    @Test
+    public void otherReportRejectsRequestOnly() {
+        String report = "<ows:ExceptionReport xmlns:ows=\"http://www.opengis.net/ows/1.1\" version=\"2.0.0\">" +
+                "<ows:Exception exceptionCode=\"InvalidParameterValue\" locator=\"filter\">" +
+                "<ows:ExceptionText>Unknown property: height</ows:ExceptionText>" +
+                "</ows:Exception></ows:ExceptionReport>";
+        assertFalse(GeoJsonPageReader.isOutputFormatRejected(report));
+    }
+}
@@ -0,0 +1,121 @@
+package org.openstreetmap.josm.plugins.ods.wfs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class GeoJsonParserTest {
+    private final SimpleFeatureType featureType = createFeatureType();
+
+    @Test
+    public void parseGeometryTypes() throws IOException {
+        List<SimpleFeature> features = parse(collection(
+                feature("1", "{\"type\":\"Point\",\"coordinates\":[1,2]}"),
+                feature("2", "{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1]]}"),
+                feature("3", "{\"type\":\"Polygon\",\"coordinates\":["
+                        + "[[0,0],[10,0],[10,10],[0,10],[0,0]],"
+                        + "[[1,1],[2,1],[2,2],[1,1]]]}"),
+                feature("4", "{\"type\":\"MultiPoint\",\"coordinates\":[[0,0],[1,1]]}"),
+                feature("5", "{\"type\":\"MultiLineString\",\"coordinates\":[[[0,0],[1,1]],[[2,2],[3,3]]]}"),
+                feature("6", "{\"type\":\"MultiPolygon\",\"coordinates\":[[[[0,0],[1,0],[1,1],[0,0]]]]}"),
+                feature("7", "{\"type\":\"GeometryCollection\",\"geometries\":["
+                        + "{\"type\":\"Point\",\"coordinates\":[1,2,3]}]}")));
+        assertEquals(7, features.size());
+        String[] types = {"Point", "LineString", "Polygon", "MultiPoint", "MultiLineString",
+                "MultiPolygon", "GeometryCollection"};
+        for (int i = 0; i < types.length; i++) {
+            assertEquals(types[i], getGeometry(features.get(i)).getGeometryType());
+            assertEquals(Integer.toString(i + 1), features.get(i).getID());
+        }
+        assertEquals(1, ((Polygon) getGeometry(features.get(2))).getNumInteriorRing());
+        assertEquals(3.0, getGeometry(features.get(6)).getCoordinate().getZ());
+    }
+
+    @Test
+    public void convertProperties() throws IOException {
+        List<SimpleFeature> features = parse(collection("{\"type\":\"Feature\",\"id\":\"1\","
+                + "\"properties\":{\"name\":\"Building\",\"number\":\"12\",\"unknown\":[1,{\"a\":true}]},"
+                + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[1.5,2.5]}}"));
+        SimpleFeature feature = features.get(0);
+        assertEquals("Building", feature.getAttribute("name"));
+        assertEquals(Integer.valueOf(12), feature.getAttribute("number"));
+    }
+
+    @Test
+    public void nullProperties() throws IOException {
+        List<SimpleFeature> features = parse(collection(
+                "{\"type\":\"Feature\",\"properties\":null,\"geometry\":null}",
+                "{\"type\":\"Feature\",\"properties\":{\"name\":null},"
+                        + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]}}"));
+        assertEquals(2, features.size());
+        assertNull(features.get(0).getAttribute("name"));
+        assertNull(features.get(0).getDefaultGeometry());
+        assertNull(features.get(1).getAttribute("name"));
+        assertNull(features.get(1).getAttribute("number"));
+    }
+
+    @Test
+    public void emptyCollection() throws IOException {
+        assertTrue(parse("{\"type\":\"FeatureCollection\",\"features\":[],\"totalFeatures\":0}").isEmpty());
+    }
+
+    @Test
+    public void truncatedInput() {
+        String json = collection(feature("1", "{\"type\":\"Point\",\"coordinates\":[1,2]}"),
+                feature("2", "{\"type\":\"Point\",\"coordinates\":[3,4]}"));
+        for (int length : new int[] {0, 1, json.length() / 2, json.length() - 1}) {
+            String truncated = json.substring(0, length);
+            assertThrows(IOException.class, () -> parse(truncated), truncated);
+        }
+    }
+
+    @Test
+    public void invalidInput() {
+        assertThrows(IOException.class, () -> parse("[]"));
+        assertThrows(IOException.class, () -> parse(collection(
+                feature("1", "{\"type\":\"Circle\",\"coordinates\":[1,2]}"))));
+    }
+
+    private List<SimpleFeature> parse(String json) throws IOException {
+        List<SimpleFeature> features = new ArrayList<>();
+        GeoJsonParser parser = new GeoJsonParser(featureType, new GeometryFactory());
+        parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), features::add);
+        return features;
+    }
+
+    private static Geometry getGeometry(SimpleFeature feature) {
+        return (Geometry) feature.getDefaultGeometry();
+    }
+
+    private static String collection(String... features) {
+        return "{\"type\":\"FeatureCollection\",\"features\":[" + String.join(",", features) + "]}";
+    }
+
+    private static String feature(String id, String geometry) {
+        return "{\"type\":\"Feature\",\"id\":\"" + id + "\",\"properties\":{},\"geometry\":" + geometry + "}";
+    }
+
+    private static SimpleFeatureType createFeatureType() {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName("buildings");
+        builder.add("name", String.class);
+        builder.add("number", Integer.class);
+        builder.add("geometry", Geometry.class);
+        return builder.buildFeatureType();
+    }
+}
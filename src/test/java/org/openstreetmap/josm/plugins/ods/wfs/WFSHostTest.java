@@ -0,0 +1,131 @@
+package org.openstreetmap.josm.plugins.ods.wfs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortOrder;
+import org.openstreetmap.josm.plugins.ods.test.util.JOSMFixture;
+import org.openstreetmap.josm.plugins.ods.test.util.LocalWfsServer;
+
+public class WFSHostTest {
+    private static final int FEATURE_COUNT = 25;
+    private static LocalWfsServer server;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws IOException, URISyntaxException {
+        JOSMFixture.createUnitTestFixture().init();
+        server = new LocalWfsServer();
+        server.addFeatureType("buildings", createFeatures(), 28992);
+        server.addFeatureType("addresses",
+                new File(WFSHostTest.class.getResource("addresses.gml").toURI()), 28992);
+        server.start();
+    }
+
+    @AfterAll
+    public static void tearDownAfterClass() {
+        server.stop();
+    }
+
+    @Test
+    public void downloadAllFeatures() throws IOException {
+        SimpleFeatureSource featureSource = getFeatureSource("buildings");
+        assertEquals(FEATURE_COUNT, featureSource.getCount(new Query(featureSource.getSchema().getTypeName())));
+        assertEquals(FEATURE_COUNT, read(featureSource, new Query(featureSource.getSchema().getTypeName())));
+    }
+
+    @Test
+    public void downloadPage() throws IOException {
+        SimpleFeatureSource featureSource = getFeatureSource("buildings");
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Query query = new Query(featureSource.getSchema().getTypeName());
+        query.setSortBy(ff.sort("id", SortOrder.ASCENDING));
+        query.setStartIndex(20);
+        query.setMaxFeatures(10);
+        assertEquals(FEATURE_COUNT - 20, read(featureSource, query));
+    }
+
+    /**
+     * The bounding box of the triangle contains all features, but only 11
+     * features are inside the triangle. The count is only right if the
+     * server evaluates the Intersects filter.
+     */
+    @Test
+    public void downloadIntersectingFeatures() throws IOException {
+        SimpleFeatureSource featureSource = getFeatureSource("buildings");
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        Polygon triangle = new GeometryFactory().createPolygon(new Coordinate[] {
+            new Coordinate(154990, 462990), new Coordinate(155031, 462990),
+            new Coordinate(154990, 463031), new Coordinate(154990, 462990)
+        });
+        Query query = new Query(featureSource.getSchema().getTypeName(),
+                ff.intersects(ff.property("geometry"), ff.literal(triangle)));
+        assertEquals(11, featureSource.getCount(query));
+        assertEquals(11, read(featureSource, query));
+    }
+
+    @Test
+    public void downloadFeaturesFromGmlFile() throws IOException {
+        SimpleFeatureSource featureSource = getFeatureSource("addresses");
+        assertEquals(6, read(featureSource, new Query(featureSource.getSchema().getTypeName())));
+    }
+
+    private static SimpleFeatureSource getFeatureSource(String name) throws IOException {
+        WFSHost host = server.createHost("test");
+        DataStore dataStore = host.getDataStore();
+        String typeName = Arrays.stream(dataStore.getTypeNames())
+                .filter(t -> t.endsWith(name)).findFirst().get();
+        return dataStore.getFeatureSource(typeName);
+    }
+
+    private static int read(SimpleFeatureSource featureSource, Query query) throws IOException {
+        int count = 0;
+        try (SimpleFeatureIterator it = featureSource.getFeatures(query).features()) {
+            while (it.hasNext()) {
+                assertNotNull(it.next().getDefaultGeometry());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<SimpleFeature> createFeatures() {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("buildings");
+        typeBuilder.add("id", Integer.class);
+        typeBuilder.add("geometry", Point.class);
+        SimpleFeatureType featureType = typeBuilder.buildFeatureType();
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
+        GeometryFactory geometryFactory = new GeometryFactory();
+        List<SimpleFeature> features = new ArrayList<>(FEATURE_COUNT);
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            featureBuilder.add(i);
+            featureBuilder.add(geometryFactory.createPoint(new Coordinate(155000 + i, 463000 + i)));
+            features.add(featureBuilder.buildFeature("buildings." + i));
+        }
+        return features;
+    }
+}
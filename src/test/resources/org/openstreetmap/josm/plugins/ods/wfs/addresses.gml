@@ -0,0 +1,10 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<wfs:FeatureCollection xmlns:wfs="http://www.opengis.net/wfs/2.0" xmlns:gml="http://www.opengis.net/gml/3.2"
+    xmlns:ods="http://josm.openstreetmap.org/plugins/ods/test" numberMatched="6" numberReturned="6">
+<wfs:member><ods:addresses gml:id="addresses.1"><ods:id>1</ods:id><ods:street>Stationsplein</ods:street><ods:housenumber>1</ods:housenumber><ods:geometry><gml:Point srsName="urn:ogc:def:crs:EPSG::28992"><gml:pos>155100 463100</gml:pos></gml:Point></ods:geometry></ods:addresses></wfs:member>
+<wfs:member><ods:addresses gml:id="addresses.2"><ods:id>2</ods:id><ods:street>Stationsplein</ods:street><ods:housenumber>2</ods:housenumber><ods:geometry><gml:Point srsName="urn:ogc:def:crs:EPSG::28992"><gml:pos>155105 463100</gml:pos></gml:Point></ods:geometry></ods:addresses></wfs:member>
+<wfs:member><ods:addresses gml:id="addresses.3"><ods:id>3</ods:id><ods:street>Stationsplein</ods:street><ods:housenumber>3</ods:housenumber><ods:geometry><gml:Point srsName="urn:ogc:def:crs:EPSG::28992"><gml:pos>155110 463100</gml:pos></gml:Point></ods:geometry></ods:addresses></wfs:member>
+<wfs:member><ods:addresses gml:id="addresses.4"><ods:id>4</ods:id><ods:street>Stationsplein</ods:street><ods:housenumber>4</ods:housenumber><ods:geometry><gml:Point srsName="urn:ogc:def:crs:EPSG::28992"><gml:pos>155115 463100</gml:pos></gml:Point></ods:geometry></ods:addresses></wfs:member>
+<wfs:member><ods:addresses gml:id="addresses.5"><ods:id>5</ods:id><ods:street>Stationsplein</ods:street><ods:housenumber>5</ods:housenumber><ods:geometry><gml:Point srsName="urn:ogc:def:crs:EPSG::28992"><gml:pos>155120 463100</gml:pos></gml:Point></ods:geometry></ods:addresses></wfs:member>
+<wfs:member><ods:addresses gml:id="addresses.6"><ods:id>6</ods:id><ods:street>Stationsplein</ods:street><ods:housenumber>6</ods:housenumber><ods:geometry><gml:Point srsName="urn:ogc:def:crs:EPSG::28992"><gml:pos>155125 463100</gml:pos></gml:Point></ods:geometry></ods:addresses></wfs:member>
+</wfs:FeatureCollection>